@@ -60,22 +60,25 @@ public class JwtAuthFilter implements WebFilter {
         // Extraer el token quitando el prefijo "Bearer "
         String token = authHeader.substring(7);
 
-        // Validar el token y extraer el nombre de usuario
-        String username;
+        // Verificar el token una sola vez (firma y expiración) y obtener sus claims
+        Claims claims;
         try {
-            username = jwtUtil.extractUsername(token);
+            claims = jwtUtil.verifyToken(token);
         } catch (Exception e) {
             return unauthorized(exchange, "❌ Token inválido: " + e.getMessage());
         }
 
-        // Verificar si el token es válido
-        if (!jwtUtil.validateToken(token, username)) {
+        // Comprobar que el token identifica a un usuario y que no ha expirado
+        String username = claims.getSubject();
+        if (username == null || jwtUtil.isTokenExpired(claims)) {
             return unauthorized(exchange, "⚠️ Token expirado o inválido.");
         }
 
-        // Extraer los claims (información contenida en el JWT)
-        Claims claims = jwtUtil.extractAllClaims(token);
+        // Extraer los roles de los claims (información contenida en el JWT)
         List<String> roles = claims.get("roles", List.class); // Obtener la lista de roles del usuario
+        if (roles == null) {
+            roles = List.of();
+        }
 
         // Crear una nueva solicitud con los headers personalizados
         ServerHttpRequest modifiedRequest = request.mutate()
@@ -2,8 +2,10 @@ package org.iesalixar.daw2.NataliaFernandezOspina.dwese_api_gateway;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class DweseApiGatewayApplication {
 
 	public static void main(String[] args) {
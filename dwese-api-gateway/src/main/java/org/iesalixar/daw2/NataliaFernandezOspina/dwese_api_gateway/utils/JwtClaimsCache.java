@@ -0,0 +1,153 @@
+package org.iesalixar.daw2.NataliaFernandezOspina.dwese_api_gateway.utils;
+
+import io.jsonwebtoken.Claims;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caché acotada de claims ya verificados.
+ *
+ * Evita repetir la verificación RSA de un token que ya se ha validado recientemente.
+ * La clave es el resumen SHA-256 del token (nunca se guarda el token en claro) y cada
+ * entrada caduca en lo que ocurra antes: la expiración del propio JWT o el TTL configurado.
+ * Cuando se alcanza el tamaño máximo se descarta la entrada usada hace más tiempo (LRU).
+ *
+ * Cuenta los aciertos y fallos y los registra periódicamente, para comprobar si la caché compensa.
+ */
+@Component
+public class JwtClaimsCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(JwtClaimsCache.class);
+
+    private final int maxSize;
+    private final long ttlMillis;
+
+    // LinkedHashMap en orden de acceso para obtener la política LRU
+    private final Map<String, Entry> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    // Totales en el último registro, para informar solo de lo ocurrido desde entonces
+    private long loggedHits;
+    private long loggedMisses;
+
+    public JwtClaimsCache(@Value("${jwt.cache.max-size:10000}") int maxSize,
+                          @Value("${jwt.cache.ttl-seconds:300}") long ttlSeconds) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlSeconds * 1000;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > JwtClaimsCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Devuelve los claims cacheados del token o null si no están o han caducado.
+     *
+     * @param token el token JWT.
+     * @return los claims verificados previamente, o null.
+     */
+    public Claims get(String token) {
+        if (maxSize <= 0) {
+            misses.increment();
+            return null;
+        }
+        String key = digest(token);
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAt > now) {
+                hits.increment();
+                return entry.claims;
+            }
+            if (entry != null) {
+                entries.remove(key);
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Guarda los claims de un token cuya firma ya se ha verificado.
+     *
+     * @param token el token JWT.
+     * @param claims los claims verificados.
+     */
+    public void put(String token, Claims claims) {
+        if (maxSize <= 0) {
+            return;
+        }
+        long expiresAt = System.currentTimeMillis() + ttlMillis;
+        if (claims.getExpiration() != null) {
+            expiresAt = Math.min(expiresAt, claims.getExpiration().getTime());
+        }
+        String key = digest(token);
+        synchronized (entries) {
+            entries.put(key, new Entry(claims, expiresAt));
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Registra los aciertos y fallos desde el último registro. No registra nada si no ha habido peticiones.
+     */
+    @Scheduled(fixedDelayString = "${jwt.cache.stats-log-interval-seconds:300}",
+            initialDelayString = "${jwt.cache.stats-log-interval-seconds:300}", timeUnit = TimeUnit.SECONDS)
+    public synchronized void logStats() {
+        long totalHits = hits.sum();
+        long totalMisses = misses.sum();
+        long newHits = totalHits - loggedHits;
+        long newMisses = totalMisses - loggedMisses;
+        loggedHits = totalHits;
+        loggedMisses = totalMisses;
+        if (newHits + newMisses == 0) {
+            return;
+        }
+        logger.info("Caché de JWT: {} aciertos, {} fallos ({}% de aciertos), {} tokens en caché; total: {} aciertos, {} fallos.",
+                newHits, newMisses, newHits * 100 / (newHits + newMisses), size(), totalHits, totalMisses);
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Calcula el resumen SHA-256 del token en hexadecimal.
+     */
+    private static String digest(String token) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha256.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    private record Entry(Claims claims, long expiresAt) {
+    }
+}
@@ -1,8 +1,10 @@
 package org.iesalixar.daw2.NataliaFernandezOspina.dwese_api_gateway.utils;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
@@ -20,6 +22,15 @@ public class JwtUtil {
     @Autowired
     private KeyPair jwtKeyPair;
 
+    @Autowired
+    private JwtClaimsCache claimsCache; // Claims ya verificados, indexados por resumen del token
+
+    /**
+     * Parser construido una sola vez con la clave pública.
+     * Es inmutable y seguro para hilos, por lo que se reutiliza en todas las peticiones.
+     */
+    private JwtParser jwtParser;
+
     private static final long JWT_EXPIRATION = 3600000; // 1 hora
 
     /**
@@ -30,6 +41,13 @@ public class JwtUtil {
     @Value("${jwt.secret}")
     private String secretKeyFromProperties;
 
+    @PostConstruct
+    public void init() {
+        jwtParser = Jwts.parser()
+                .verifyWith(jwtKeyPair.getPublic()) // Configura la clave para verificar la firma
+                .build();
+    }
+
     /**
      * Obtiene la clave de firma (SecretKey) usando la clave secreta inyectada.
      * Keys.hmacShaKeyFor convierte la clave en un objeto SecretKey.
@@ -72,13 +90,31 @@ public class JwtUtil {
      * @return los claims contenidos en el token.
      */
     public Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(jwtKeyPair.getPublic()) // Configura la clave para verificar la firma
-                .build()
+        return jwtParser
                 .parseSignedClaims(token) // Verifica el token y lo parsea
                 .getPayload(); // Devuelve el cuerpo del JWT (claims)
     }
 
+    /**
+     * Verifica el token una única vez y devuelve sus claims.
+     *
+     * Si el token ya se verificó recientemente y no ha expirado, los claims se sirven
+     * desde la caché sin repetir la comprobación de la firma RSA.
+     *
+     * @param token el token JWT.
+     * @return los claims verificados del token.
+     * @throws io.jsonwebtoken.JwtException si la firma no es válida o el token ha expirado.
+     */
+    public Claims verifyToken(String token) {
+        Claims claims = claimsCache.get(token);
+        if (claims != null) {
+            return claims;
+        }
+        claims = extractAllClaims(token);
+        claimsCache.put(token, claims);
+        return claims;
+    }
+
     /**
      * Genera un token JWT para un usuario con roles específicos.
      *
@@ -109,11 +145,7 @@ public class JwtUtil {
      * @return true si el token es válido, false en caso contrario.
      */
     public boolean validateToken(String token, String username) {
-        Claims claims = Jwts.parser()
-                .verifyWith(jwtKeyPair.getPublic())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+        Claims claims = verifyToken(token);
         return username.equals(claims.getSubject()) && !isTokenExpired(claims);
     }
 
@@ -121,11 +153,13 @@ public class JwtUtil {
      * Verifica si un token JWT ha expirado.
      *
      * Extrae el claim "exp" (fecha de expiración) y lo compara con la fecha actual.
+     * Un token sin "exp" se considera expirado: todos los tokens que emitimos lo llevan.
      *
      * @param claims los claims del token JWT.
-     * @return true si el token ha expirado, false si aún es válido.
+     * @return true si el token ha expirado o no tiene fecha de expiración, false si aún es válido.
      */
-    private boolean isTokenExpired(Claims claims) {
-        return claims.getExpiration().before(new Date());
+    public boolean isTokenExpired(Claims claims) {
+        Date expiration = claims.getExpiration();
+        return expiration == null || expiration.before(new Date());
     }
 }
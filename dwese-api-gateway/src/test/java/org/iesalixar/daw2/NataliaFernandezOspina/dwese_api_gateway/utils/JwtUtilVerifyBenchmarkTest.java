@@ -0,0 +1,86 @@
+package org.iesalixar.daw2.NataliaFernandezOspina.dwese_api_gateway.utils;
+
+import io.jsonwebtoken.Claims;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Microbenchmark de la verificación de JWT en el gateway: `verifyToken` con un token que ya está en la
+ * caché frente al camino anterior, que verificaba el mismo token tres veces por petición (nombre de usuario,
+ * validación y claims).
+ *
+ * No sustituye a JMH (sin forks ni aislamiento del JIT), pero con el calentamiento previo basta para ver
+ * el orden de magnitud: la verificación RSA cuesta decenas de microsegundos y un acierto en la caché, un
+ * SHA-256 y una búsqueda en el mapa.
+ */
+class JwtUtilVerifyBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(JwtUtilVerifyBenchmarkTest.class);
+
+    private static final int WARMUP = 2_000;
+    private static final int ITERATIONS = 5_000;
+
+    private JwtUtil jwtUtil;
+    private JwtClaimsCache claimsCache;
+    private String token;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keyPair = generator.generateKeyPair();
+
+        claimsCache = new JwtClaimsCache(10_000, 300);
+        jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "jwtKeyPair", keyPair);
+        ReflectionTestUtils.setField(jwtUtil, "claimsCache", claimsCache);
+        jwtUtil.init();
+        token = jwtUtil.generateToken("user", List.of("ROLE_USER"));
+    }
+
+    @Test
+    void cachedVerificationIsMuchFasterThanTheThreeParsePath() {
+        double threeParseNanos = measure(t -> {
+            String username = jwtUtil.extractAllClaims(t).getSubject();
+            Claims validated = jwtUtil.extractAllClaims(t);
+            assertThat(username.equals(validated.getSubject()) && !jwtUtil.isTokenExpired(validated)).isTrue();
+            jwtUtil.extractAllClaims(t).get("roles", List.class);
+        });
+        double cachedNanos = measure(t -> {
+            Claims claims = jwtUtil.verifyToken(t);
+            assertThat(jwtUtil.isTokenExpired(claims)).isFalse();
+            claims.get("roles", List.class);
+        });
+
+        logger.info("Verificación de JWT por petición: {} µs con tres análisis, {} µs con la caché ({}x).",
+                String.format("%.1f", threeParseNanos / 1000), String.format("%.1f", cachedNanos / 1000),
+                String.format("%.0f", threeParseNanos / cachedNanos));
+
+        // Margen amplio para no depender de la máquina; en la práctica es del orden de 50 a 100 veces
+        assertThat(cachedNanos * 10).isLessThan(threeParseNanos);
+        // Solo la primera llamada a verifyToken verifica la firma
+        assertThat(claimsCache.getMissCount()).isEqualTo(1);
+        assertThat(claimsCache.getHitCount()).isEqualTo(WARMUP + ITERATIONS - 1);
+    }
+
+    private double measure(Consumer<String> perRequest) {
+        for (int i = 0; i < WARMUP; i++) {
+            perRequest.accept(token);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            perRequest.accept(token);
+        }
+        return (double) (System.nanoTime() - start) / ITERATIONS;
+    }
+}
@@ -2,8 +2,10 @@ package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class DweseTicketLoggerApiApplication {
 
 	public static void main(String[] args) {
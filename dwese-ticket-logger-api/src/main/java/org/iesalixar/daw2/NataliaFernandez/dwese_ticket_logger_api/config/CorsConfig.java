@@ -26,6 +26,9 @@ public class CorsConfig {
                         .allowedOrigins(allowedOrigins)
                         .allowedMethods("GET", "POST", "PUT", "DELETE", "PATCH", "OPTIONS")
                         .allowedHeaders("*")
+                        // Cabeceras con el acceso a la base de datos de cada petición, legibles desde el navegador
+                        .exposedHeaders(SqlMetricsFilter.STATEMENTS_HEADER, SqlMetricsFilter.TIME_HEADER,
+                                SqlMetricsFilter.CONNECTION_WAIT_HEADER)
                         .allowCredentials(true);
             }
 
@@ -0,0 +1,85 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.RegionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configuración de la caché de segundo nivel de Hibernate.
+ *
+ * Las entidades de referencia (regiones, provincias, supermercados, categorías y ubicaciones) y sus
+ * colecciones se guardan en cachés locales de Caffeine con un número máximo de elementos y una caducidad,
+ * de forma que la memoria usada está acotada y cualquier cambio hecho fuera de la aplicación acaba
+ * viéndose. Los cambios hechos a través de JPA actualizan o invalidan la caché en el momento.
+ */
+@Configuration
+public class HibernateCacheConfig {
+
+    // Regiones de entidades y colecciones declaradas con @Cache en las entidades
+    public static final List<String> ENTITY_REGIONS = List.of(
+            "regions", "regions.provinces",
+            "provinces", "provinces.locations",
+            "supermarkets", "supermarkets.locations",
+            "categories", "categories.subCategories",
+            "locations");
+
+    /**
+     * Crea el gestor de cachés (JCache) que usa Hibernate, con una caché acotada por cada región.
+     * Hibernate está configurado para fallar al arrancar si una entidad usa una región que no se ha creado aquí.
+     */
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager(
+            @Value("${cache.reference.max-entries:10000}") long maxEntries,
+            @Value("${cache.reference.expire-after-write-minutes:60}") long expireMinutes,
+            @Value("${cache.query.max-entries:1000}") long maxQueryEntries) {
+        CachingProvider provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        CacheManager cacheManager = provider.getCacheManager(provider.getDefaultURI(), getClass().getClassLoader());
+
+        ENTITY_REGIONS.forEach(region -> createCache(cacheManager, region, maxEntries, expireMinutes));
+        createCache(cacheManager, RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME, maxQueryEntries, expireMinutes);
+
+        // Las marcas de tiempo de actualización de cada tabla no caducan: si se perdieran, la caché de
+        // consultas podría devolver resultados anteriores a un cambio. Hay una entrada por tabla.
+        CaffeineConfiguration<Object, Object> timestamps = new CaffeineConfiguration<>();
+        timestamps.setStatisticsEnabled(true);
+        recreate(cacheManager, RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME, timestamps);
+        return cacheManager;
+    }
+
+    /**
+     * Entrega a Hibernate el gestor de cachés creado por Spring en lugar de dejar que cree el suyo.
+     */
+    @Bean
+    public HibernatePropertiesCustomizer hibernateCacheManagerCustomizer(CacheManager hibernateCacheManager) {
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+    }
+
+    private static void createCache(CacheManager cacheManager, String name, long maxEntries, long expireMinutes) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setMaximumSize(OptionalLong.of(maxEntries));
+        configuration.setExpireAfterWrite(OptionalLong.of(TimeUnit.MINUTES.toNanos(expireMinutes)));
+        configuration.setStatisticsEnabled(true);
+        recreate(cacheManager, name, configuration);
+    }
+
+    // El gestor por defecto de Caffeine es compartido, así que se sustituye la caché si ya existía
+    // (por ejemplo, al reiniciar el contexto con devtools o en los tests).
+    private static void recreate(CacheManager cacheManager, String name, CaffeineConfiguration<Object, Object> configuration) {
+        if (cacheManager.getCache(name) != null) {
+            cacheManager.destroyCache(name);
+        }
+        cacheManager.createCache(name, configuration);
+    }
+}
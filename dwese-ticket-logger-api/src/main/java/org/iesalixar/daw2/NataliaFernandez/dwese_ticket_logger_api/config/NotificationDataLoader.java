@@ -1,24 +1,55 @@
 package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.config;
 
 import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities.Notification;
-import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.repositories.NotificationRepository;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities.NotificationCounter;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.services.NotificationService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.time.Instant;
-import java.util.UUID;
+import java.util.Map;
 
+/**
+ * Tareas de arranque de las notificaciones: fija la caducidad de las leídas que no la tienen e inserta
+ * las notificaciones de ejemplo.
+ *
+ * No borra nada y se puede ejecutar en cada arranque: cada ejemplo se inserta con un upsert por usuario
+ * y asunto que no modifica el documento si ya existe. Todo se ejecuta en segundo plano, sin retrasar el arranque.
+ */
 @Component
 public class NotificationDataLoader implements CommandLineRunner {
 
     private static final Logger logger = LoggerFactory.getLogger(NotificationDataLoader.class);
 
+    // Asunto y mensaje de las notificaciones de ejemplo
+    private static final Map<String, String> DEMO_NOTIFICATIONS = Map.of(
+            "Precio más bajo", "Precio más bajo para el producto en el supermercado Mercadona",
+            "Producto nuevo añadido", "Se ha añadido un nuevo producto",
+            "Nuevo usuario", "Se ha registrado un nuevo usuario");
+
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+
     @Autowired
-    private NotificationRepository notificationRepository;
+    private NotificationService notificationService;
+
+    @Value("${notifications.demo-data.enabled:true}")
+    private boolean demoDataEnabled;
+
+    // Usuario al que se asignan las notificaciones de ejemplo
+    @Value("${notifications.demo-username:admin}")
+    private String demoUsername;
 
     /**
      * Método que se ejecuta al inicio de la aplicación para insertar notificaciones de ejemplo.
@@ -29,18 +60,37 @@ public class NotificationDataLoader implements CommandLineRunner {
     public void run(String... args) {
         logger.info("Iniciando la carga de datos de notificaciones...");
 
-        notificationRepository
-                .deleteAll() // Limpia las notificaciones previas
-                .thenMany(
-                        Flux.just(
-                                new Notification(UUID.randomUUID().toString(), "Precio más bajo", "Precio más bajo para el producto en el supermercado Mercadona", false, Instant.now()),
-                                new Notification(UUID.randomUUID().toString(), "Producto nuevo añadido", "Se ha añadido un nuevo producto", false, Instant.now()),
-                                new Notification(UUID.randomUUID().toString(), "Nuevo usuario", "Se ha registrado un nuevo usuario", false, Instant.now())
-                        )
-                )
-                .flatMap(notificationRepository::save) // Inserta las notificaciones en MongoDB
-                .doOnNext(notification -> logger.info("Notificación insertada: {}", notification))
+        notificationService.applyReadRetention()
+                .doOnNext(updated -> {
+                    if (updated > 0) {
+                        logger.info("Caducidad fijada en {} notificaciones leídas.", updated);
+                    }
+                })
+                .thenMany(demoDataEnabled ? Flux.fromIterable(DEMO_NOTIFICATIONS.entrySet()) : Flux.empty())
+                .concatMap(demo -> insertIfMissing(demo.getKey(), demo.getValue()))
+                .count()
+                .filter(inserted -> inserted > 0)
+                // Solo se cuentan las que se han insertado ahora; las que ya existían ya estaban contadas
+                .flatMap(inserted -> mongoTemplate.findAndModify(
+                        Query.query(Criteria.where("username").is(demoUsername)), new Update().inc("unread", inserted),
+                        FindAndModifyOptions.options().upsert(true).returnNew(true), NotificationCounter.class))
+                .doOnNext(counter -> logger.info("Notificaciones de ejemplo insertadas para {}.", demoUsername))
                 .doOnError(error -> logger.error("Error al insertar notificación", error))
                 .subscribe();
     }
+
+    /**
+     * Inserta una notificación de ejemplo si el usuario no tiene ya una con el mismo asunto.
+     *
+     * @return un elemento si se ha insertado; vacío si ya existía.
+     */
+    private Mono<Object> insertIfMissing(String subject, String message) {
+        Query query = Query.query(Criteria.where("username").is(demoUsername).and("subject").is(subject));
+        Update update = new Update()
+                .setOnInsert("message", message)
+                .setOnInsert("read", false)
+                .setOnInsert("createdAt", Instant.now());
+        return mongoTemplate.upsert(query, update, Notification.class)
+                .mapNotNull(result -> result.getUpsertedId());
+    }
 }
@@ -1,6 +1,14 @@
 package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.amqp.core.AcknowledgeMode;
 import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -8,8 +16,56 @@ import org.springframework.context.annotation.Configuration;
 public class RabbitMQConfig {
     public static final String QUEUE_NAME = "tickets.queue";
 
+    // Cola donde se dejan los mensajes de tickets que no se han podido guardar
+    public static final String FAILED_QUEUE_NAME = "tickets.queue.failed";
+
+    public static final String TICKET_LISTENER_FACTORY = "ticketListenerContainerFactory";
+
     @Bean
     public Queue queue() {
         return new Queue(QUEUE_NAME, true);
     }
+
+    @Bean
+    public Queue failedQueue() {
+        return new Queue(FAILED_QUEUE_NAME, true);
+    }
+
+    /**
+     * Los mensajes se envían y se reciben en JSON, con la misma configuración de Jackson que la API.
+     */
+    @Bean
+    public MessageConverter messageConverter(ObjectMapper objectMapper) {
+        return new Jackson2JsonMessageConverter(objectMapper);
+    }
+
+    /**
+     * Contenedor de los consumidores de la cola de tickets.
+     *
+     * Cada consumidor recibe los mensajes en lotes de hasta `batchSize` (o los que lleguen en
+     * `batchTimeout` ms) y los confirma manualmente después de guardarlos. El número de consumidores
+     * debe quedar por debajo del tamaño del pool de conexiones a la base de datos, ya que cada lote
+     * ocupa una conexión mientras se guarda.
+     */
+    @Bean(TICKET_LISTENER_FACTORY)
+    public SimpleRabbitListenerContainerFactory ticketListenerContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory,
+            @Value("${tickets.queue.prefetch:250}") int prefetch,
+            @Value("${tickets.queue.concurrency:2}") int concurrency,
+            @Value("${tickets.queue.max-concurrency:4}") int maxConcurrency,
+            @Value("${tickets.queue.batch-size:100}") int batchSize,
+            @Value("${tickets.queue.batch-timeout-ms:1000}") long batchTimeout) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        factory.setPrefetchCount(prefetch);
+        factory.setConcurrentConsumers(concurrency);
+        factory.setMaxConcurrentConsumers(maxConcurrency);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        factory.setReceiveTimeout(batchTimeout);
+        return factory;
+    }
 }
@@ -56,6 +56,11 @@ public class SecurityConfig {
                 .authorizeHttpRequests(auth -> auth
                         .requestMatchers("/api/v1/ticket-logger/tickets").hasRole("USER")         // Solo USER
                         .requestMatchers("/api/v1/ticket-logger/admin").hasRole("ADMIN")       // Solo ADMIN
+                        .requestMatchers("/api/v1/ticket-logger/analytics/rebuild").hasRole("ADMIN") // Solo ADMIN
+                        .requestMatchers("/api/v1/ticket-logger/cache", "/api/v1/ticket-logger/cache/stats").hasRole("ADMIN") // Solo ADMIN
+                        .requestMatchers("/api/v1/ticket-logger/sql-metrics").hasRole("ADMIN") // Solo ADMIN
+                        .requestMatchers("/api/v1/ticket-logger/notification-metrics").hasRole("ADMIN") // Solo ADMIN
+                        .requestMatchers("/api/v1/ticket-logger/uploads/cleanup").hasRole("ADMIN") // Solo ADMIN
                         .requestMatchers(
                                 "/api/v1/ticket-logger/regions",
                                 "/api/v1/ticket-logger/provinces",
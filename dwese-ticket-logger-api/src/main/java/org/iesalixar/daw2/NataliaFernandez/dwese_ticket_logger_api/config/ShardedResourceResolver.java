@@ -0,0 +1,50 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.utils.UploadPaths;
+import org.springframework.core.io.Resource;
+import org.springframework.lang.Nullable;
+import org.springframework.web.servlet.resource.AbstractResourceResolver;
+import org.springframework.web.servlet.resource.ResourceResolverChain;
+
+import java.util.List;
+
+
+/**
+ * Resolutor que traduce el nombre de un archivo subido (`/uploads/<nombre>`) a su ubicación en el
+ * reparto de directorios (`ab/cd/<nombre>`, ver {@link UploadPaths}). Si no está ahí, busca el archivo
+ * directamente en el directorio de subidas, donde siguen los que todavía no se han migrado.
+ *
+ * Va detrás de `EncodedResourceResolver`, que busca las versiones precomprimidas junto al archivo resuelto.
+ */
+public class ShardedResourceResolver extends AbstractResourceResolver {
+
+    @Override
+    @Nullable
+    protected Resource resolveResourceInternal(@Nullable HttpServletRequest request, String requestPath,
+                                               List<? extends Resource> locations, ResourceResolverChain chain) {
+        if (requestPath.startsWith(".") || requestPath.contains("/.")) {
+            return null; // Los archivos y directorios ocultos (subidas en curso) no se sirven
+        }
+        if (!UploadPaths.isFileName(requestPath)) {
+            return chain.resolveResource(request, requestPath, locations);
+        }
+        String shardedPath = UploadPaths.shardDirectory(requestPath) + "/" + requestPath;
+        Resource resource = chain.resolveResource(request, shardedPath, locations);
+        if (resource == null) {
+            resource = chain.resolveResource(request, requestPath, locations);
+        }
+        if (resource == null) {
+            // La migración puede haberlo movido entre las dos búsquedas
+            resource = chain.resolveResource(request, shardedPath, locations);
+        }
+        return resource;
+    }
+
+    @Override
+    @Nullable
+    protected String resolveUrlPathInternal(String resourceUrlPath, List<? extends Resource> locations,
+                                            ResourceResolverChain chain) {
+        return chain.resolveUrlPath(resourceUrlPath, locations);
+    }
+}
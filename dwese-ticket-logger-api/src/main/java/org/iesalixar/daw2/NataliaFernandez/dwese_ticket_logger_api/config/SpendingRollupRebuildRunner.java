@@ -0,0 +1,37 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.config;
+
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.services.SpendingRollupService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+
+/**
+ * Reconstruye la tabla de gasto mensual al arrancar si la aplicación se inicia con `--rebuild-analytics`.
+ */
+@Component
+public class SpendingRollupRebuildRunner implements CommandLineRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(SpendingRollupRebuildRunner.class);
+
+    public static final String REBUILD_ARGUMENT = "--rebuild-analytics";
+
+    @Autowired
+    private SpendingRollupService spendingRollupService;
+
+    /**
+     * Método que se ejecuta al inicio de la aplicación.
+     *
+     * @param args argumentos de la línea de comandos
+     */
+    @Override
+    public void run(String... args) {
+        if (Arrays.asList(args).contains(REBUILD_ARGUMENT)) {
+            logger.info("Reconstruyendo la tabla de gasto mensual...");
+            spendingRollupService.rebuild();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.services.SqlMetricsService;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.utils.SqlRequestStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.security.web.util.OnCommittedResponseWrapper;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.Locale;
+
+
+/**
+ * Filtro que mide el acceso a la base de datos de cada petición HTTP.
+ *
+ * Abre los contadores de la petición antes que el resto de filtros (incluido el de seguridad) y al
+ * terminar los suma a las métricas del endpoint. Con `sql-metrics.headers.enabled` añade además el número
+ * de sentencias, el tiempo JDBC y la espera de conexiones como cabeceras de la respuesta justo antes de
+ * que se envíe; está desactivado por defecto porque las cabeceras llegan a cualquier cliente.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class SqlMetricsFilter extends OncePerRequestFilter {
+
+    public static final String STATEMENTS_HEADER = "X-SQL-Statements";
+    public static final String TIME_HEADER = "X-SQL-Time-Ms";
+    public static final String CONNECTION_WAIT_HEADER = "X-SQL-Connection-Wait-Ms";
+
+    @Autowired
+    private SqlMetricsService sqlMetricsService;
+
+    @Value("${sql-metrics.headers.enabled:false}")
+    private boolean headersEnabled;
+
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        SqlRequestStats stats = SqlRequestStats.start();
+        SqlHeadersResponseWrapper wrappedResponse = new SqlHeadersResponseWrapper(response, stats);
+        try {
+            filterChain.doFilter(request, wrappedResponse);
+        } finally {
+            // Respuestas sin cuerpo: todavía no se han enviado las cabeceras
+            wrappedResponse.writeHeaders();
+            SqlRequestStats.clear();
+
+            // Solo se acumulan las peticiones que han llegado a un controlador, agrupadas por el patrón
+            // de la ruta para no crear una entrada por cada ID
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            if (pattern != null) {
+                sqlMetricsService.record(request.getMethod().toUpperCase(Locale.ROOT) + " " + pattern, stats);
+            }
+        }
+    }
+
+
+    /**
+     * Respuesta que añade las cabeceras con los contadores justo antes de enviarse al cliente,
+     * ya que después de empezar a escribir el cuerpo no se pueden añadir cabeceras.
+     */
+    private class SqlHeadersResponseWrapper extends OnCommittedResponseWrapper {
+
+        private final SqlRequestStats stats;
+        private boolean headersWritten;
+
+        SqlHeadersResponseWrapper(HttpServletResponse response, SqlRequestStats stats) {
+            super(response);
+            this.stats = stats;
+        }
+
+        @Override
+        protected void onResponseCommitted() {
+            writeHeaders();
+        }
+
+        void writeHeaders() {
+            if (headersWritten || !headersEnabled || isCommitted()) {
+                return;
+            }
+            headersWritten = true;
+            setHeader(STATEMENTS_HEADER, Long.toString(stats.getStatements()));
+            setHeader(TIME_HEADER, toMillis(stats.getJdbcNanos()));
+            setHeader(CONNECTION_WAIT_HEADER, toMillis(stats.getConnectionWaitNanos()));
+        }
+
+        private String toMillis(long nanos) {
+            return String.format(Locale.ROOT, "%.3f", nanos / 1_000_000.0);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.config;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.ResourceHttpMessageConverter;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.resource.HttpResource;
+import org.springframework.web.servlet.resource.ResourceHttpRequestHandler;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.regex.Pattern;
+
+
+/**
+ * Manejador que sirve los archivos subidos (`/uploads/**`) con cabeceras de caché.
+ *
+ * Sobre el comportamiento de `ResourceHttpRequestHandler` (Last-Modified, peticiones condicionales
+ * y peticiones Range), añade:
+ * - ETag fuerte: el propio hash del nombre en los archivos guardados por contenido.
+ * - Cache-Control inmutable y de larga duración para los nombres por contenido, que nunca cambian de
+ *   contenido; los archivos antiguos con nombre aleatorio se cachean menos tiempo y se revalidan.
+ * - Envío con `sendfile` cuando el contenedor lo permite (Tomcat NIO), sin copiar el archivo por la JVM.
+ */
+public class UploadResourceHandler extends ResourceHttpRequestHandler {
+
+    // Nombre de un archivo guardado por contenido o de una de sus variantes: hash SHA-256, variante y extensión
+    private static final Pattern CONTENT_ADDRESSED =
+            Pattern.compile("(?:.*/)?([0-9a-f]{64}(?:-[a-z]+)?)(?:\\.[a-z0-9]+)?");
+
+    private final CacheControl immutableCacheControl;
+
+    private final CacheControl legacyCacheControl;
+
+
+    public UploadResourceHandler(Duration immutableMaxAge, Duration legacyMaxAge, long sendfileMinSize) {
+        this.immutableCacheControl = CacheControl.maxAge(immutableMaxAge).cachePublic().immutable();
+        this.legacyCacheControl = CacheControl.maxAge(legacyMaxAge).cachePublic();
+        setEtagGenerator(UploadResourceHandler::etag);
+        setResourceHttpMessageConverter(new SendfileResourceHttpMessageConverter(sendfileMinSize));
+    }
+
+
+    /**
+     * Añade la cabecera Cache-Control según el nombre del archivo antes de servirlo, de modo que
+     * también la lleven las respuestas 304. Los errores (archivo inexistente, rango no válido)
+     * no se cachean: el archivo puede existir poco después.
+     */
+    @Override
+    public void handleRequest(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        Object path = request.getAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE);
+        boolean contentAddressed = path != null && CONTENT_ADDRESSED.matcher(path.toString()).matches();
+        response.setHeader(HttpHeaders.CACHE_CONTROL,
+                (contentAddressed ? immutableCacheControl : legacyCacheControl).getHeaderValue());
+        try {
+            super.handleRequest(request, new HttpServletResponseWrapper(response) {
+                @Override
+                public void sendError(int sc) throws IOException {
+                    disableCaching(this);
+                    super.sendError(sc);
+                }
+
+                @Override
+                public void sendError(int sc, String msg) throws IOException {
+                    disableCaching(this);
+                    super.sendError(sc, msg);
+                }
+            });
+        } catch (ServletException | IOException | RuntimeException e) {
+            // Archivo inexistente (NoResourceFoundException) o método no admitido: lo resuelve el manejador de errores
+            disableCaching(response);
+            throw e;
+        }
+        if (response.getStatus() >= HttpServletResponse.SC_BAD_REQUEST) {
+            disableCaching(response); // Rango no válido (416)
+        }
+    }
+
+
+    /**
+     * Marca una respuesta de error como no cacheable. También quita el tipo de contenido del archivo,
+     * ya puesto al atender la petición, para que la página de error se pueda escribir en JSON.
+     */
+    private static void disableCaching(HttpServletResponse response) {
+        if (!response.isCommitted()) {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noStore().getHeaderValue());
+            response.setContentType(null);
+        }
+    }
+
+
+    /**
+     * Calcula el ETag de un archivo. En los guardados por contenido es el hash (y la variante), que
+     * identifica exactamente los bytes; en el resto, el nombre, el tamaño y la fecha de modificación.
+     * Las versiones precomprimidas (.gz, .br) llevan además la codificación, ya que sus bytes son otros.
+     */
+    private static String etag(Resource resource) {
+        try {
+            String fileName = resource.getFilename();
+            var matcher = CONTENT_ADDRESSED.matcher(fileName != null ? fileName : "");
+            String tag = matcher.matches()
+                    ? matcher.group(1)
+                    : fileName + "-" + resource.contentLength() + "-" + resource.lastModified();
+            if (resource instanceof HttpResource httpResource) {
+                String coding = httpResource.getResponseHeaders().getFirst(HttpHeaders.CONTENT_ENCODING);
+                if (coding != null) {
+                    tag += "-" + coding;
+                }
+            }
+            return "\"" + tag + "\"";
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+
+    /**
+     * Conversor que, en lugar de copiar el archivo a la respuesta, pide al contenedor que lo envíe
+     * con `sendfile` (atributos `org.apache.tomcat.sendfile.*`, los mismos que usa el DefaultServlet de Tomcat).
+     * Los archivos pequeños y los contenedores sin soporte usan la copia normal.
+     */
+    static class SendfileResourceHttpMessageConverter extends ResourceHttpMessageConverter {
+
+        static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+        static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+        static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+        static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+        private final long minSize;
+
+        SendfileResourceHttpMessageConverter(long minSize) {
+            this.minSize = minSize;
+        }
+
+        @Override
+        protected void writeContent(Resource resource, HttpOutputMessage outputMessage)
+                throws IOException, HttpMessageNotWritableException {
+            RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+            if (attributes instanceof ServletRequestAttributes servletAttributes && resource.isFile()) {
+                HttpServletRequest request = servletAttributes.getRequest();
+                long length = resource.contentLength();
+                if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED)) && length >= minSize) {
+                    // Las cabeceras (incluida Content-Length) ya están puestas; el cuerpo lo envía el contenedor
+                    File file = resource.getFile();
+                    request.setAttribute(SENDFILE_FILENAME, file.getCanonicalPath());
+                    request.setAttribute(SENDFILE_START, 0L);
+                    request.setAttribute(SENDFILE_END, length);
+                    return;
+                }
+            }
+            super.writeContent(resource, outputMessage);
+        }
+    }
+}
@@ -1,53 +1,87 @@
-package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_webapp.config;
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.config;
 
-import org.springframework.context.annotation.Configuration;
-import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
-import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.web.servlet.handler.SimpleUrlHandlerMapping;
+import org.springframework.web.servlet.resource.EncodedResourceResolver;
+import org.springframework.web.servlet.resource.PathResourceResolver;
 
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 
 
-    /**
-     * Clase de configuración para habilitar la gestión de recursos estáticos en Spring MVC.
-     * Permite servir archivos desde un directorio externo utilizando las propiedades del sistema
-     * cargadas desde el archivo .env.
-     */
-    @Configuration
-    public class WebConfig implements WebMvcConfigurer {
+/**
+ * Clase de configuración para servir los archivos subidos desde el directorio externo `UPLOAD_PATH`.
+ * Las URLs llevan solo el nombre del archivo; {@link ShardedResourceResolver} lo busca en su subdirectorio.
+ *
+ * Las peticiones a `/uploads/**` se atienden con {@link UploadResourceHandler}, que añade ETag y
+ * Cache-Control según el tipo de nombre del archivo, admite peticiones Range y condicionales, sirve las
+ * versiones precomprimidas (`.br`, `.gz`) si existen y el cliente las acepta, y usa `sendfile` para enviar
+ * los archivos grandes.
+ */
+@Configuration
+public class WebConfig {
+
+
+    // Logger para registrar eventos importantes
+    private static final Logger logger = LoggerFactory.getLogger(WebConfig.class);
+
+
+    // Ruta pública de los archivos subidos
+    public static final String UPLOADS_PATTERN = "/uploads/**";
 
 
-        // Logger para registrar eventos importantes
-        private static final Logger logger = LoggerFactory.getLogger(WebConfig.class);
+    // Variable de entorno para la ruta de almacenamiento
+    @Value("${UPLOAD_PATH}")
+    private String uploadPath;
 
 
-        /**
-         * Configura los manejadores de recursos estáticos.
-         * Registra un ResourceHandler para servir archivos desde un directorio externo especificado
-         * por la variable de entorno UPLOAD_PATH.
-         *
-         * @param registry el registro de manejadores de recursos
-         */
-        @Override
-        public void addResourceHandlers(ResourceHandlerRegistry registry) {
-            // Obtener la variable UPLOAD_PATH desde las propiedades del sistema
-            String uploadPath = System.getProperty("UPLOAD_PATH");
+    // Tiempo de caché de los archivos guardados por contenido (su contenido nunca cambia)
+    @Value("${uploads.cache.immutable-max-age-days:365}")
+    private long immutableMaxAgeDays;
 
 
-            // Verificar si la variable UPLOAD_PATH está configurada
-            if (uploadPath != null && !uploadPath.isEmpty()) {
-                logger.info("UPLOAD_PATH configurado correctamente: {}", uploadPath);
+    // Tiempo de caché de los archivos antiguos con nombre aleatorio, que se revalidan con ETag y Last-Modified
+    @Value("${uploads.cache.legacy-max-age-seconds:3600}")
+    private long legacyMaxAgeSeconds;
 
 
-                // Configurar Spring para servir archivos desde la ruta obtenida
-                //Cuando el servidor reciba una solicitud que coincida con /uploads/**,
-                // buscará el archivo en la ruta física uploadPath del sistema de archivos del servidor.
-                registry.addResourceHandler("/uploads/**")
-                        .addResourceLocations("file:" + uploadPath + "/");
-            } else {
-                logger.error("La variable de entorno UPLOAD_PATH no está configurada o está vacía.");
-            }
-        }
+    // Tamaño a partir del cual los archivos se envían con sendfile en lugar de copiarlos
+    @Value("${uploads.sendfile.min-size-bytes:49152}")
+    private long sendfileMinSize;
+
+
+    /**
+     * Manejador de los archivos subidos. Se declara como bean para que Spring lo inicialice
+     * (resolución de las ubicaciones y de los tipos de contenido).
+     */
+    @Bean
+    public UploadResourceHandler uploadResourceHandler() {
+        logger.info("Sirviendo los archivos subidos desde {}", uploadPath);
+
+        UploadResourceHandler handler = new UploadResourceHandler(
+                Duration.ofDays(immutableMaxAgeDays), Duration.ofSeconds(legacyMaxAgeSeconds), sendfileMinSize);
+        handler.setLocations(List.of(new FileSystemResource(Paths.get(uploadPath).toAbsolutePath() + "/")));
+        handler.setResourceResolvers(List.of(
+                new EncodedResourceResolver(), new ShardedResourceResolver(), new PathResourceResolver()));
+        return handler;
     }
 
 
+    /**
+     * Asocia `/uploads/**` al manejador de archivos subidos, después de los controladores.
+     */
+    @Bean
+    public SimpleUrlHandlerMapping uploadsHandlerMapping(UploadResourceHandler uploadResourceHandler) {
+        SimpleUrlHandlerMapping mapping = new SimpleUrlHandlerMapping(Map.of(UPLOADS_PATTERN, uploadResourceHandler));
+        mapping.setOrder(Ordered.LOWEST_PRECEDENCE - 2);
+        return mapping;
+    }
+}
@@ -2,13 +2,16 @@ package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.config;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageChannel;
 import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.simp.stomp.StompCommand;
 import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.Authentication;
@@ -16,12 +19,47 @@ import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBr
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
 
+/**
+ * Configuración de STOMP sobre WebSocket.
+ *
+ * Por defecto los mensajes pasan por el broker simple de Spring, que guarda las suscripciones en memoria:
+ * solo sirve con una instancia de la aplicación. Con `websocket.broker.relay.enabled=true` se reenvían al
+ * plugin STOMP de RabbitMQ, que comparten todas las instancias. Los destinos de usuario
+ * (`/user/queue/...`) se resuelven entonces entre instancias: cada una publica sus sesiones en
+ * `USER_REGISTRY_BROADCAST`, y un mensaje para un usuario que no tiene sesiones conocidas se reenvía a
+ * `UNRESOLVED_USER_BROADCAST` para que lo entregue la instancia en la que está conectado.
+ */
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     private static final Logger logger = LoggerFactory.getLogger(WebSocketConfig.class);
 
+    public static final String USER_REGISTRY_BROADCAST = "/topic/simp-user-registry";
+    public static final String UNRESOLVED_USER_BROADCAST = "/topic/unresolved-user-destination";
+
+    @Value("${websocket.broker.relay.enabled:false}")
+    private boolean relayEnabled;
+
+    @Value("${websocket.broker.relay.host:localhost}")
+    private String relayHost;
+
+    @Value("${websocket.broker.relay.port:61613}")
+    private int relayPort;
+
+    @Value("${websocket.broker.relay.virtual-host:/}")
+    private String relayVirtualHost;
+
+    @Value("${websocket.broker.relay.login:guest}")
+    private String relayLogin;
+
+    @Value("${websocket.broker.relay.passcode:guest}")
+    private String relayPasscode;
+
+    // Tiempo que RabbitMQ conserva la cola de una sesión sin consumidores antes de borrarla
+    @Value("${websocket.broker.relay.user-queue-expires-ms:60000}")
+    private long userQueueExpiresMs;
+
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
         registry.addEndpoint("/ws")
@@ -31,7 +69,24 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     @Override
     public void configureMessageBroker(MessageBrokerRegistry registry) {
-        registry.enableSimpleBroker("/queue", "/topic");
+        if (relayEnabled) {
+            // Las sesiones de los clientes y la conexión de sistema (la que usa SimpMessagingTemplate)
+            // se autentican en RabbitMQ con el mismo usuario
+            registry.enableStompBrokerRelay("/queue", "/topic")
+                    .setRelayHost(relayHost)
+                    .setRelayPort(relayPort)
+                    .setVirtualHost(relayVirtualHost)
+                    .setClientLogin(relayLogin)
+                    .setClientPasscode(relayPasscode)
+                    .setSystemLogin(relayLogin)
+                    .setSystemPasscode(relayPasscode)
+                    .setUserRegistryBroadcast(USER_REGISTRY_BROADCAST)
+                    .setUserDestinationBroadcast(UNRESOLVED_USER_BROADCAST);
+            logger.info("Mensajería STOMP a través del broker {}:{}.", relayHost, relayPort);
+        } else {
+            registry.enableSimpleBroker("/queue", "/topic");
+            logger.info("Mensajería STOMP con el broker simple en memoria; solo para una instancia.");
+        }
         registry.setUserDestinationPrefix("/user");
     }
 
@@ -55,6 +110,14 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                     logger.warn("⚠️ No hay autenticación disponible para WebSocket.");
                 }
 
+                // Cada suscripción a un destino de usuario crea en RabbitMQ una cola por sesión
+                // (p. ej. /queue/notifications-user{sesión}); así se borra cuando el cliente se desconecta
+                StompHeaderAccessor stompAccessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+                if (relayEnabled && stompAccessor != null && StompCommand.SUBSCRIBE.equals(stompAccessor.getCommand())
+                        && stompAccessor.getDestination() != null && stompAccessor.getDestination().startsWith("/user/")) {
+                    stompAccessor.setNativeHeader("x-expires", String.valueOf(userQueueExpiresMs));
+                }
+
                 return message;
             }
         });
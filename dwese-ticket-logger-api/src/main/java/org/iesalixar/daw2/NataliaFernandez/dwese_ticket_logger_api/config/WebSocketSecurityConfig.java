@@ -18,6 +18,7 @@ public class WebSocketSecurityConfig {
         http
                 .securityMatcher("/ws/**")
                 .authorizeHttpRequests(auth -> auth
+                        .requestMatchers("/ws/notifications", "/ws/notifications/**").authenticated() // Notificaciones de cada usuario
                         .anyRequest().permitAll()
                 )
                 .csrf(csrf -> csrf.disable())
@@ -0,0 +1,70 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.controllers;
+
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.SpendingRollupDTO;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities.SpendingDimension;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.services.SpendingRollupService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/v1/ticket-logger/analytics")
+public class AnalyticsController {
+
+    private static final Logger logger = LoggerFactory.getLogger(AnalyticsController.class);
+
+    @Autowired
+    private SpendingRollupService spendingRollupService;
+
+    /**
+     * Obtiene el gasto mensual por supermercado, provincia, región o categoría.
+     *
+     * @param dimension   Dimensión por la que se agrupa el gasto.
+     * @param from        Primer mes (yyyy-MM), por defecto once meses antes de `to`.
+     * @param to          Último mes (yyyy-MM), por defecto el mes actual.
+     * @param dimensionId ID de un único supermercado, provincia, región o categoría, opcional.
+     * @return Gasto de cada mes y elemento de la dimensión.
+     */
+    @GetMapping
+    public ResponseEntity<List<SpendingRollupDTO>> getSpending(
+            @RequestParam SpendingDimension dimension,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM") YearMonth from,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM") YearMonth to,
+            @RequestParam(required = false) Long dimensionId) {
+        YearMonth lastMonth = to != null ? to : YearMonth.now();
+        YearMonth firstMonth = from != null ? from : lastMonth.minusMonths(11);
+        try {
+            return ResponseEntity.ok(spendingRollupService.getSpending(dimension, firstMonth, lastMonth, dimensionId));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Consulta de analítica no válida: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            logger.error("Error al obtener la analítica de gasto: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * Reconstruye la tabla de gasto mensual a partir de todos los tickets (por ejemplo, tras una
+     * carga de datos histórica o un cambio de supermercado o categoría).
+     *
+     * @return Número de meses reconstruidos.
+     */
+    @PostMapping("/rebuild")
+    public ResponseEntity<Map<String, Long>> rebuild() {
+        try {
+            return ResponseEntity.ok(Map.of("months", spendingRollupService.rebuild()));
+        } catch (Exception e) {
+            logger.error("Error al reconstruir la analítica de gasto: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+}
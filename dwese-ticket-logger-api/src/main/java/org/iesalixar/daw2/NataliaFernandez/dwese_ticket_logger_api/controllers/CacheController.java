@@ -0,0 +1,53 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.controllers;
+
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.CacheRegionStatsDTO;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.services.CacheStatisticsService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/v1/ticket-logger/cache")
+public class CacheController {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheController.class);
+
+    @Autowired
+    private CacheStatisticsService cacheStatisticsService;
+
+    /**
+     * Obtiene las estadísticas (aciertos, fallos y proporción de aciertos) de cada región de la caché.
+     *
+     * @return Lista de estadísticas por región.
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<List<CacheRegionStatsDTO>> getStats() {
+        try {
+            return ResponseEntity.ok(cacheStatisticsService.getRegionStatistics());
+        } catch (Exception e) {
+            logger.error("Error al obtener las estadísticas de la caché: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * Vacía la caché de segundo nivel.
+     *
+     * @return Respuesta vacía.
+     */
+    @DeleteMapping
+    public ResponseEntity<Void> evictAll() {
+        try {
+            cacheStatisticsService.evictAll();
+            return ResponseEntity.noContent().build();
+        } catch (Exception e) {
+            logger.error("Error al vaciar la caché: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+}
@@ -2,7 +2,10 @@ package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.controllers;
 
 import jakarta.validation.Valid;
 import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.CategoryCreateDTO;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.CursorPageDTO;
 import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.CategoryDTO;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.CategoryTreeDTO;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.ProductPageDTO;
 import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.repositories.CategoryRepository;
 import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities.Category;
 import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.services.CategoryService;
@@ -43,24 +46,73 @@ public class CategoryController {
     private FileStorageService fileStorageService;
 
     /**
-     * Lista todas las categorías.
+     * Lista las categorías paginadas por cursor.
      *
-     * @return ResponseEntity con la lista de categorías o un error en caso de fallo.
+     * @param name     filtro opcional por nombre (contiene, sin distinguir mayúsculas).
+     * @param parentId filtro opcional por categoría padre.
+     * @param sort     ordenación: "name" o "id", con ",desc" opcional.
+     * @param cursor   cursor `nextCursor` de la página anterior; vacío para la primera página.
+     * @param size     número de categorías por página.
+     * @return ResponseEntity con la página de categorías, o 400 si la ordenación o el cursor no son válidos.
      */
     @GetMapping
-    public ResponseEntity<List<CategoryDTO>> getAllCategories() {
-        logger.info("Solicitando la lista de todas las categorías...");
-
+    public ResponseEntity<?> getCategories(@RequestParam(required = false) String name,
+                                           @RequestParam(required = false) Long parentId,
+                                           @RequestParam(required = false) String sort,
+                                           @RequestParam(required = false) String cursor,
+                                           @RequestParam(defaultValue = "20") int size) {
+        logger.info("Solicitando categorías: nombre {}, padre {}, orden {}, tamaño {}", name, parentId, sort, size);
         try {
-            List<CategoryDTO> categories = categoryService.getAllCategories();
-            logger.info("Se han encontrado {} categorías.", categories.size());
-            return ResponseEntity.ok(categories);
+            CursorPageDTO<CategoryDTO> page = categoryService.getCategories(name, parentId, sort, cursor, size);
+            logger.info("Se han cargado {} categorías.", page.getContent().size());
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Parámetros de listado de categorías no válidos: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
             logger.error("Error al listar las categorías: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
         }
     }
 
+    /**
+     * Obtiene el árbol completo de categorías, con el número de productos de cada subárbol.
+     *
+     * @return ResponseEntity con las categorías principales y sus subcategorías.
+     */
+    @GetMapping("/tree")
+    public ResponseEntity<List<CategoryTreeDTO>> getCategoryTree() {
+        try {
+            return ResponseEntity.ok(categoryService.getCategoryTree());
+        } catch (Exception e) {
+            logger.error("Error al obtener el árbol de categorías: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * Lista los productos de una categoría y de todas sus subcategorías.
+     *
+     * @param id   ID de la categoría.
+     * @param page Número de página (empezando en 0).
+     * @param size Número de productos por página.
+     * @return ResponseEntity con la página de productos o 404 si la categoría no existe.
+     */
+    @GetMapping("/{id}/products")
+    public ResponseEntity<ProductPageDTO> getProductsInSubtree(@PathVariable Long id,
+                                                               @RequestParam(defaultValue = "0") int page,
+                                                               @RequestParam(defaultValue = "20") int size) {
+        try {
+            return ResponseEntity.ok(categoryService.getProductsInSubtree(id, page, size));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Error al listar los productos de la categoría con ID {}: {}", id, e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        } catch (Exception e) {
+            logger.error("Error inesperado al listar los productos de la categoría con ID {}: {}", id, e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
     /**
      * Obtiene una categoría específica por su ID.
      *
@@ -2,6 +2,7 @@ package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.controllers;
 
 import jakarta.validation.Valid;
 import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.LocationCreateDTO;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.CursorPageDTO;
 import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.LocationDTO;
 import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.services.LocationService;
 import org.slf4j.Logger;
@@ -33,12 +34,21 @@ public class LocationController {
     private MessageSource messageSource;
 
     @GetMapping
-    public ResponseEntity<List<LocationDTO>> getAllLocations() {
-        logger.info("Solicitando la lista de todas las ubicaciones...");
+    public ResponseEntity<?> getLocations(@RequestParam(required = false) String city,
+                                          @RequestParam(required = false) Long supermarketId,
+                                          @RequestParam(required = false) Long provinceId,
+                                          @RequestParam(required = false) String sort,
+                                          @RequestParam(required = false) String cursor,
+                                          @RequestParam(defaultValue = "20") int size) {
+        logger.info("Solicitando ubicaciones: ciudad {}, supermercado {}, provincia {}, orden {}, tamaño {}",
+                city, supermarketId, provinceId, sort, size);
         try {
-            List<LocationDTO> locationDTOs = locationService.getAllLocations();
-            logger.info("Se han cargado {} ubicaciones.", locationDTOs.size());
-            return ResponseEntity.ok(locationDTOs);
+            CursorPageDTO<LocationDTO> page = locationService.getLocations(city, supermarketId, provinceId, sort, cursor, size);
+            logger.info("Se han cargado {} ubicaciones.", page.getContent().size());
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Parámetros de listado de ubicaciones no válidos: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
             logger.error("Error al listar las ubicaciones: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
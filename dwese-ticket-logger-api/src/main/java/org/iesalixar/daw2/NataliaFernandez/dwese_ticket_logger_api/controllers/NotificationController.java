@@ -1,9 +1,17 @@
 package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.controllers;
 
 import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.NotificationCreateDTO;
-import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.NotificationDTO;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.NotificationReadDTO;
 import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.services.NotificationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -12,25 +20,98 @@ import reactor.core.publisher.Mono;
 @RequestMapping("/ws/notifications")
 public class NotificationController {
 
+    private static final Logger logger = LoggerFactory.getLogger(NotificationController.class);
+
     @Autowired
     private NotificationService notificationService;
 
 
+    /**
+     * Lista las notificaciones del usuario autenticado, de la más reciente a la más antigua, paginadas por cursor.
+     *
+     * @param unread si es true solo se devuelven las no leídas.
+     * @param cursor cursor `nextCursor` de la página anterior; vacío para la primera página.
+     * @param size   número de notificaciones por página.
+     * @return la página de notificaciones, o 400 si el cursor no es válido.
+     */
     @GetMapping
-    public Flux<NotificationDTO> getAllNotifications() {
-        // Llama al servicio para obtener todas las notificaciones
-        return notificationService.getAllNotifications();
+    public Mono<ResponseEntity<?>> getNotifications(@RequestParam(defaultValue = "false") boolean unread,
+                                                    @RequestParam(required = false) String cursor,
+                                                    @RequestParam(defaultValue = "20") int size) {
+        return notificationService.getNotifications(unread, cursor, size)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .onErrorResume(IllegalArgumentException.class, e -> {
+                    logger.warn("Parámetros de listado de notificaciones no válidos: {}", e.getMessage());
+                    return Mono.just(ResponseEntity.badRequest().body(e.getMessage()));
+                })
+                .onErrorResume(e -> {
+                    logger.error("Error al listar las notificaciones: {}", e.getMessage());
+                    return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build());
+                });
     }
 
-/**
- * Crea una nueva notificación y la distribuye a los clientes WebSocket.
- *
- * @param notificationCreateDTO DTO con los datos necesarios para crear la notificación.
- * @return Un Mono con la notificación creada en formato DTO.
- */
-@PostMapping
-public Mono<NotificationDTO> createNotification(@RequestBody NotificationCreateDTO notificationCreateDTO) {
-    // Llama al servicio para guardar la notificación
-    return notificationService.saveNotification(notificationCreateDTO);
-}
+    /**
+     * Flujo SSE con las notificaciones nuevas del usuario autenticado y los cambios en los tickets.
+     * Sustituye a consultar periódicamente el listado. Cada evento lleva un ID; al reconectarse, el cliente
+     * lo envía en `Last-Event-ID` (o en el parámetro `lastEventId`) y recibe los eventos que se ha perdido.
+     *
+     * @param lastEventIdHeader ID del último evento recibido, enviado por EventSource al reconectarse.
+     * @param lastEventId       ID del último evento recibido, para clientes que no pueden enviar la cabecera.
+     * @return el flujo de eventos, o 400 si el ID no es válido.
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<Flux<ServerSentEvent<Object>>> streamEvents(
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventIdHeader,
+            @RequestParam(required = false) String lastEventId) {
+        try {
+            Flux<ServerSentEvent<Object>> events = notificationService.streamEvents(
+                    lastEventIdHeader != null ? lastEventIdHeader : lastEventId);
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.CACHE_CONTROL, "no-store")
+                    .header("X-Accel-Buffering", "no") // Sin búfer en el proxy, para que cada evento llegue al momento
+                    .body(events);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Flujo de eventos solicitado con un ID no válido: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Número de notificaciones sin leer del usuario autenticado.
+     *
+     * @return el número de notificaciones sin leer.
+     */
+    @GetMapping("/unread-count")
+    public Mono<Long> getUnreadCount() {
+        return notificationService.getUnreadCount();
+    }
+
+    /**
+     * Marca como leídas las notificaciones indicadas o, si no se indica ninguna, todas las del usuario autenticado.
+     *
+     * @param notificationReadDTO IDs de las notificaciones a marcar; opcional.
+     * @return el número de notificaciones marcadas.
+     */
+    @PostMapping("/read")
+    public Mono<Long> markAsRead(@RequestBody(required = false) NotificationReadDTO notificationReadDTO) {
+        return notificationService.markAsRead(notificationReadDTO != null ? notificationReadDTO.getIds() : null);
+    }
+
+    /**
+     * Crea una nueva notificación y la envía por WebSocket a su destinatario.
+     *
+     * @param notificationCreateDTO datos de la notificación; solo un administrador puede indicar otro destinatario.
+     * @return la notificación creada, o 403 si un usuario que no es administrador indica otro destinatario.
+     */
+    @PostMapping
+    public Mono<ResponseEntity<?>> createNotification(@RequestBody NotificationCreateDTO notificationCreateDTO) {
+        try {
+            // Llama al servicio para guardar la notificación
+            return notificationService.saveNotification(notificationCreateDTO)
+                    .<ResponseEntity<?>>map(ResponseEntity::ok);
+        } catch (AccessDeniedException e) {
+            logger.warn("Notificación rechazada para {}: {}", notificationCreateDTO.getUsername(), e.getMessage());
+            return Mono.just(ResponseEntity.status(HttpStatus.FORBIDDEN).body(e.getMessage()));
+        }
+    }
 }
@@ -0,0 +1,35 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.controllers;
+
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.NotificationDeliveryMetricsDTO;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.services.NotificationDeliveryService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/v1/ticket-logger/notification-metrics")
+public class NotificationMetricsController {
+
+    private static final Logger logger = LoggerFactory.getLogger(NotificationMetricsController.class);
+
+    @Autowired
+    private NotificationDeliveryService notificationDeliveryService;
+
+    /**
+     * Obtiene los contadores del envío de notificaciones: encoladas, descartadas, pendientes y enviadas.
+     *
+     * @return Métricas del envío de notificaciones desde que arrancó la aplicación.
+     */
+    @GetMapping
+    public ResponseEntity<NotificationDeliveryMetricsDTO> getMetrics() {
+        try {
+            return ResponseEntity.ok(notificationDeliveryService.getMetrics());
+        } catch (Exception e) {
+            logger.error("Error al obtener las métricas de notificaciones: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.controllers;
+
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.ProductSearchPageDTO;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.services.ProductSearchService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/v1/ticket-logger/products")
+public class ProductController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductController.class);
+
+    @Autowired
+    private ProductSearchService productSearchService;
+
+    /**
+     * Busca productos por nombre, sin distinguir mayúsculas ni acentos, ordenados por relevancia.
+     *
+     * @param q    Texto a buscar.
+     * @param page Número de página (empezando en 0).
+     * @param size Número de productos por página.
+     * @return Página de productos encontrados.
+     */
+    @GetMapping("/search")
+    public ResponseEntity<ProductSearchPageDTO> searchProducts(@RequestParam String q,
+                                                               @RequestParam(defaultValue = "0") int page,
+                                                               @RequestParam(defaultValue = "20") int size) {
+        try {
+            return ResponseEntity.ok(productSearchService.search(q, page, size));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Búsqueda de productos no válida: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            logger.error("Error al buscar productos: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+}
@@ -2,6 +2,7 @@ package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.controllers;
 
 import jakarta.validation.Valid;
 import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.ProvinceCreateDTO;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.CursorPageDTO;
 import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.ProvinceDTO;
 import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.services.ProvinceService;
 import org.slf4j.Logger;
@@ -32,16 +33,29 @@ public class ProvinceController {
     private MessageSource messageSource;
 
     /**
-     * Lista todas las provincias.
-     * @return ResponseEntity con la lista de provincias.
+     * Lista las provincias paginadas por cursor.
+     *
+     * @param name     filtro opcional por nombre (contiene, sin distinguir mayúsculas).
+     * @param regionId filtro opcional por región.
+     * @param sort     ordenación: "name", "code" o "id", con ",desc" opcional.
+     * @param cursor   cursor `nextCursor` de la página anterior; vacío para la primera página.
+     * @param size     número de provincias por página.
+     * @return ResponseEntity con la página de provincias, o 400 si la ordenación o el cursor no son válidos.
      */
     @GetMapping
-    public ResponseEntity<List<ProvinceDTO>> getAllProvinces() {
-        logger.info("Solicitando la lista de todas las provincias...");
+    public ResponseEntity<?> getProvinces(@RequestParam(required = false) String name,
+                                          @RequestParam(required = false) Long regionId,
+                                          @RequestParam(required = false) String sort,
+                                          @RequestParam(required = false) String cursor,
+                                          @RequestParam(defaultValue = "20") int size) {
+        logger.info("Solicitando provincias: nombre {}, región {}, orden {}, tamaño {}", name, regionId, sort, size);
         try {
-            List<ProvinceDTO> provinceDTOs = provinceService.getAllProvinces();
-            logger.info("Se han cargado {} provincias.", provinceDTOs.size());
-            return ResponseEntity.ok(provinceDTOs);
+            CursorPageDTO<ProvinceDTO> page = provinceService.getProvinces(name, regionId, sort, cursor, size);
+            logger.info("Se han cargado {} provincias.", page.getContent().size());
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Parámetros de listado de provincias no válidos: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
             logger.error("Error al listar las provincias: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
@@ -3,6 +3,7 @@ package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.controllers;
 import jakarta.validation.Valid;
 
 import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.RegionCreateDTO;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.CursorPageDTO;
 import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.RegionDTO;
 import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities.Region;
 import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.mappers.RegionMapper;
@@ -13,9 +14,6 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.MessageSource;
 
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
-import org.springframework.data.web.PageableDefault;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
@@ -45,13 +43,28 @@ public class RegionController {
     @Autowired
     private RegionMapper regionMapper;
 
+    /**
+     * Lista las regiones paginadas por cursor.
+     *
+     * @param name   filtro opcional por nombre (contiene, sin distinguir mayúsculas).
+     * @param sort   ordenación: "name", "code" o "id", con ",desc" opcional.
+     * @param cursor cursor `nextCursor` de la página anterior; vacío para la primera página.
+     * @param size   número de regiones por página.
+     * @return ResponseEntity con la página de regiones, o 400 si la ordenación o el cursor no son válidos.
+     */
     @GetMapping
-    public ResponseEntity<Page<RegionDTO>> getAllRegions(@PageableDefault(size = 10, sort = "name") Pageable pageable) {
-        logger.info("Solicitando todas las regiones con paginación: página {}, tamaño {}", pageable.getPageNumber(), pageable.getPageSize());
+    public ResponseEntity<?> getRegions(@RequestParam(required = false) String name,
+                                        @RequestParam(required = false) String sort,
+                                        @RequestParam(required = false) String cursor,
+                                        @RequestParam(defaultValue = "20") int size) {
+        logger.info("Solicitando regiones: nombre {}, orden {}, tamaño {}", name, sort, size);
         try {
-            Page<RegionDTO> regions = regionService.getAllRegions(pageable);
-            logger.info("Se han encontrado {} regiones.", regions.getTotalElements());
-            return ResponseEntity.ok(regions);
+            CursorPageDTO<RegionDTO> page = regionService.getRegions(name, sort, cursor, size);
+            logger.info("Se han cargado {} regiones.", page.getContent().size());
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Parámetros de listado de regiones no válidos: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
             logger.error("Error al listar las regiones: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
@@ -0,0 +1,48 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.controllers;
+
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.SqlEndpointMetricsDTO;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.services.SqlMetricsService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/v1/ticket-logger/sql-metrics")
+public class SqlMetricsController {
+
+    private static final Logger logger = LoggerFactory.getLogger(SqlMetricsController.class);
+
+    @Autowired
+    private SqlMetricsService sqlMetricsService;
+
+    /**
+     * Obtiene, por endpoint, las sentencias SQL, el tiempo JDBC y la espera de conexiones acumulados.
+     *
+     * @return Lista de métricas por endpoint, empezando por el que más tiempo ha pasado en la base de datos.
+     */
+    @GetMapping
+    public ResponseEntity<List<SqlEndpointMetricsDTO>> getMetrics() {
+        try {
+            return ResponseEntity.ok(sqlMetricsService.getMetrics());
+        } catch (Exception e) {
+            logger.error("Error al obtener las métricas SQL: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * Pone a cero las métricas SQL de todos los endpoints.
+     *
+     * @return Respuesta vacía.
+     */
+    @DeleteMapping
+    public ResponseEntity<Void> resetMetrics() {
+        sqlMetricsService.reset();
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -1,6 +1,7 @@
 package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.controllers;
 import jakarta.validation.Valid;
 import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.SupermarketCreateDTO;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.CursorPageDTO;
 import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.SupermarketDTO;
 import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.services.SupermarketService;
 import org.slf4j.Logger;
@@ -30,18 +31,29 @@ public class SupermarketController {
     private MessageSource messageSource;
 
     /**
-     * Lista todos los supermercados.
-     * @return ResponseEntity con la lista de supermercados.
+     * Lista los supermercados paginados por cursor.
+     *
+     * @param name   filtro opcional por nombre (contiene, sin distinguir mayúsculas).
+     * @param sort   ordenación: "name" o "id", con ",desc" opcional.
+     * @param cursor cursor `nextCursor` de la página anterior; vacío para la primera página.
+     * @param size   número de supermercados por página.
+     * @return ResponseEntity con la página de supermercados, o 400 si la ordenación o el cursor no son válidos.
      */
     @GetMapping
-    public ResponseEntity<List<SupermarketDTO>> getAllSupermarkets() {
-        logger.info("Solicitando la lista de todos los supermercados...");
+    public ResponseEntity<?> getSupermarkets(@RequestParam(required = false) String name,
+                                             @RequestParam(required = false) String sort,
+                                             @RequestParam(required = false) String cursor,
+                                             @RequestParam(defaultValue = "20") int size) {
+        logger.info("Solicitando supermercados: nombre {}, orden {}, tamaño {}", name, sort, size);
         try {
-            List<SupermarketDTO> supermarketDTOs = supermarketService.getAllSupermarkets();
-            logger.info("Se han cargado {} supermercados.", supermarketDTOs.size());
-            return ResponseEntity.ok(supermarketDTOs);
+            CursorPageDTO<SupermarketDTO> page = supermarketService.getSupermarkets(name, sort, cursor, size);
+            logger.info("Se han cargado {} supermercados.", page.getContent().size());
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Parámetros de listado de supermercados no válidos: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
-            logger.error("Error al listar los supermercados: {}", e.getMessage());
+            logger.error("Error al listar las supermercados: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
         }
     }
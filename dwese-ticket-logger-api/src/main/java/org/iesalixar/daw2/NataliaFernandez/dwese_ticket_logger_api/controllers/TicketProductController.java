@@ -1,18 +1,33 @@
 package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.controllers;
 
 import jakarta.validation.Valid;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.ProductPriceDTO;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.TicketImportDTO;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.TicketImportResultDTO;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.TicketPageDTO;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.TicketProductBatchDTO;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.TicketProductBatchResultDTO;
 import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities.Product;
 import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities.Ticket;
 import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.repositories.*;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.services.RabbitMQProducerService;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.services.TicketImportService;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.services.TicketService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigDecimal;
+import java.util.Date;
 import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
@@ -27,18 +42,37 @@ public class TicketProductController {
     private TicketRepository ticketRepository;
 
     @Autowired
-    private ProductRepository productRepository;
+    private TicketService ticketService;
+
+    @Autowired
+    private TicketImportService ticketImportService;
+
+    @Autowired
+    private RabbitMQProducerService rabbitMQProducerService;
 
     /**
-     * Obtiene todos los tickets.
+     * Lista los tickets del más reciente al más antiguo, paginados por cursor.
      *
-     * @return Lista de tickets.
+     * @param from       Fecha mínima (incluida), opcional.
+     * @param to         Fecha máxima (excluida), opcional.
+     * @param locationId ID de la ubicación, opcional.
+     * @param cursor     Cursor devuelto en la página anterior, opcional.
+     * @param size       Número de tickets por página.
+     * @return Página de tickets con el cursor de la siguiente.
      */
     @GetMapping
-    public ResponseEntity<List<Ticket>> getAllTickets() {
+    public ResponseEntity<TicketPageDTO> getAllTickets(
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd'T'HH:mm") Date from,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd'T'HH:mm") Date to,
+            @RequestParam(required = false) Long locationId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
         try {
-            List<Ticket> tickets = ticketRepository.findAll();
+            TicketPageDTO tickets = ticketService.getTickets(from, to, locationId, cursor, size);
             return ResponseEntity.ok(tickets);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Error al listar los tickets: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
         } catch (Exception e) {
             logger.error("Error al listar los tickets: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
@@ -67,8 +101,11 @@ public class TicketProductController {
     @PostMapping
     public ResponseEntity<Ticket> createTicket(@Valid @RequestBody Ticket ticket) {
         try {
-            Ticket savedTicket = ticketRepository.save(ticket);
+            Ticket savedTicket = ticketService.createTicket(ticket);
             return ResponseEntity.status(HttpStatus.CREATED).body(savedTicket);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Error al crear el ticket: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
         } catch (Exception e) {
             logger.error("Error al crear el ticket: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
@@ -84,13 +121,13 @@ public class TicketProductController {
      */
     @PutMapping("/{id}")
     public ResponseEntity<Ticket> updateTicket(@PathVariable Long id, @Valid @RequestBody Ticket ticket) {
-        if (!ticketRepository.existsById(id)) {
-            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
-        }
-        ticket.setId(id);
         try {
-            Ticket updatedTicket = ticketRepository.save(ticket);
-            return ResponseEntity.ok(updatedTicket);
+            return ticketService.updateTicket(id, ticket)
+                    .map(ResponseEntity::ok)
+                    .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).build());
+        } catch (IllegalArgumentException e) {
+            logger.warn("Error al actualizar el ticket: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
         } catch (Exception e) {
             logger.error("Error al actualizar el ticket: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
@@ -105,11 +142,10 @@ public class TicketProductController {
      */
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteTicket(@PathVariable Long id) {
-        if (!ticketRepository.existsById(id)) {
-            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
-        }
         try {
-            ticketRepository.deleteById(id);
+            if (!ticketService.deleteTicket(id)) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+            }
             return ResponseEntity.noContent().build();
         } catch (Exception e) {
             logger.error("Error al eliminar el ticket: {}", e.getMessage());
@@ -118,25 +154,22 @@ public class TicketProductController {
     }
 
     /**
-     * Añade un producto existente a un ticket.
+     * Añade unidades de un producto existente a un ticket, con su precio actual.
      *
      * @param ticketId  ID del ticket.
      * @param productId ID del producto.
+     * @param quantity  Número de unidades.
      * @return Ticket actualizado.
      */
     @PostMapping("/{ticketId}/products/{productId}")
-    public ResponseEntity<Ticket> addProductToTicket(@PathVariable Long ticketId, @PathVariable Long productId) {
-        Optional<Ticket> ticketOpt = ticketRepository.findById(ticketId);
-        Optional<Product> productOpt = productRepository.findById(productId);
-
-        if (ticketOpt.isEmpty() || productOpt.isEmpty()) {
-            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+    public ResponseEntity<Ticket> addProductToTicket(@PathVariable Long ticketId, @PathVariable Long productId,
+                                                     @RequestParam(defaultValue = "1") int quantity) {
+        if (quantity < 1) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
         }
-
-        Ticket ticket = ticketOpt.get();
-        ticket.getProducts().add(productOpt.get());
-        Ticket updatedTicket = ticketRepository.save(ticket);
-        return ResponseEntity.ok(updatedTicket);
+        return ticketService.addProduct(ticketId, productId, quantity)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).build());
     }
 
     /**
@@ -145,28 +178,22 @@ public class TicketProductController {
      * @param ticketId     ID del ticket.
      * @param productName  Nombre del producto.
      * @param productPrice Precio del producto.
+     * @param quantity     Número de unidades.
      * @return Ticket actualizado.
      */
     @PostMapping("/{ticketId}/products")
     public ResponseEntity<Ticket> addNewProductToTicket(
             @PathVariable Long ticketId,
             @RequestParam String productName,
-            @RequestParam BigDecimal productPrice) {
-
-        Optional<Ticket> ticketOpt = ticketRepository.findById(ticketId);
-        if (ticketOpt.isEmpty()) {
-            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+            @RequestParam BigDecimal productPrice,
+            @RequestParam(defaultValue = "1") int quantity) {
+        if (quantity < 1) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
         }
 
-        Ticket ticket = ticketOpt.get();
-        Product newProduct = new Product();
-        newProduct.setName(productName);
-        newProduct.setPrice(productPrice);
-        productRepository.save(newProduct);
-
-        ticket.getProducts().add(newProduct);
-        Ticket updatedTicket = ticketRepository.save(ticket);
-        return ResponseEntity.ok(updatedTicket);
+        return ticketService.addNewProduct(ticketId, productName, productPrice, quantity)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).build());
     }
 
     /**
@@ -178,16 +205,87 @@ public class TicketProductController {
      */
     @DeleteMapping("/{ticketId}/products/{productId}")
     public ResponseEntity<Ticket> removeProductFromTicket(@PathVariable Long ticketId, @PathVariable Long productId) {
-        Optional<Ticket> ticketOpt = ticketRepository.findById(ticketId);
-        Optional<Product> productOpt = productRepository.findById(productId);
+        return ticketService.removeProduct(ticketId, productId)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).build());
+    }
 
-        if (ticketOpt.isEmpty() || productOpt.isEmpty()) {
-            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+    /**
+     * Encola un ticket para guardarlo de forma asíncrona a través de RabbitMQ.
+     * El ticket se valida antes de encolarlo; la ubicación y los productos se comprueban al guardarlo.
+     *
+     * @param ticket Ticket a crear.
+     * @return 202 si el broker ha recibido el ticket, o 503 si no está disponible.
+     */
+    @PostMapping("/async")
+    public ResponseEntity<Void> enqueueTicket(@Valid @RequestBody TicketImportDTO ticket) {
+        try {
+            rabbitMQProducerService.sendTicket(ticket);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).build();
+        } catch (AmqpException e) {
+            logger.error("Error al encolar el ticket: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
         }
+    }
 
-        Ticket ticket = ticketOpt.get();
-        ticket.getProducts().remove(productOpt.get());
-        Ticket updatedTicket = ticketRepository.save(ticket);
-        return ResponseEntity.ok(updatedTicket);
+    /**
+     * Importa tickets en bloque desde un cuerpo NDJSON (un ticket JSON por línea).
+     * El cuerpo se procesa a medida que se recibe y los registros erróneos no detienen la importación.
+     *
+     * @param body Flujo NDJSON con los tickets.
+     * @return Número de tickets recibidos, importados y erróneos, con el error de cada registro.
+     */
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<TicketImportResultDTO> importTickets(InputStream body) {
+        try {
+            return ResponseEntity.ok(ticketImportService.importTickets(body));
+        } catch (IOException e) {
+            logger.warn("Error al leer los tickets a importar: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            logger.error("Error al importar los tickets: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * Añade y quita varios productos de un ticket en una sola petición.
+     *
+     * @param ticketId ID del ticket.
+     * @param batch    Productos a añadir (por ID o nuevos, con sus unidades) y IDs de productos a quitar.
+     * @return Número de líneas añadidas, actualizadas y eliminadas, y los nuevos totales del ticket.
+     */
+    @PostMapping("/{ticketId}/products/batch")
+    public ResponseEntity<TicketProductBatchResultDTO> applyProductBatch(@PathVariable Long ticketId,
+                                                                         @Valid @RequestBody TicketProductBatchDTO batch) {
+        try {
+            Optional<TicketProductBatchResultDTO> result = ticketService.applyProductBatch(ticketId, batch);
+            return result.map(ResponseEntity::ok)
+                    .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).build());
+        } catch (IllegalArgumentException e) {
+            logger.warn("Lote de productos no válido para el ticket {}: {}", ticketId, e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            logger.error("Error al modificar los productos del ticket {}: {}", ticketId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * Obtiene el historial de precios pagados por un producto, del más reciente al más antiguo.
+     *
+     * @param productId ID del producto.
+     * @param size      Número máximo de registros.
+     * @return Lista de precios pagados.
+     */
+    @GetMapping("/products/{productId}/prices")
+    public ResponseEntity<List<ProductPriceDTO>> getProductPriceHistory(@PathVariable Long productId,
+                                                                        @RequestParam(defaultValue = "50") int size) {
+        try {
+            return ResponseEntity.ok(ticketService.getPriceHistory(productId, size));
+        } catch (Exception e) {
+            logger.error("Error al obtener el historial de precios del producto {}: {}", productId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
     }
 }
@@ -0,0 +1,161 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.controllers;
+
+import jakarta.validation.Valid;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.UploadCleanupReportDTO;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.UploadSessionCreateDTO;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.UploadSessionDTO;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.services.UploadCleanupService;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.services.UploadSessionService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.NoSuchElementException;
+
+@RestController
+@RequestMapping("/api/v1/ticket-logger/uploads")
+public class UploadController {
+
+    private static final Logger logger = LoggerFactory.getLogger(UploadController.class);
+
+    @Autowired
+    private UploadCleanupService uploadCleanupService;
+
+    @Autowired
+    private UploadSessionService uploadSessionService;
+
+    /**
+     * Inicia una subida por partes.
+     *
+     * @param createDTO Nombre, tamaño total y hash SHA-256 del archivo.
+     * @return La sesión creada, con su ID y la posición del primer bloque (0).
+     */
+    @PostMapping("/sessions")
+    public ResponseEntity<?> createSession(@Valid @RequestBody UploadSessionCreateDTO createDTO) {
+        try {
+            UploadSessionDTO session = uploadSessionService.createSession(createDTO);
+            return ResponseEntity.created(URI.create("/api/v1/ticket-logger/uploads/sessions/" + session.getId())).body(session);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Subida por partes no válida: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            logger.error("Error al iniciar la subida por partes: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error al iniciar la subida.");
+        }
+    }
+
+    /**
+     * Obtiene el estado de una subida, para saber desde qué posición continuar tras un corte.
+     *
+     * @param id ID de la sesión.
+     * @return La sesión con los bytes recibidos.
+     */
+    @GetMapping("/sessions/{id}")
+    public ResponseEntity<?> getSession(@PathVariable String id) {
+        try {
+            return ResponseEntity.ok(uploadSessionService.getSession(id));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        } catch (Exception e) {
+            logger.error("Error al obtener la subida {}: {}", id, e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error al obtener la subida.");
+        }
+    }
+
+    /**
+     * Recibe un bloque de una subida. El cuerpo se escribe en el archivo a medida que llega, sin
+     * cargarlo en memoria. Si la posición no coincide con los bytes recibidos se responde 409 con el
+     * estado actual, para que el cliente continúe desde la posición correcta.
+     *
+     * @param id     ID de la sesión.
+     * @param offset Posición del primer byte del bloque.
+     * @param body   Contenido del bloque.
+     * @return La sesión con los bytes recibidos.
+     */
+    @PutMapping(value = "/sessions/{id}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<?> uploadChunk(@PathVariable String id, @RequestParam long offset, InputStream body) {
+        try {
+            return ResponseEntity.ok(uploadSessionService.appendChunk(id, offset, body));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        } catch (IllegalStateException e) {
+            logger.warn("Bloque rechazado en la subida {}: {}", id, e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(uploadSessionService.getSession(id));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Bloque no válido en la subida {}: {}", id, e.getMessage());
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IOException e) {
+            logger.warn("Bloque interrumpido en la subida {}: {}", id, e.getMessage());
+            return ResponseEntity.badRequest().body("El bloque se ha interrumpido; consulta la subida para continuar.");
+        } catch (Exception e) {
+            logger.error("Error al recibir un bloque de la subida {}: {}", id, e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error al recibir el bloque.");
+        }
+    }
+
+    /**
+     * Finaliza una subida: comprueba el tamaño y el hash del archivo recibido y lo guarda.
+     *
+     * @param id ID de la sesión.
+     * @return La sesión con el nombre y la URL del archivo guardado.
+     */
+    @PostMapping("/sessions/{id}/complete")
+    public ResponseEntity<?> completeSession(@PathVariable String id) {
+        try {
+            return ResponseEntity.ok(uploadSessionService.completeSession(id));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            logger.warn("No se ha podido finalizar la subida {}: {}", id, e.getMessage());
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            logger.error("Error al finalizar la subida {}: {}", id, e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error al finalizar la subida.");
+        }
+    }
+
+    /**
+     * Cancela una subida y borra lo recibido.
+     *
+     * @param id ID de la sesión.
+     * @return Respuesta vacía.
+     */
+    @DeleteMapping("/sessions/{id}")
+    public ResponseEntity<?> cancelSession(@PathVariable String id) {
+        try {
+            uploadSessionService.cancelSession(id);
+            return ResponseEntity.noContent().build();
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        } catch (Exception e) {
+            logger.error("Error al cancelar la subida {}: {}", id, e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error al cancelar la subida.");
+        }
+    }
+
+    /**
+     * Lanza la limpieza de archivos subidos huérfanos. Por defecto es una simulación que solo informa
+     * de lo que se borraría.
+     *
+     * @param dryRun Si es false se borran los archivos y se corrigen las referencias.
+     * @return Resultado de la limpieza: archivos revisados y borrados, bytes liberados y filas corregidas.
+     */
+    @PostMapping("/cleanup")
+    public ResponseEntity<UploadCleanupReportDTO> cleanup(@RequestParam(defaultValue = "true") boolean dryRun) {
+        try {
+            return ResponseEntity.ok(uploadCleanupService.cleanup(dryRun));
+        } catch (Exception e) {
+            logger.error("Error al limpiar los archivos subidos: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Clase DTO (Data Transfer Object) con las estadísticas de una región de la caché de segundo nivel.
+ * `hitRatio` es la proporción de lecturas servidas desde la caché (entre 0 y 1).
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class CacheRegionStatsDTO {
+
+    private String region;
+    private long hits;
+    private long misses;
+    private long puts;
+    private double hitRatio;
+}
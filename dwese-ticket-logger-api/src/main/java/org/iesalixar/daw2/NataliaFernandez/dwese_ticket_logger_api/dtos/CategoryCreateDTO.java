@@ -33,4 +33,10 @@ public class CategoryCreateDTO {
 
 
     private MultipartFile imageFile;
+
+    /**
+     * Identificador de una subida por partes ya finalizada, como alternativa a `imageFile`
+     * para imágenes grandes (ver `UploadController`).
+     */
+    private String imageUploadId;
 }
\ No newline at end of file
@@ -3,6 +3,8 @@ package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.util.Map;
+
 /**
  * Clase DTO (Data Transfer Object) que representa una categoría.
  *
@@ -32,6 +34,12 @@ public class CategoryDTO {
      */
     private String image;
 
+    /**
+     * URLs de las versiones reducidas de la imagen ya generadas, por nombre de variante
+     * ("thumb", "small", "medium"). Vacío mientras se generan o si la categoría no tiene imagen.
+     */
+    private Map<String, String> imageVariants;
+
     /**
      * Categoría padre de la categoría actual.
      * Contiene información resumida de la categoría padre.
@@ -0,0 +1,53 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Clase DTO (Data Transfer Object) que representa una categoría dentro del árbol de categorías.
+ *
+ * Además de sus subcategorías, incluye el número de productos asignados directamente a la categoría
+ * y el número total de productos de todo su subárbol.
+ */
+@Getter
+@Setter
+public class CategoryTreeDTO {
+
+    /**
+     * Identificador único de la categoría.
+     */
+    private Long id;
+
+    /**
+     * Nombre de la categoría.
+     */
+    private String name;
+
+    /**
+     * Enlace a la imagen asociada con la categoría.
+     */
+    private String image;
+
+    /**
+     * Identificador de la categoría padre, o null si es una categoría principal.
+     */
+    private Long parentId;
+
+    /**
+     * Número de productos asignados directamente a esta categoría.
+     */
+    private long productCount;
+
+    /**
+     * Número de productos de esta categoría y de todas sus subcategorías.
+     */
+    private long totalProductCount;
+
+    /**
+     * Subcategorías, ordenadas por nombre.
+     */
+    private List<CategoryTreeDTO> children = new ArrayList<>();
+}
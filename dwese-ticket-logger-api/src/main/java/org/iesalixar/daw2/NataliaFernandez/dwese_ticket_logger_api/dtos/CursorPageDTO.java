@@ -0,0 +1,27 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Clase DTO (Data Transfer Object) que representa una página de un listado del catálogo
+ * (regiones, provincias, supermercados, ubicaciones o categorías) o de las notificaciones de un usuario.
+ *
+ * La paginación es por cursor: `nextCursor` identifica la posición del último elemento devuelto
+ * y se envía en la siguiente petición, con la misma ordenación, para continuar el listado.
+ * Es null cuando no hay más elementos.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class CursorPageDTO<T> {
+
+    private List<T> content;
+    private int size;
+    private String nextCursor;
+}
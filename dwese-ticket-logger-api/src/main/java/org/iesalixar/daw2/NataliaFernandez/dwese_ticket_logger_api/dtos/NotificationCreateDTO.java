@@ -14,6 +14,9 @@ import java.time.Instant;
 
 public class NotificationCreateDTO {
 
+    // Usuario destinatario; si no se indica, la notificación es para el usuario que la crea.
+    // Solo un administrador puede indicar otro usuario
+    private String username;
     private String subject;
     private String message;
     private boolean read;
@@ -0,0 +1,28 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Clase DTO (Data Transfer Object) con los contadores del envío de notificaciones por WebSocket.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class NotificationDeliveryMetricsDTO {
+
+    // Notificaciones encoladas para enviar
+    private long emitted;
+    // Notificaciones descartadas porque el búfer estaba lleno
+    private long dropped;
+    // Notificaciones encoladas pendientes de enviar
+    private long queued;
+    private long delivered;
+    // Notificaciones cuyo envío al broker ha fallado
+    private long failed;
+    private long batches;
+    private int bufferSize;
+}
@@ -0,0 +1,23 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Clase DTO (Data Transfer Object) utilizada para marcar notificaciones como leídas.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class NotificationReadDTO {
+
+    /**
+     * IDs de las notificaciones a marcar. Si está vacío se marcan todas las del usuario.
+     */
+    private List<String> ids;
+}
@@ -0,0 +1,23 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+
+/**
+ * Clase DTO (Data Transfer Object) que representa un producto en los listados.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductDTO {
+
+    private Long id;
+    private String name;
+    private BigDecimal price;
+    private Long categoryId;
+}
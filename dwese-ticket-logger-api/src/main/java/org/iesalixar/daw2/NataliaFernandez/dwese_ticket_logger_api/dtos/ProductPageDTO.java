@@ -0,0 +1,23 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Clase DTO (Data Transfer Object) con una página de productos.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductPageDTO {
+
+    private List<ProductDTO> content;
+    private int page;
+    private int size;
+    private boolean hasNext;
+}
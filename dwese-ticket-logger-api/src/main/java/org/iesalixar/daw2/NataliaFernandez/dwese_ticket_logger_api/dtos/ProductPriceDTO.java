@@ -0,0 +1,24 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+/**
+ * Clase DTO (Data Transfer Object) que representa el precio pagado por un producto en un ticket.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductPriceDTO {
+
+    private Long ticketId;
+    private Date date;
+    private BigDecimal unitPrice;
+    private int quantity;
+}
@@ -0,0 +1,24 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+
+/**
+ * Clase DTO (Data Transfer Object) con un producto encontrado en una búsqueda y su relevancia.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductSearchResultDTO {
+
+    private Long id;
+    private String name;
+    private BigDecimal price;
+    private Long categoryId;
+    private double score;
+}
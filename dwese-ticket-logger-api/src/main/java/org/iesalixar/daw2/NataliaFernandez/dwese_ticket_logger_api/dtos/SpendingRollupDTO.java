@@ -0,0 +1,29 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities.SpendingDimension;
+
+import java.math.BigDecimal;
+
+/**
+ * Clase DTO (Data Transfer Object) con el gasto de un mes para un supermercado, provincia, región o categoría.
+ *
+ * `dimensionId` es 0 (y `name` null) para el gasto de tickets o productos sin ese dato asignado.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class SpendingRollupDTO {
+
+    // Mes en formato yyyy-MM
+    private String month;
+    private SpendingDimension dimension;
+    private Long dimensionId;
+    private String name;
+    private BigDecimal amount;
+    private long units;
+}
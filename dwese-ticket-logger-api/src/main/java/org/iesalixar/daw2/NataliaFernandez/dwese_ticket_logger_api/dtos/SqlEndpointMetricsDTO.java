@@ -0,0 +1,28 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Clase DTO (Data Transfer Object) con el acceso a la base de datos acumulado de un endpoint.
+ * Los tiempos se expresan en milisegundos.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class SqlEndpointMetricsDTO {
+
+    private String endpoint;
+    private long requests;
+    private long statements;
+    private double avgStatements;
+    private long maxStatements;
+    private double totalJdbcTimeMs;
+    private double avgJdbcTimeMs;
+    private double maxJdbcTimeMs;
+    private double avgConnectionWaitMs;
+    private double maxConnectionWaitMs;
+}
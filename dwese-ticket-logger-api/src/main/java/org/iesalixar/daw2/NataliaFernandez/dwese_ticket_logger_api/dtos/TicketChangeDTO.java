@@ -0,0 +1,23 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Clase DTO (Data Transfer Object) que describe un cambio en los tickets, enviado por el flujo de eventos.
+ * Solo indica qué tickets han cambiado; el cliente consulta los datos que necesite.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class TicketChangeDTO {
+
+    // CREATED, UPDATED, DELETED o IMPORTED
+    private String action;
+    private List<Long> ticketIds;
+}
@@ -0,0 +1,39 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Clase DTO (Data Transfer Object) que representa un ticket recibido en una importación masiva.
+ *
+ * Cada línea del fichero NDJSON importado se convierte en uno de estos objetos.
+ */
+@Getter
+@Setter
+public class TicketImportDTO {
+
+    @NotNull(message = "{msg.ticket.date.notNull}")
+    private Date date;
+
+    @NotNull(message = "{msg.ticket.discount.notNull}")
+    @DecimalMin(value = "0.00", message = "{msg.ticket.discount.range}")
+    @DecimalMax(value = "100.00", message = "{msg.ticket.discount.range}")
+    private BigDecimal discount;
+
+    @NotNull(message = "{msg.ticket.location.notNull}")
+    private Long locationId;
+
+    @Valid
+    @NotEmpty(message = "{msg.ticket.lines.notEmpty}")
+    private List<TicketLineCreateDTO> lines = new ArrayList<>();
+}
@@ -0,0 +1,20 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Clase DTO (Data Transfer Object) con el error de un registro concreto de una importación masiva.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class TicketImportErrorDTO {
+
+    // Número de línea del registro en el fichero importado (empezando en 1)
+    private long line;
+    private String message;
+}
@@ -0,0 +1,24 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Clase DTO (Data Transfer Object) con el resultado de una importación masiva de tickets.
+ *
+ * `errors` contiene como máximo el número de errores configurado; `errorsTruncated`
+ * indica que hubo más registros erróneos de los que se devuelven.
+ */
+@Getter
+@Setter
+public class TicketImportResultDTO {
+
+    private long received;
+    private long imported;
+    private long failed;
+    private boolean errorsTruncated;
+    private List<TicketImportErrorDTO> errors = new ArrayList<>();
+}
@@ -0,0 +1,35 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos;
+
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.Size;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+
+/**
+ * Clase DTO (Data Transfer Object) utilizada para añadir un producto a un ticket.
+ *
+ * Si se indica `productId` se añade un producto existente; si no, se crea un producto
+ * nuevo con `productName` y `productPrice`. `unitPrice` es opcional: si no se indica,
+ * la línea toma el precio actual del producto.
+ */
+@Getter
+@Setter
+public class TicketLineCreateDTO {
+
+    private Long productId;
+
+    @Size(min = 2, max = 100, message = "{msg.product.name.size}")
+    private String productName;
+
+    @DecimalMin(value = "0.00", message = "{msg.ticketLine.productPrice.min}")
+    private BigDecimal productPrice;
+
+    @DecimalMin(value = "0.00", message = "{msg.ticketLine.unitPrice.min}")
+    private BigDecimal unitPrice;
+
+    @Min(value = 1, message = "{msg.ticketLine.quantity.min}")
+    private int quantity = 1;
+}
@@ -0,0 +1,25 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Clase DTO (Data Transfer Object) que representa una página de tickets.
+ *
+ * La paginación es por cursor: `nextCursor` identifica el último ticket devuelto
+ * y se envía en la siguiente petición para continuar el listado. Es null cuando no hay más tickets.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class TicketPageDTO {
+
+    private List<TicketSummaryDTO> content;
+    private int size;
+    private String nextCursor;
+}
@@ -0,0 +1,28 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos;
+
+import jakarta.validation.Valid;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Clase DTO (Data Transfer Object) utilizada para añadir y quitar varios productos de un ticket
+ * en una sola petición.
+ */
+@Getter
+@Setter
+public class TicketProductBatchDTO {
+
+    /**
+     * Productos que se añaden al ticket (existentes o nuevos).
+     */
+    @Valid
+    private List<TicketLineCreateDTO> add = new ArrayList<>();
+
+    /**
+     * IDs de los productos que se quitan del ticket.
+     */
+    private List<Long> remove = new ArrayList<>();
+}
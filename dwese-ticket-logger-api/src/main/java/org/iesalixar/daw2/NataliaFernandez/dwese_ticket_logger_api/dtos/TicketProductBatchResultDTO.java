@@ -0,0 +1,25 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+
+/**
+ * Clase DTO (Data Transfer Object) con el resultado de una modificación en bloque de los productos de un ticket.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class TicketProductBatchResultDTO {
+
+    private Long ticketId;
+    private int linesAdded;
+    private int linesUpdated;
+    private int linesRemoved;
+    private BigDecimal subtotal;
+    private BigDecimal total;
+}
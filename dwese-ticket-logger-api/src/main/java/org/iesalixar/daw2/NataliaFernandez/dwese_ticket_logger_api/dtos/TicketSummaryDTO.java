@@ -0,0 +1,36 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+/**
+ * Clase DTO (Data Transfer Object) que representa un ticket en los listados.
+ *
+ * Es una vista plana del ticket construida directamente desde una consulta de proyección,
+ * de modo que no es necesario cargar la ubicación ni la lista de productos de cada ticket.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class TicketSummaryDTO {
+
+    private Long id;
+    private Date date;
+    private BigDecimal discount;
+
+    /**
+     * Total del ticket con el descuento aplicado.
+     */
+    private BigDecimal total;
+
+    private Long locationId;
+    private String locationAddress;
+    private String locationCity;
+    private String supermarketName;
+}
@@ -0,0 +1,39 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Clase DTO (Data Transfer Object) con el resultado de una limpieza de archivos subidos huérfanos.
+ *
+ * En una simulación (`dryRun`) los contadores indican lo que se habría borrado, sin modificar nada.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class UploadCleanupReportDTO {
+
+    private boolean dryRun;
+
+    // Archivos encontrados en el directorio de subidas
+    private long scannedFiles;
+
+    // Archivos borrados (o que se borrarían): huérfanos, variantes y copias .gz de estos, y temporales abandonados
+    private long deletedFiles;
+
+    private long reclaimedBytes;
+
+    // Filas de `stored_files` sin ninguna categoría que las use, borradas
+    private long deletedRecords;
+
+    // Filas de `stored_files` con un número de referencias distinto del real, corregidas
+    private long repairedReferences;
+
+    // Si se ha alcanzado el máximo de borrados por ejecución (el resto se borra en la siguiente)
+    private boolean limitReached;
+
+    private long durationMs;
+}
@@ -0,0 +1,40 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Clase DTO (Data Transfer Object) utilizada para iniciar una subida por partes.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class UploadSessionCreateDTO {
+
+    /**
+     * Nombre original del archivo. Ejemplo: "frutas.jpg".
+     */
+    @NotEmpty(message = "El nombre del archivo no puede estar vacío.")
+    @Size(max = 255, message = "El nombre del archivo no puede tener más de 255 caracteres.")
+    private String fileName;
+
+    /**
+     * Tamaño total del archivo en bytes.
+     */
+    @Positive(message = "El tamaño del archivo debe ser mayor que cero.")
+    private long size;
+
+    /**
+     * Hash SHA-256 del archivo completo, en hexadecimal. Se comprueba al finalizar la subida.
+     */
+    @NotEmpty(message = "El hash SHA-256 del archivo no puede estar vacío.")
+    @Pattern(regexp = "[0-9a-fA-F]{64}", message = "El hash SHA-256 debe tener 64 caracteres hexadecimales.")
+    private String sha256;
+}
@@ -0,0 +1,31 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Clase DTO (Data Transfer Object) con el estado de una subida por partes.
+ *
+ * `offset` es el número de bytes recibidos: el siguiente bloque debe empezar ahí. Cuando la subida
+ * se ha finalizado, `storedFileName` y `url` identifican el archivo guardado y el `id` de la sesión
+ * se puede indicar como imagen al crear o actualizar una categoría.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class UploadSessionDTO {
+
+    private String id;
+    private String fileName;
+    private long size;
+    private long offset;
+    private boolean completed;
+    private String storedFileName;
+    private String url;
+    private LocalDateTime expiresAt;
+}
@@ -1,5 +1,7 @@
 package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.Size;
 import lombok.*;
@@ -15,6 +17,8 @@ import java.util.List;
  */
 @Entity
 @Table(name = "categories")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "categories")
 @Getter
 @Setter
 @NoArgsConstructor
@@ -45,6 +49,7 @@ public class Category {
     private Category parentCategory;
 
     // Lista de subcategorías, mapeada con la relación bidireccional.
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "categories.subCategories")
     @OneToMany(mappedBy = "parentCategory", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<Category> subCategories;
 
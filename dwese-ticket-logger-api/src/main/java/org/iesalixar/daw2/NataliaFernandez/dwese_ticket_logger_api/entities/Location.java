@@ -2,6 +2,8 @@ package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities;
 
 
 import jakarta.persistence.*; // Anotaciones de JPA
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
 import lombok.AllArgsConstructor;
@@ -18,6 +20,8 @@ import lombok.NoArgsConstructor;
  */
 @Entity // Marca esta clase como una entidad JPA.
 @Table(name = "locations") // Especifica el nombre de la tabla asociada a esta entidad.
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "locations")
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -2,6 +2,8 @@ package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities;
 
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import lombok.Getter;
@@ -11,11 +13,23 @@ import lombok.AllArgsConstructor;
 
 import java.time.Instant;
 
+/**
+ * Notificación dirigida a un usuario.
+ *
+ * Las notificaciones se listan siempre de un usuario, de la más reciente a la más antigua y paginadas
+ * por cursor (ver `NotificationService`). Los índices compuestos cubren esas consultas, con y sin el
+ * filtro de no leídas, y la marca de leídas de un usuario.
+ *
+ * MongoDB borra las notificaciones cuando llega su `expiresAt` (índice TTL). Las no leídas no lo tienen,
+ * así que se conservan hasta que se leen y el contador de no leídas siempre coincide con ellas.
+ */
 @Getter
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "notifications")
+@CompoundIndex(name = "username_createdAt_id", def = "{'username': 1, 'createdAt': -1, '_id': -1}")
+@CompoundIndex(name = "username_read_createdAt_id", def = "{'username': 1, 'read': 1, 'createdAt': -1, '_id': -1}")
 public class Notification {
 
     /**
@@ -24,6 +38,11 @@ public class Notification {
     @Id
     private String id;
 
+    /**
+     * Nombre del usuario destinatario de la notificación.
+     */
+    private String username;
+
     /**
      * Asunto o título de la notificación.
      */
@@ -44,4 +63,11 @@ public class Notification {
      * Se inicializa con la fecha y hora actual por defecto.
      */
     private Instant createdAt = Instant.now();
+
+    /**
+     * Fecha a partir de la cual MongoDB borra la notificación. Se fija al marcarla como leída,
+     * según `notifications.retention.read-days`; el índice TTL no caduca a una hora fija, sino en esta fecha.
+     */
+    @Indexed(name = "expiresAt_ttl", expireAfter = "0s")
+    private Instant expiresAt;
 }
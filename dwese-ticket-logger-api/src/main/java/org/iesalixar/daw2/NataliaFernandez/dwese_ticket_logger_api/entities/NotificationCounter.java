@@ -0,0 +1,34 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Número de notificaciones sin leer de un usuario.
+ *
+ * Se mantiene con incrementos atómicos al crear y al marcar como leídas las notificaciones
+ * (ver `NotificationService`), así que consultarlo es leer un documento por su ID en lugar de
+ * contar las notificaciones del usuario.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "notification_counters")
+public class NotificationCounter {
+
+    /**
+     * Nombre del usuario.
+     */
+    @Id
+    private String username;
+
+    /**
+     * Notificaciones sin leer.
+     */
+    private long unread;
+}
@@ -1,10 +1,12 @@
 package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
 import lombok.*;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.utils.SearchTextUtils;
 
 
 import java.math.BigDecimal;
@@ -23,14 +25,15 @@ import java.util.List;
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
-@ToString(exclude = {"category", "tickets"}) // Excluye `category` y `tickets` para evitar ciclos recursivos.
-@EqualsAndHashCode(exclude = {"category", "tickets"}) // Excluye `category` y `tickets` para evitar problemas de recursión.
+@ToString(exclude = {"category", "ticketLines"}) // Excluye `category` y `ticketLines` para evitar ciclos recursivos.
+@EqualsAndHashCode(exclude = {"category", "ticketLines"}) // Excluye `category` y `ticketLines` para evitar problemas de recursión.
 public class Product {
 
 
-    // Identificador único del producto. Es autogenerado y clave primaria.
+    // Identificador único del producto. Es clave primaria y se obtiene de la secuencia `products_seq`.
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "product_seq")
+    @SequenceGenerator(name = "product_seq", sequenceName = "products_seq", allocationSize = 50)
     private Long id;
 
 
@@ -53,7 +56,24 @@ public class Product {
     private Category category;
 
 
-    // Lista de tickets asociados al producto.
-    @ManyToMany(mappedBy = "products")
-    private List<Ticket> tickets;
+    // Líneas de ticket en las que aparece el producto.
+    @JsonIgnore
+    @OneToMany(mappedBy = "product")
+    private List<TicketLine> ticketLines;
+
+
+    // Nombre normalizado (minúsculas, sin acentos ni signos) sobre el que se hace la búsqueda de productos.
+    @JsonIgnore
+    @Column(name = "search_name")
+    private String searchName;
+
+
+    /**
+     * Recalcula el nombre normalizado para la búsqueda cada vez que se guarda el producto.
+     */
+    @PrePersist
+    @PreUpdate
+    private void updateSearchName() {
+        searchName = SearchTextUtils.fold(name);
+    }
 }
@@ -2,6 +2,8 @@ package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities;
 
 
 import jakarta.persistence.*; // Anotaciones de JPA
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
@@ -22,6 +24,8 @@ import java.util.List;
  */
 @Entity // Marca esta clase como una entidad JPA.
 @Table(name = "provinces") // Define el nombre de la tabla asociada a esta entidad.
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "provinces")
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -42,6 +46,7 @@ public class Province {
 
 
     // Relación uno a muchos con la entidad `Location`. Una provincia puede tener muchas ubicaciones.
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "provinces.locations")
     @OneToMany(mappedBy = "province", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<Location> locations;
 
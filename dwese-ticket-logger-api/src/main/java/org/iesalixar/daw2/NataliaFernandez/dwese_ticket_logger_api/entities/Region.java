@@ -2,6 +2,8 @@ package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities;
 
 
 import jakarta.persistence.*; // Anotaciones de JPA
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -20,6 +22,8 @@ import java.util.List;
  */
 @Entity // Marca esta clase como una entidad gestionada por JPA.
 @Table(name = "regions") // Especifica el nombre de la tabla asociada a esta entidad.
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "regions")
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -42,6 +46,7 @@ public class Region {
 
     // Relación uno a muchos con la entidad Province.
 // Una región puede tener muchas provincias.
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "regions.provinces")
     @OneToMany(mappedBy = "region", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<Province> provinces;
 
@@ -0,0 +1,11 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities;
+
+/**
+ * Dimensiones por las que se agrega el gasto mensual en la tabla `spending_monthly`.
+ */
+public enum SpendingDimension {
+    SUPERMARKET,
+    PROVINCE,
+    REGION,
+    CATEGORY
+}
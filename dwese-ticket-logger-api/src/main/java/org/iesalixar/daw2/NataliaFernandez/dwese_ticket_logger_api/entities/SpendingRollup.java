@@ -0,0 +1,39 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.EmbeddedId;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+
+/**
+ * La clase `SpendingRollup` representa el gasto acumulado de un mes para un supermercado,
+ * una provincia, una región o una categoría.
+ *
+ * Las filas se actualizan de forma incremental cada vez que se modifica un ticket
+ * (ver `SpendingRollupService`), por lo que las consultas de analítica no recorren los tickets.
+ * `amount` es el importe pagado (con el descuento del ticket aplicado a cada línea)
+ * y `units` el número de unidades compradas.
+ */
+@Entity
+@Table(name = "spending_monthly")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class SpendingRollup {
+
+    @EmbeddedId
+    private SpendingRollupId id;
+
+    @Column(name = "amount", nullable = false, precision = 16, scale = 4)
+    private BigDecimal amount;
+
+    @Column(name = "units", nullable = false)
+    private long units;
+}
@@ -0,0 +1,37 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * Clave de una fila de `spending_monthly`: dimensión, mes (primer día) e ID del elemento de la dimensión.
+ */
+@Embeddable
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode
+public class SpendingRollupId implements Serializable {
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "dimension", nullable = false, length = 20)
+    private SpendingDimension dimension;
+
+    @Column(name = "month_start", nullable = false)
+    private LocalDate month;
+
+    // ID del supermercado, provincia, región o categoría; 0 si el ticket o el producto no lo tienen asignado
+    @Column(name = "dimension_id", nullable = false)
+    private Long dimensionId;
+}
@@ -0,0 +1,56 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * La clase `StoredFile` representa un archivo subido guardado en disco según su contenido.
+ *
+ * El archivo se identifica por el hash SHA-256 de sus bytes (`hash`) y se guarda con el nombre
+ * `fileName` (hash y extensión), que es el que se asigna a las categorías. Si se sube otra vez el mismo
+ * contenido no se escribe un archivo nuevo: solo aumenta `refCount`, el número de referencias que lo usan.
+ * El archivo se borra del disco cuando se libera la última referencia (ver `FileStorageService`); las
+ * referencias que no se llegan a liberar las corrige la limpieza periódica (ver `UploadCleanupService`).
+ */
+@Entity
+@Table(name = "stored_files")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class StoredFile {
+
+    // Hash SHA-256 del contenido, en hexadecimal.
+    @Id
+    @Column(name = "hash", length = 64)
+    private String hash;
+
+    // Nombre del archivo en el directorio de subidas.
+    @Column(name = "file_name", nullable = false, unique = true, length = 100)
+    private String fileName;
+
+    // Tamaño del archivo en bytes.
+    @Column(name = "size", nullable = false)
+    private long size;
+
+    // Número de referencias que usan el archivo.
+    @Column(name = "ref_count", nullable = false)
+    private int refCount;
+
+    // Fecha en la que se guardó el archivo por primera vez.
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    // Fecha de la última subida de este contenido. Hasta pasado el periodo de gracia de la limpieza de
+    // archivos huérfanos se considera que la categoría que lo usa puede estar todavía guardándose.
+    @Column(name = "last_used_at", nullable = false)
+    private LocalDateTime lastUsedAt;
+}
@@ -0,0 +1,50 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Evento enviado a los clientes conectados al flujo de eventos (notificaciones y cambios de tickets).
+ *
+ * Se guarda en la colección limitada (capped) `stream_events`, que conserva solo los últimos eventos y
+ * los devuelve en orden de inserción. Su número de secuencia es el `id` del evento SSE, con el que un
+ * cliente que se reconecta pide los eventos que se ha perdido (ver `EventStreamService`).
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "stream_events")
+public class StreamEvent {
+
+    /**
+     * Identificador del documento en MongoDB.
+     */
+    @Id
+    private String id;
+
+    /**
+     * Número de secuencia del evento, único y creciente entre todas las instancias de la aplicación.
+     * Se asigna antes de guardarlo, así que dos eventos publicados a la vez pueden guardarse en otro orden.
+     */
+    private long seq;
+
+    /**
+     * Tipo de evento: "notification" o "ticket".
+     */
+    private String type;
+
+    /**
+     * Usuario destinatario, o null si el evento es para todos los usuarios.
+     */
+    private String username;
+
+    /**
+     * Datos del evento (`NotificationDTO` o `TicketChangeDTO`).
+     */
+    private Object payload;
+}
@@ -2,6 +2,8 @@ package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities;
 
 
 import jakarta.persistence.*; // Anotaciones de JPA
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -17,6 +19,8 @@ import java.util.List;
  */
 @Entity // Marca esta clase como una entidad JPA.
 @Table(name = "supermarkets") // Especifica el nombre de la tabla asociada a esta entidad.
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "supermarkets")
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -35,6 +39,7 @@ public class Supermarket {
     private String name;
 
     // Relación uno a muchos con la entidad `Location`. Un supermercado puede tener muchas ubicaciones.
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "supermarkets.locations")
     @OneToMany(mappedBy = "supermarket", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<Location> locations;
 
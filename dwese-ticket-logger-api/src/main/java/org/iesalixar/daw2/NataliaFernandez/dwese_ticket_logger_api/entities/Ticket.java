@@ -8,16 +8,18 @@ import org.springframework.format.annotation.DateTimeFormat;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
 
 /**
  * La clase `Ticket` representa una entidad que modela un ticket.
- * Contiene campos como `id`, `date`, `discount` y `location`,
+ * Contiene campos como `id`, `date`, `discount`, `location` y `lines`,
  * donde `id` es el identificador único del ticket,
  * `date` es la fecha del ticket, `discount` es el descuento aplicado,
- * y `location` representa la ubicación asociada al ticket.
+ * `location` representa la ubicación asociada al ticket
+ * y `lines` son las líneas de productos comprados.
  */
 @Entity
 @Table(name = "tickets")
@@ -25,14 +27,16 @@ import java.util.List;
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
-@ToString(exclude = {"location", "products"}) // Excluir relaciones para evitar recursión infinita.
-@EqualsAndHashCode(exclude = {"location", "products"}) // Evitar bucles recursivos en equals y hashCode.
+@ToString(exclude = {"location", "lines"}) // Excluir relaciones para evitar recursión infinita.
+@EqualsAndHashCode(exclude = {"location", "lines"}) // Evitar bucles recursivos en equals y hashCode.
 public class Ticket {
 
 
-    // Identificador único del ticket. Es autogenerado y clave primaria.
+    // Identificador único del ticket. Es clave primaria y se obtiene de la secuencia `tickets_seq`,
+    // que reserva bloques de IDs para que Hibernate pueda agrupar las inserciones en lotes JDBC.
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ticket_seq")
+    @SequenceGenerator(name = "ticket_seq", sequenceName = "tickets_seq", allocationSize = 50)
     private Long id;
 
 
@@ -56,32 +60,131 @@ public class Ticket {
     private Location location;
 
 
-    // Lista de productos asociados al ticket.
-    @ManyToMany
-    @JoinTable(
-            name = "product_ticket",
-            joinColumns = @JoinColumn(name = "ticket_id"),
-            inverseJoinColumns = @JoinColumn(name = "product_id")
-    )
-    private List<Product> products;
+    // Líneas del ticket: producto, unidades y precio unitario en el momento de la compra.
+    @OneToMany(mappedBy = "ticket", cascade = CascadeType.ALL, orphanRemoval = true)
+    private List<TicketLine> lines = new ArrayList<>();
+
+
+    // Suma de los importes de las líneas, sin descuento. Se mantiene al añadir o quitar productos.
+    @Column(name = "subtotal", nullable = false, precision = 10, scale = 2)
+    private BigDecimal subtotal = BigDecimal.ZERO;
+
+
+    // Total del ticket con el descuento aplicado. Se guarda en base de datos para no recorrer las líneas.
+    @Column(name = "total", nullable = false, precision = 10, scale = 2)
+    private BigDecimal total = BigDecimal.ZERO;
+
+
+    /**
+     * Actualiza el descuento del ticket y recalcula el total.
+     *
+     * @param discount el nuevo descuento en porcentaje.
+     */
+    public void setDiscount(BigDecimal discount) {
+        this.discount = discount;
+        updateTotal();
+    }
+
+
+    /**
+     * Añade unidades de un producto al ticket con su precio actual y suma su importe al subtotal.
+     * Si el producto ya está en el ticket se incrementan las unidades de su línea.
+     *
+     * @param product el producto a añadir.
+     * @param quantity el número de unidades.
+     * @return la línea del ticket afectada.
+     */
+    public TicketLine addProduct(Product product, int quantity) {
+        if (lines == null) {
+            lines = new ArrayList<>();
+        }
+        TicketLine line = findLine(product.getId());
+        if (line == null) {
+            line = new TicketLine(this, product, quantity, product.getPrice());
+            lines.add(line);
+        } else {
+            line.setQuantity(line.getQuantity() + quantity);
+        }
+        subtotal = subtotal.add(line.getUnitPrice().multiply(BigDecimal.valueOf(quantity)));
+        updateTotal();
+        return line;
+    }
+
+
+    /**
+     * Quita del ticket la línea de un producto y resta su importe del subtotal.
+     *
+     * @param productId el ID del producto a quitar.
+     * @return true si el producto estaba en el ticket.
+     */
+    public boolean removeProduct(Long productId) {
+        TicketLine line = findLine(productId);
+        if (line == null) {
+            return false;
+        }
+        lines.remove(line);
+        subtotal = subtotal.subtract(line.getAmount());
+        updateTotal();
+        return true;
+    }
 
 
     /**
-     * Calcula el total del ticket sumando los precios de todos los productos.
+     * Suma (o resta, si es negativo) un importe al subtotal y recalcula el total.
+     * Se usa cuando las líneas se modifican directamente sin cargar toda la colección.
      *
-     * @return el total calculado de los productos menos el descuento.
+     * @param amount el importe a sumar al subtotal.
      */
-    @Transient
-    public BigDecimal getTotal() {
-        if (products == null || products.isEmpty()) {
-            return BigDecimal.ZERO;
+    public void adjustSubtotal(BigDecimal amount) {
+        subtotal = subtotal.add(amount);
+        updateTotal();
+    }
+
+
+    /**
+     * Busca la línea del ticket correspondiente a un producto.
+     *
+     * @param productId el ID del producto.
+     * @return la línea encontrada o null si el producto no está en el ticket.
+     */
+    public TicketLine findLine(Long productId) {
+        if (lines == null || productId == null) {
+            return null;
         }
+        for (TicketLine line : lines) {
+            if (productId.equals(line.getProduct().getId())) {
+                return line;
+            }
+        }
+        return null;
+    }
 
 
-        BigDecimal total = BigDecimal.ZERO;
-        for (Product product : products) {
-            total = total.add(product.getPrice());
+    /**
+     * Recalcula el subtotal recorriendo todas las líneas del ticket.
+     * Solo es necesario cuando las líneas se reemplazan por completo.
+     */
+    public void recalculateTotal() {
+        BigDecimal sum = BigDecimal.ZERO;
+        if (lines != null) {
+            for (TicketLine line : lines) {
+                sum = sum.add(line.getAmount());
+            }
         }
+        subtotal = sum;
+        updateTotal();
+    }
+
+
+    /**
+     * Calcula el total aplicando el descuento al subtotal.
+     *
+     * @param subtotal la suma de los precios de los productos.
+     * @param discount el descuento en porcentaje.
+     * @return el total con el descuento aplicado.
+     */
+    public static BigDecimal applyDiscount(BigDecimal subtotal, BigDecimal discount) {
+        BigDecimal total = subtotal != null ? subtotal : BigDecimal.ZERO;
 
 
         // Aplicar descuento si existe
@@ -93,4 +196,9 @@ public class Ticket {
 
         return total.setScale(2, RoundingMode.HALF_UP);
     }
+
+
+    private void updateTotal() {
+        total = applyDiscount(subtotal, discount);
+    }
 }
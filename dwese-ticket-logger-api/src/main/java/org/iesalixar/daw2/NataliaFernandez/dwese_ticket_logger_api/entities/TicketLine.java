@@ -0,0 +1,86 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+
+
+import java.math.BigDecimal;
+
+
+/**
+ * La clase `TicketLine` representa una línea de un ticket.
+ * Contiene campos como `id`, `ticket`, `product`, `quantity` y `unitPrice`,
+ * donde `quantity` es el número de unidades compradas del producto y
+ * `unitPrice` es el precio unitario en el momento de la compra, que no cambia
+ * aunque después se modifique el precio del producto.
+ */
+@Entity
+@Table(name = "ticket_lines")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString(exclude = {"ticket", "product"}) // Excluir relaciones para evitar recursión infinita.
+@EqualsAndHashCode(exclude = {"ticket", "product"}) // Evitar bucles recursivos en equals y hashCode.
+public class TicketLine {
+
+
+    // Identificador único de la línea. Es clave primaria y se obtiene de la secuencia `ticket_lines_seq`.
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ticket_line_seq")
+    @SequenceGenerator(name = "ticket_line_seq", sequenceName = "ticket_lines_seq", allocationSize = 50)
+    private Long id;
+
+
+    // Ticket al que pertenece la línea.
+    @JsonIgnore
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "ticket_id", nullable = false)
+    private Ticket ticket;
+
+
+    // Producto comprado.
+    @NotNull(message = "{msg.ticketLine.product.notNull}")
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "product_id", nullable = false)
+    private Product product;
+
+
+    // Número de unidades compradas. Debe ser al menos 1.
+    @Min(value = 1, message = "{msg.ticketLine.quantity.min}")
+    @Column(name = "quantity", nullable = false)
+    private int quantity = 1;
+
+
+    // Precio unitario en el momento de la compra.
+    @Column(name = "unit_price", nullable = false, precision = 10, scale = 2)
+    private BigDecimal unitPrice;
+
+
+    /**
+     * Constructor que excluye el campo `id`. Se utiliza para crear nuevas líneas de un ticket.
+     * @param ticket Ticket al que pertenece la línea.
+     * @param product Producto comprado.
+     * @param quantity Número de unidades.
+     * @param unitPrice Precio unitario en el momento de la compra.
+     */
+    public TicketLine(Ticket ticket, Product product, int quantity, BigDecimal unitPrice) {
+        this.ticket = ticket;
+        this.product = product;
+        this.quantity = quantity;
+        this.unitPrice = unitPrice;
+    }
+
+
+    /**
+     * Calcula el importe de la línea (unidades por precio unitario).
+     *
+     * @return el importe de la línea.
+     */
+    public BigDecimal getAmount() {
+        return unitPrice.multiply(BigDecimal.valueOf(quantity));
+    }
+}
@@ -0,0 +1,61 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * La clase `UploadSession` representa una subida por partes de un archivo, que se puede reanudar.
+ *
+ * El cliente declara el tamaño y el hash SHA-256 del archivo al crear la sesión y envía el contenido en
+ * bloques, que se añaden a un archivo temporal (ver `UploadSessionService`). Los bytes recibidos son
+ * el tamaño de ese temporal, así que los bloques no modifican la fila. Al finalizar, el archivo se guarda
+ * por contenido y `storedFileName` guarda su nombre hasta que se asigna a una categoría.
+ */
+@Entity
+@Table(name = "upload_sessions")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadSession {
+
+    // Identificador aleatorio (UUID) de la sesión.
+    @Id
+    @Column(name = "id", length = 36)
+    private String id;
+
+    // Usuario que ha creado la sesión; solo él puede enviar bloques y usar el archivo.
+    @Column(name = "username", nullable = false, length = 50)
+    private String username;
+
+    // Nombre original del archivo (se usa su extensión).
+    @Column(name = "file_name", nullable = false)
+    private String fileName;
+
+    // Tamaño total declarado en bytes.
+    @Column(name = "size", nullable = false)
+    private long size;
+
+    // Hash SHA-256 declarado del contenido, en hexadecimal.
+    @Column(name = "sha256", nullable = false, length = 64)
+    private String sha256;
+
+    // Nombre del archivo guardado, o null si la subida no se ha finalizado.
+    @Column(name = "stored_file_name", length = 100)
+    private String storedFileName;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    // Fecha a partir de la cual la sesión se descarta, esté o no finalizada.
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+}
@@ -4,11 +4,16 @@ import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.Category
 import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.CategoryDTO;
 import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.ParentCategoryDTO;
 import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities.Category;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.services.ImageVariantService;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 @Component
 public class CategoryMapper {
 
+    @Autowired
+    private ImageVariantService imageVariantService;
+
     /**
      * Convierte una entidad Category en un CategoryDTO.
      *
@@ -24,6 +29,7 @@ public class CategoryMapper {
         categoryDTO.setId(category.getId());
         categoryDTO.setName(category.getName());
         categoryDTO.setImage(category.getImage());
+        categoryDTO.setImageVariants(imageVariantService.getVariantUrls(category.getImage()));
 
         // Si la categoría tiene un padre, convertir a ParentCategoryDTO
         if (category.getParentCategory() != null) {
@@ -24,7 +24,7 @@ public class NotificationMapper {
     }
 
 
-    public static Notification toEntity(NotificationCreateDTO notificationCreateDTO){
+    public static Notification toEntity(NotificationCreateDTO notificationCreateDTO, String username){
 
         if(notificationCreateDTO== null){
             return null;
@@ -32,10 +32,12 @@ public class NotificationMapper {
         }
         return new Notification(
                 null,//ID generado automaticamente en la Base de datos
+                username,
                 notificationCreateDTO.getSubject(),
                 notificationCreateDTO.getMessage(),
                 notificationCreateDTO.isRead(),
-                Instant.now() //fecha de creacion actual
+                Instant.now(), //fecha de creacion actual
+                null // Caduca cuando se lee
         );
     }
 }
@@ -1,17 +1,47 @@
 package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.repositories;
 
+import jakarta.persistence.QueryHint;
 import jakarta.validation.constraints.NotEmpty;
 import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities.Category;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.FluentQuery.FetchableFluentQuery;
 import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Function;
 
-public interface CategoryRepository extends JpaRepository<Category, Long> {
+public interface CategoryRepository extends JpaRepository<Category, Long>, JpaSpecificationExecutor<Category> {
 
-    List<Category> findAll();
+    // Listado paginado por cursor. CategoryMapper lee la categoría padre, que se carga en la misma consulta;
+    // cada página se guarda en la caché de consultas de Hibernate
+    @EntityGraph(attributePaths = "parentCategory")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    <S extends Category, R> R findBy(Specification<Category> spec, Function<FetchableFluentQuery<S>, R> queryFunction);
+
+    /**
+     * Obtiene los nombres distintos de las imágenes asignadas a las categorías.
+     *
+     * @return la lista de nombres de archivo.
+     */
+    @Query("SELECT DISTINCT c.image FROM Category c WHERE c.image IS NOT NULL AND c.image <> ''")
+    List<String> findDistinctImages();
+
+    /**
+     * Cuenta cuántas categorías usa cada imagen.
+     *
+     * @return filas con el nombre del archivo y el número de categorías.
+     */
+    @Query("SELECT c.image, COUNT(c) FROM Category c WHERE c.image IS NOT NULL AND c.image <> '' GROUP BY c.image")
+    List<Object[]> countImageReferences();
+
+    long countByImage(String image);
 
     void deleteById(Long id);
 
@@ -22,4 +52,52 @@ public interface CategoryRepository extends JpaRepository<Category, Long> {
     @Query("SELECT CASE WHEN COUNT(c) > 0 THEN TRUE ELSE FALSE END " +
             "FROM Category c WHERE c.name = :name AND c.id != :id")
     boolean existsCategoryByNameAndNotId(@Param("name") String name, @Param("id") Long id);
+
+    /**
+     * Recorre el árbol de categorías desde las raíces con una CTE recursiva y devuelve cada categoría
+     * con su profundidad y el número de productos asignados directamente a ella.
+     *
+     * Cada fila contiene el ID, el nombre, la imagen, el ID del padre, la profundidad y el número de productos.
+     * Las filas se ordenan por profundidad y nombre, así que cada categoría aparece después de su padre.
+     * Las categorías que forman un ciclo no se alcanzan desde ninguna raíz y no se devuelven.
+     *
+     * @return las filas del árbol.
+     */
+    @Query(value = "WITH RECURSIVE tree (id, parent_id, depth) AS (" +
+            "  SELECT c.id, c.parent_id, 0 FROM categories c WHERE c.parent_id IS NULL " +
+            "  UNION ALL " +
+            "  SELECT c.id, c.parent_id, t.depth + 1 FROM categories c JOIN tree t ON c.parent_id = t.id" +
+            ") " +
+            "SELECT t.id, c.name, c.image, t.parent_id, t.depth, COALESCE(pc.products, 0) AS products " +
+            "FROM tree t " +
+            "JOIN categories c ON c.id = t.id " +
+            "LEFT JOIN (SELECT p.category_id, COUNT(*) AS products FROM products p GROUP BY p.category_id) pc " +
+            "  ON pc.category_id = t.id " +
+            "ORDER BY t.depth, c.name, t.id", nativeQuery = true)
+    List<Object[]> findTreeRows();
+
+    /**
+     * Cuenta cuántas veces aparece una categoría en el subárbol de otra (0 o 1), incluida la propia raíz.
+     * La CTE usa UNION para que termine aunque la jerarquía contenga un ciclo.
+     *
+     * @param rootId      ID de la categoría raíz del subárbol.
+     * @param candidateId ID de la categoría a buscar.
+     * @return 1 si la categoría está en el subárbol, 0 en caso contrario.
+     */
+    @Query(value = "WITH RECURSIVE subtree (id) AS (" +
+            "  SELECT c.id FROM categories c WHERE c.id = :rootId " +
+            "  UNION " +
+            "  SELECT c.id FROM categories c JOIN subtree s ON c.parent_id = s.id" +
+            ") " +
+            "SELECT COUNT(*) FROM subtree WHERE id = :candidateId", nativeQuery = true)
+    long countInSubtree(@Param("rootId") Long rootId, @Param("candidateId") Long candidateId);
+
+    /**
+     * Bloquea todas las categorías hasta el final de la transacción, en orden de ID para que dos
+     * transacciones no se bloqueen mutuamente. Serializa los cambios de categoría padre.
+     *
+     * @return los IDs de las categorías.
+     */
+    @Query(value = "SELECT c.id FROM categories c ORDER BY c.id FOR UPDATE", nativeQuery = true)
+    List<Long> lockAllForUpdate();
 }
@@ -1,20 +1,32 @@
 package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.repositories;
 
+import jakarta.persistence.QueryHint;
 import jakarta.validation.constraints.NotEmpty;
 import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities.Location;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.FluentQuery.FetchableFluentQuery;
 import org.springframework.data.repository.query.Param;
 
-import java.util.List;
 import java.util.Optional;
+import java.util.function.Function;
 
-public interface LocationRepository extends JpaRepository<Location, Long> {
+public interface LocationRepository extends JpaRepository<Location, Long>, JpaSpecificationExecutor<Location> {
 
-    List<Location> findAll();
+    // Listado paginado por cursor. LocationMapper recorre el supermercado, la provincia y su región: se cargan
+    // todos en la misma consulta, y cada página se guarda en la caché de consultas de Hibernate
+    @EntityGraph(attributePaths = {"supermarket", "province", "province.region"})
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    <S extends Location, R> R findBy(Specification<Location> spec, Function<FetchableFluentQuery<S>, R> queryFunction);
 
     void deleteById(Long id);
 
+    @EntityGraph(attributePaths = {"supermarket", "province", "province.region"})
     Optional<Location> findById(Long id);
 
     boolean existsLocationByAddress(String address); // Verifica si una ubicación con la dirección existe
@@ -0,0 +1,7 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.repositories;
+
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities.NotificationCounter;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+
+public interface NotificationCounterRepository extends ReactiveMongoRepository<NotificationCounter, String> {
+}
@@ -3,7 +3,9 @@ package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.repositories
 
 
 import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities.Product;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import org.springframework.data.repository.query.Param;
 
@@ -37,4 +39,74 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
      * @return una lista de productos que contienen la cadena especificada, ignorando mayúsculas y minúsculas.
      */
     List<Product> findByNameContainingIgnoreCase(String name);
+
+
+    /**
+     * Busca productos con el índice FULLTEXT del nombre normalizado, ordenados por relevancia.
+     *
+     * Cada fila contiene el ID, el nombre, el precio, el ID de la categoría y la puntuación de relevancia.
+     *
+     * @param query  la consulta en modo booleano de MariaDB (por ejemplo "+jamon* +serrano*").
+     * @param limit  número máximo de resultados.
+     * @param offset número de resultados a saltar.
+     * @return las filas encontradas.
+     */
+    @Query(value = "SELECT p.id, p.name, p.price, p.category_id, " +
+            "MATCH(p.search_name) AGAINST(:query IN BOOLEAN MODE) AS score " +
+            "FROM products p " +
+            "WHERE MATCH(p.search_name) AGAINST(:query IN BOOLEAN MODE) " +
+            "ORDER BY score DESC, CHAR_LENGTH(p.search_name), p.id " +
+            "LIMIT :limit OFFSET :offset", nativeQuery = true)
+    List<Object[]> searchFullText(@Param("query") String query, @Param("limit") int limit, @Param("offset") int offset);
+
+
+    /**
+     * Busca productos cuyo nombre normalizado empieza por un prefijo, usando el índice normal de la columna.
+     * Se usa para búsquedas con palabras más cortas que el tamaño mínimo de palabra del índice FULLTEXT.
+     *
+     * @param prefix el prefijo normalizado.
+     * @param limit  número máximo de resultados.
+     * @param offset número de resultados a saltar.
+     * @return las filas encontradas, con el mismo formato que {@link #searchFullText}.
+     */
+    @Query(value = "SELECT p.id, p.name, p.price, p.category_id, 0 AS score " +
+            "FROM products p " +
+            "WHERE p.search_name LIKE CONCAT(:prefix, '%') " +
+            "ORDER BY CHAR_LENGTH(p.search_name), p.id " +
+            "LIMIT :limit OFFSET :offset", nativeQuery = true)
+    List<Object[]> searchByPrefix(@Param("prefix") String prefix, @Param("limit") int limit, @Param("offset") int offset);
+
+
+    /**
+     * Obtiene productos que todavía no tienen calculado el nombre normalizado.
+     *
+     * @param limit número máximo de productos.
+     * @return los productos encontrados.
+     */
+    List<Product> findBySearchNameIsNull(Limit limit);
+
+
+    /**
+     * Obtiene los productos de una categoría y de todas sus subcategorías, a cualquier profundidad,
+     * recorriendo la jerarquía con una CTE recursiva en la base de datos.
+     *
+     * Cada fila contiene el ID, el nombre, el precio y el ID de la categoría del producto.
+     *
+     * @param categoryId ID de la categoría raíz.
+     * @param limit      número máximo de resultados.
+     * @param offset     número de resultados a saltar.
+     * @return las filas encontradas, ordenadas por nombre.
+     */
+    @Query(value = "WITH RECURSIVE subtree (id) AS (" +
+            "  SELECT c.id FROM categories c WHERE c.id = :categoryId " +
+            "  UNION " +
+            "  SELECT c.id FROM categories c JOIN subtree s ON c.parent_id = s.id" +
+            ") " +
+            "SELECT p.id, p.name, p.price, p.category_id " +
+            "FROM products p JOIN subtree s ON p.category_id = s.id " +
+            "ORDER BY p.name, p.id " +
+            "LIMIT :limit OFFSET :offset", nativeQuery = true)
+    List<Object[]> findInCategorySubtree(@Param("categoryId") Long categoryId,
+                                         @Param("limit") int limit,
+                                         @Param("offset") int offset);
 }
@@ -1,18 +1,30 @@
 package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.repositories;
 
+import jakarta.persistence.QueryHint;
 import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities.Province;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.FluentQuery.FetchableFluentQuery;
 
-import java.util.List;
 import java.util.Optional;
+import java.util.function.Function;
 
-public interface ProvinceRepository extends JpaRepository<Province, Long> {
+public interface ProvinceRepository extends JpaRepository<Province, Long>, JpaSpecificationExecutor<Province> {
 
-    List<Province> findAll();
+    // Listado paginado por cursor. La región se carga en la misma consulta, ya que ProvinceMapper siempre
+    // la convierte a DTO, y el resultado se guarda en la caché de consultas de Hibernate
+    @EntityGraph(attributePaths = "region")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    <S extends Province, R> R findBy(Specification<Province> spec, Function<FetchableFluentQuery<S>, R> queryFunction);
 
     void deleteById(Long id);
 
+    @EntityGraph(attributePaths = "region")
     Optional<Province> findById(Long id);
 
     boolean existsProvinceByCode(String code);
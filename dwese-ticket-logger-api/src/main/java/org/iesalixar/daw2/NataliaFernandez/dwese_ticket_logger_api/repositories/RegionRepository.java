@@ -1,25 +1,35 @@
 package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.repositories;
 
+import jakarta.persistence.QueryHint;
 import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities.Region;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.FluentQuery.FetchableFluentQuery;
 import org.springframework.data.repository.query.Param;
 
-import java.util.List;
 import java.util.Optional;
+import java.util.function.Function;
 
 /**
  * Repositorio para la entidad Region que extiende JpaRepository.
  * Proporciona operaciones CRUD y consultas personalizadas para la entidad Region.
  */
-public interface RegionRepository extends JpaRepository<Region, Long> {
+public interface RegionRepository extends JpaRepository<Region, Long>, JpaSpecificationExecutor<Region> {
 
     /**
-     * Obtiene todas las regiones.
+     * Consulta con especificación, usada por el listado paginado por cursor. Cada página se guarda en la
+     * caché de consultas de Hibernate y se invalida automáticamente cuando se modifica la tabla `regions`.
      *
-     * @return una lista de todas las regiones.
+     * @param spec          el filtro.
+     * @param queryFunction la ordenación, el límite y la posición de la página.
+     * @return el resultado de la consulta.
      */
-    List<Region> findAll();
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    <S extends Region, R> R findBy(Specification<Region> spec, Function<FetchableFluentQuery<S>, R> queryFunction);
 
     /**
      * Inserta o actualiza una región.
@@ -0,0 +1,202 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.repositories;
+
+import jakarta.persistence.QueryHint;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities.SpendingDimension;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities.SpendingRollup;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities.SpendingRollupId;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+
+/**
+ * Repositorio de la tabla de gasto mensual agregado `spending_monthly`.
+ *
+ * Las consultas de actualización suman (`sign` = 1) o restan (`sign` = -1) la aportación de un
+ * conjunto de tickets a cada dimensión, calculada a partir de sus líneas con una sola sentencia.
+ *
+ * Cada ticket guarda en `rollup_supermarket_id`, `rollup_province_id` y `rollup_region_id`, y cada línea
+ * en `rollup_category_id`, el elemento al que se sumó su gasto (0 si no tenía). Así se resta de los mismos
+ * elementos aunque la ubicación o el producto hayan cambiado después. Los tickets guardados antes de
+ * existir estas columnas las tienen a NULL y usan los valores actuales.
+ */
+public interface SpendingRollupRepository extends JpaRepository<SpendingRollup, SpendingRollupId> {
+
+
+    /**
+     * Columnas comunes de cada línea de ticket: mes, importe con el descuento del ticket y unidades.
+     */
+    String LINE_VALUES =
+            "DATE_FORMAT(t.date, '%Y-%m-01') AS line_month, " +
+            "tl.quantity * tl.unit_price * (1 - t.discount / 100) AS line_amount, " +
+            "tl.quantity AS line_units ";
+
+    String LINES_FROM =
+            "FROM tickets t " +
+            "JOIN ticket_lines tl ON tl.ticket_id = t.id " +
+            "JOIN products p ON p.id = tl.product_id " +
+            "LEFT JOIN locations l ON l.id = t.location_id " +
+            "LEFT JOIN provinces pv ON pv.id = l.province_id ";
+
+    String SUPERMARKET_LINES = "SELECT 'SUPERMARKET' AS line_dimension, COALESCE(t.rollup_supermarket_id, l.supermarket_id, 0) AS line_dimension_id, " + LINE_VALUES + LINES_FROM;
+    String PROVINCE_LINES = "SELECT 'PROVINCE' AS line_dimension, COALESCE(t.rollup_province_id, l.province_id, 0) AS line_dimension_id, " + LINE_VALUES + LINES_FROM;
+    String REGION_LINES = "SELECT 'REGION' AS line_dimension, COALESCE(t.rollup_region_id, pv.region_id, 0) AS line_dimension_id, " + LINE_VALUES + LINES_FROM;
+    String CATEGORY_LINES = "SELECT 'CATEGORY' AS line_dimension, COALESCE(tl.rollup_category_id, p.category_id, 0) AS line_dimension_id, " + LINE_VALUES + LINES_FROM;
+
+    /**
+     * Guardan en los tickets y sus líneas los elementos que tienen ahora su ubicación y sus productos.
+     */
+    String STAMP_TICKETS =
+            "UPDATE tickets t " +
+            "LEFT JOIN locations l ON l.id = t.location_id " +
+            "LEFT JOIN provinces pv ON pv.id = l.province_id " +
+            "SET t.rollup_supermarket_id = COALESCE(l.supermarket_id, 0), " +
+            "t.rollup_province_id = COALESCE(l.province_id, 0), " +
+            "t.rollup_region_id = COALESCE(pv.region_id, 0) ";
+
+    String STAMP_LINES =
+            "UPDATE ticket_lines tl " +
+            "JOIN tickets t ON t.id = tl.ticket_id " +
+            "JOIN products p ON p.id = tl.product_id " +
+            "SET tl.rollup_category_id = COALESCE(p.category_id, 0) ";
+
+    String BY_TICKETS = "WHERE t.id IN (:ticketIds) ";
+    String BY_DATES = "WHERE t.date >= :from AND t.date < :to ";
+
+    String INSERT_ROLLUP =
+            "INSERT INTO spending_monthly (dimension, month_start, dimension_id, amount, units) " +
+            "SELECT x.line_dimension, x.line_month, x.line_dimension_id, :sign * SUM(x.line_amount), :sign * SUM(x.line_units) " +
+            "FROM (";
+
+    String GROUP_AND_MERGE =
+            ") x GROUP BY x.line_dimension, x.line_month, x.line_dimension_id " +
+            "ON DUPLICATE KEY UPDATE spending_monthly.amount = spending_monthly.amount + VALUES(amount), " +
+            "spending_monthly.units = spending_monthly.units + VALUES(units)";
+
+
+    /**
+     * Las consultas nativas de actualización solo modifican `spending_monthly`. Sin indicarlo, Hibernate
+     * no sabe qué tablas cambian y vacía toda la caché de segundo nivel en cada ticket guardado.
+     */
+    String ROLLUP_SPACE = "spending_monthly";
+
+    /**
+     * Las columnas `rollup_*` de tickets y líneas no están mapeadas en las entidades, así que guardarlas
+     * tampoco deja nada desactualizado en la caché de segundo nivel.
+     */
+    String STAMP_SPACE = ROLLUP_SPACE;
+
+
+    /**
+     * Guarda en los tickets indicados y sus líneas los elementos a los que se suma ahora su gasto.
+     *
+     * @param ticketIds los IDs de los tickets.
+     * @return el número de tickets actualizados.
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = STAMP_SPACE))
+    @Query(value = STAMP_TICKETS + BY_TICKETS, nativeQuery = true)
+    int stampTickets(@Param("ticketIds") Collection<Long> ticketIds);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = STAMP_SPACE))
+    @Query(value = STAMP_LINES + BY_TICKETS, nativeQuery = true)
+    int stampTicketLines(@Param("ticketIds") Collection<Long> ticketIds);
+
+
+    /**
+     * Guarda en los tickets de un rango de fechas y sus líneas los elementos actuales. Se usa al reconstruir
+     * la tabla, que vuelve a asignar el gasto antiguo según los datos actuales.
+     *
+     * @param from fecha mínima (incluida).
+     * @param to   fecha máxima (excluida).
+     * @return el número de tickets actualizados.
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = STAMP_SPACE))
+    @Query(value = STAMP_TICKETS + BY_DATES, nativeQuery = true)
+    int stampDateRange(@Param("from") Date from, @Param("to") Date to);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = STAMP_SPACE))
+    @Query(value = STAMP_LINES + BY_DATES, nativeQuery = true)
+    int stampTicketLinesDateRange(@Param("from") Date from, @Param("to") Date to);
+
+
+    /**
+     * Suma o resta en la tabla agregada la aportación de los tickets indicados.
+     *
+     * @param ticketIds los IDs de los tickets.
+     * @param sign      1 para sumar, -1 para restar.
+     * @return el número de filas afectadas.
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = ROLLUP_SPACE))
+    @Query(value = INSERT_ROLLUP +
+            SUPERMARKET_LINES + BY_TICKETS + "UNION ALL " +
+            PROVINCE_LINES + BY_TICKETS + "UNION ALL " +
+            REGION_LINES + BY_TICKETS + "UNION ALL " +
+            CATEGORY_LINES + BY_TICKETS +
+            GROUP_AND_MERGE, nativeQuery = true)
+    int applyTickets(@Param("ticketIds") Collection<Long> ticketIds, @Param("sign") int sign);
+
+
+    /**
+     * Suma en la tabla agregada la aportación de los tickets de un rango de fechas. Se usa al reconstruirla.
+     *
+     * @param from fecha mínima (incluida).
+     * @param to   fecha máxima (excluida).
+     * @param sign 1 para sumar, -1 para restar.
+     * @return el número de filas afectadas.
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = ROLLUP_SPACE))
+    @Query(value = INSERT_ROLLUP +
+            SUPERMARKET_LINES + BY_DATES + "UNION ALL " +
+            PROVINCE_LINES + BY_DATES + "UNION ALL " +
+            REGION_LINES + BY_DATES + "UNION ALL " +
+            CATEGORY_LINES + BY_DATES +
+            GROUP_AND_MERGE, nativeQuery = true)
+    int applyDateRange(@Param("from") Date from, @Param("to") Date to, @Param("sign") int sign);
+
+
+    /**
+     * Elimina las filas agregadas de un rango de meses.
+     *
+     * @param from primer mes (incluido).
+     * @param to   último mes (excluido).
+     * @return el número de filas eliminadas.
+     */
+    @Modifying
+    @Query("DELETE FROM SpendingRollup r WHERE r.id.month >= :from AND r.id.month < :to")
+    int deleteMonths(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+
+    /**
+     * Obtiene el gasto mensual de una dimensión entre dos meses, opcionalmente de un único elemento.
+     *
+     * @param dimension   la dimensión.
+     * @param from        primer mes (incluido).
+     * @param to          último mes (incluido).
+     * @param dimensionId ID del elemento, o null para todos.
+     * @return las filas ordenadas por mes e ID.
+     */
+    @Query("SELECT r FROM SpendingRollup r " +
+            "WHERE r.id.dimension = :dimension " +
+            "AND r.id.month BETWEEN :from AND :to " +
+            "AND (:dimensionId IS NULL OR r.id.dimensionId = :dimensionId) " +
+            "AND (r.amount <> 0 OR r.units <> 0) " +
+            "ORDER BY r.id.month, r.id.dimensionId")
+    List<SpendingRollup> findByDimension(@Param("dimension") SpendingDimension dimension,
+                                         @Param("from") LocalDate from,
+                                         @Param("to") LocalDate to,
+                                         @Param("dimensionId") Long dimensionId);
+}
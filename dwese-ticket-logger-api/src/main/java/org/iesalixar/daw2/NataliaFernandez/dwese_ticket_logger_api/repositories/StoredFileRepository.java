@@ -0,0 +1,63 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.repositories;
+
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities.StoredFile;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Optional;
+
+
+/**
+ * Repositorio de los archivos subidos guardados por contenido (`stored_files`).
+ *
+ * Las operaciones que modifican el número de referencias bloquean la fila del archivo hasta el final
+ * de la transacción, de modo que guardar y liberar el mismo contenido a la vez no pueden dejar
+ * una fila sin archivo en disco ni borrar un archivo que acaba de volver a usarse.
+ */
+public interface StoredFileRepository extends JpaRepository<StoredFile, String> {
+
+
+    /**
+     * Registra una referencia a un archivo: lo da de alta con una referencia o, si ya existe
+     * el mismo contenido, suma una referencia al existente.
+     *
+     * @param hash     hash SHA-256 del contenido.
+     * @param fileName nombre con el que se guardará el archivo si es nuevo.
+     * @param size     tamaño del archivo en bytes.
+     * @return el número de filas afectadas.
+     */
+    @Modifying(clearAutomatically = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "stored_files"))
+    @Query(value = "INSERT INTO stored_files (hash, file_name, size, ref_count, created_at, last_used_at) " +
+            "VALUES (:hash, :fileName, :size, 1, NOW(), NOW()) " +
+            "ON DUPLICATE KEY UPDATE ref_count = ref_count + 1, last_used_at = NOW()", nativeQuery = true)
+    int acquire(@Param("hash") String hash, @Param("fileName") String fileName, @Param("size") long size);
+
+
+    /**
+     * Obtiene un archivo por su nombre bloqueando su fila hasta el final de la transacción.
+     *
+     * @param fileName nombre del archivo.
+     * @return el archivo, o vacío si no se guardó por contenido.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<StoredFile> findByFileName(String fileName);
+
+
+    /**
+     * Obtiene un archivo por su hash bloqueando su fila hasta el final de la transacción. Si no existe,
+     * el bloqueo del hueco del índice impide que se dé de alta ese contenido hasta que termine la transacción.
+     *
+     * @param hash hash SHA-256 del contenido.
+     * @return el archivo, o vacío si no está dado de alta.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<StoredFile> findByHash(String hash);
+}
@@ -1,15 +1,23 @@
 package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.repositories;
 
+import jakarta.persistence.QueryHint;
 import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities.Supermarket;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.FluentQuery.FetchableFluentQuery;
 
-import java.util.List;
 import java.util.Optional;
+import java.util.function.Function;
 
-public interface SupermarketRepository extends JpaRepository<Supermarket, Long> {
+public interface SupermarketRepository extends JpaRepository<Supermarket, Long>, JpaSpecificationExecutor<Supermarket> {
 
-    List<Supermarket> findAll();
+    // Listado paginado por cursor; cada página se guarda en la caché de consultas de Hibernate
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    <S extends Supermarket, R> R findBy(Specification<Supermarket> spec, Function<FetchableFluentQuery<S>, R> queryFunction);
 
     void deleteById(Long id);
 
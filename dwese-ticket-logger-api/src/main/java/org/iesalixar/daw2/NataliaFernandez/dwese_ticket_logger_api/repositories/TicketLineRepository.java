@@ -0,0 +1,49 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.repositories;
+
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.ProductPriceDTO;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities.TicketLine;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+
+/**
+ * Repositorio para la entidad TicketLine que extiende JpaRepository.
+ * Proporciona operaciones CRUD y consultas personalizadas para las líneas de ticket.
+ */
+public interface TicketLineRepository extends JpaRepository<TicketLine, Long> {
+
+
+    /**
+     * Obtiene las líneas de un ticket correspondientes a un conjunto de productos, con una sola consulta.
+     *
+     * @param ticketId   el ID del ticket.
+     * @param productIds los IDs de los productos.
+     * @return la lista de líneas encontradas.
+     */
+    @Query("SELECT tl FROM TicketLine tl JOIN FETCH tl.product p WHERE tl.ticket.id = :ticketId AND p.id IN :productIds")
+    List<TicketLine> findByTicketIdAndProductIds(@Param("ticketId") Long ticketId,
+                                                 @Param("productIds") Collection<Long> productIds);
+
+
+    /**
+     * Obtiene el historial de precios pagados por un producto, del más reciente al más antiguo.
+     *
+     * Los precios salen de las líneas de ticket, que guardan el precio unitario de cada compra,
+     * por lo que no es necesario consultar la tabla de productos.
+     *
+     * @param productId el ID del producto.
+     * @param limit     número máximo de registros a devolver.
+     * @return la lista de precios pagados por el producto.
+     */
+    @Query("SELECT new org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.ProductPriceDTO(" +
+            "t.id, t.date, tl.unitPrice, tl.quantity) " +
+            "FROM TicketLine tl JOIN tl.ticket t " +
+            "WHERE tl.product.id = :productId " +
+            "ORDER BY t.date DESC, t.id DESC")
+    List<ProductPriceDTO> findPriceHistory(@Param("productId") Long productId, Limit limit);
+}
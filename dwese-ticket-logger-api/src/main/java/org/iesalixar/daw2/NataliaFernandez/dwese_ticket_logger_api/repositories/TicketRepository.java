@@ -1,7 +1,17 @@
 package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.repositories;
+import java.util.Date;
 import java.util.List;
+
+import jakarta.persistence.QueryHint;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.TicketSummaryDTO;
 import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities.Ticket;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
 
 /**
@@ -20,4 +30,103 @@ public interface TicketRepository extends JpaRepository<Ticket, Long> {
      * @return una lista de tickets con un descuento mayor que el valor especificado.
      */
     List<Ticket> findByDiscountGreaterThan(Float discount);
+
+
+    /**
+     * Obtiene una página de tickets ordenados por fecha e ID descendentes, usando paginación por cursor (keyset).
+     *
+     * Devuelve directamente los datos planos del ticket en una sola consulta, sin cargar
+     * las entidades `Location` ni la lista de productos. El total se lee de la columna guardada en `tickets`.
+     *
+     * @param from        fecha mínima (incluida), o null para no filtrar.
+     * @param to          fecha máxima (excluida), o null para no filtrar.
+     * @param locationId  ID de la ubicación, o null para no filtrar.
+     * @param cursorDate  fecha del último ticket de la página anterior, o null para la primera página.
+     * @param cursorId    ID del último ticket de la página anterior, o null para la primera página.
+     * @param limit       número máximo de tickets a devolver.
+     * @return la lista de tickets de la página.
+     */
+    @Query("SELECT new org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.TicketSummaryDTO(" +
+            "t.id, t.date, t.discount, t.total, l.id, l.address, l.city, s.name) " +
+            "FROM Ticket t JOIN t.location l LEFT JOIN l.supermarket s " +
+            "WHERE (:from IS NULL OR t.date >= :from) " +
+            "AND (:to IS NULL OR t.date < :to) " +
+            "AND (:locationId IS NULL OR l.id = :locationId) " +
+            "AND (:cursorDate IS NULL OR t.date < :cursorDate OR (t.date = :cursorDate AND t.id < :cursorId)) " +
+            "ORDER BY t.date DESC, t.id DESC")
+    List<TicketSummaryDTO> findSummariesAfter(@Param("from") Date from,
+                                              @Param("to") Date to,
+                                              @Param("locationId") Long locationId,
+                                              @Param("cursorDate") Date cursorDate,
+                                              @Param("cursorId") Long cursorId,
+                                              Limit limit);
+
+
+    /**
+     * Subconsulta con la suma de los importes de las líneas de cada ticket en un rango de IDs,
+     * comparada con el subtotal y el total guardados.
+     */
+    String TOTALS_DRIFT_FROM =
+            "FROM tickets t " +
+            "LEFT JOIN (SELECT tl.ticket_id, SUM(tl.quantity * tl.unit_price) AS amount " +
+            "           FROM ticket_lines tl " +
+            "           WHERE tl.ticket_id BETWEEN :fromId AND :toId " +
+            "           GROUP BY tl.ticket_id) x ON x.ticket_id = t.id ";
+
+    String TOTALS_DRIFT_WHERE =
+            "WHERE t.id BETWEEN :fromId AND :toId " +
+            "AND (t.subtotal <> COALESCE(x.amount, 0) " +
+            "     OR t.total <> ROUND(COALESCE(x.amount, 0) * (1 - t.discount / 100), 2))";
+
+
+    /**
+     * Cuenta los tickets de un rango de IDs cuyo subtotal o total guardado no coincide con sus líneas.
+     *
+     * @param fromId primer ID del rango (incluido).
+     * @param toId   último ID del rango (incluido).
+     * @return el número de tickets con el total desajustado.
+     */
+    @Query(value = "SELECT COUNT(*) " + TOTALS_DRIFT_FROM + TOTALS_DRIFT_WHERE, nativeQuery = true)
+    long countTotalsDrift(@Param("fromId") Long fromId, @Param("toId") Long toId);
+
+
+    /**
+     * Recalcula en bloque el subtotal y el total de los tickets desajustados de un rango de IDs.
+     *
+     * @param fromId primer ID del rango (incluido).
+     * @param toId   último ID del rango (incluido).
+     * @return el número de tickets corregidos.
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "tickets"))
+    @Query(value = "UPDATE tickets t " +
+            "LEFT JOIN (SELECT tl.ticket_id, SUM(tl.quantity * tl.unit_price) AS amount " +
+            "           FROM ticket_lines tl " +
+            "           WHERE tl.ticket_id BETWEEN :fromId AND :toId " +
+            "           GROUP BY tl.ticket_id) x ON x.ticket_id = t.id " +
+            "SET t.subtotal = COALESCE(x.amount, 0), " +
+            "    t.total = ROUND(COALESCE(x.amount, 0) * (1 - t.discount / 100), 2) " +
+            TOTALS_DRIFT_WHERE, nativeQuery = true)
+    int repairTotals(@Param("fromId") Long fromId, @Param("toId") Long toId);
+
+
+    /**
+     * Obtiene el mayor ID de ticket, o null si no hay tickets.
+     */
+    @Query("SELECT MAX(t.id) FROM Ticket t")
+    Long findMaxId();
+
+
+    /**
+     * Obtiene la fecha del ticket más antiguo, o null si no hay tickets.
+     */
+    @Query("SELECT MIN(t.date) FROM Ticket t")
+    Date findMinDate();
+
+
+    /**
+     * Obtiene la fecha del ticket más reciente, o null si no hay tickets.
+     */
+    @Query("SELECT MAX(t.date) FROM Ticket t")
+    Date findMaxDate();
 }
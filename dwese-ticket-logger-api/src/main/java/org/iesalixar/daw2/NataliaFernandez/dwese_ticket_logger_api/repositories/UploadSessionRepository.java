@@ -0,0 +1,39 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.repositories;
+
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities.UploadSession;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+
+    Optional<UploadSession> findByIdAndUsername(String id, String username);
+
+    List<UploadSession> findByExpiresAtBefore(LocalDateTime dateTime);
+
+    /**
+     * Borra una sesión finalizada. Si dos peticiones la asignan a la vez, la segunda espera a la primera
+     * y no borra nada.
+     *
+     * @param id ID de la sesión.
+     * @return 1 si se ha borrado, 0 si ya no existía.
+     */
+    @Modifying
+    @Query("DELETE FROM UploadSession s WHERE s.id = :id AND s.storedFileName IS NOT NULL")
+    int deleteFinished(@Param("id") String id);
+
+    /**
+     * Número de subidas finalizadas sin asignar de cada archivo guardado: cada una tiene una referencia.
+     *
+     * @return filas con el nombre del archivo y el número de sesiones.
+     */
+    @Query("SELECT s.storedFileName, COUNT(s) FROM UploadSession s WHERE s.storedFileName IS NOT NULL GROUP BY s.storedFileName")
+    List<Object[]> countStoredFileReferences();
+
+    long countByStoredFileName(String storedFileName);
+}
@@ -0,0 +1,68 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.services;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.CacheRegionStatsDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Servicio que consulta y gestiona la caché de segundo nivel de Hibernate.
+ */
+@Service
+public class CacheStatisticsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheStatisticsService.class);
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    /**
+     * Obtiene los aciertos, fallos y escrituras de cada región de la caché desde que arrancó la aplicación.
+     *
+     * @return las estadísticas de cada región, ordenadas por nombre.
+     */
+    public List<CacheRegionStatsDTO> getRegionStatistics() {
+        Statistics statistics = sessionFactory().getStatistics();
+        List<CacheRegionStatsDTO> result = new ArrayList<>();
+        for (String region : sortedRegionNames(statistics)) {
+            CacheRegionStatistics regionStatistics = statistics.getCacheRegionStatistics(region);
+            if (regionStatistics == null) {
+                continue;
+            }
+            long hits = regionStatistics.getHitCount();
+            long misses = regionStatistics.getMissCount();
+            long reads = hits + misses;
+            result.add(new CacheRegionStatsDTO(region, hits, misses, regionStatistics.getPutCount(),
+                    reads > 0 ? (double) hits / reads : 0));
+        }
+        return result;
+    }
+
+    /**
+     * Vacía toda la caché de segundo nivel. Solo es necesario si se modifican las tablas de referencia
+     * directamente en la base de datos, ya que los cambios hechos por la API la mantienen actualizada.
+     */
+    public void evictAll() {
+        sessionFactory().getCache().evictAll();
+        logger.info("Se ha vaciado la caché de segundo nivel.");
+    }
+
+    private SessionFactory sessionFactory() {
+        return entityManagerFactory.unwrap(SessionFactory.class);
+    }
+
+    private static List<String> sortedRegionNames(Statistics statistics) {
+        String[] names = statistics.getSecondLevelCacheRegionNames();
+        Arrays.sort(names);
+        return Arrays.asList(names);
+    }
+}
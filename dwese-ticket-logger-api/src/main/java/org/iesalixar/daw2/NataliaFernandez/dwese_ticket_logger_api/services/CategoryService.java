@@ -3,19 +3,35 @@ package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.services;
 import jakarta.validation.Valid;
 import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.CategoryDTO;
 import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.CategoryCreateDTO;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.CategoryTreeDTO;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.ProductDTO;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.ProductPageDTO;
 import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities.Category;
 import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.mappers.CategoryMapper;
 import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.repositories.CategoryRepository;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.repositories.ProductRepository;
 import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.services.FileStorageService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.MessageSource;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.CursorPageDTO;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.utils.CursorPagination;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -38,11 +54,46 @@ public class CategoryService {
     @Autowired
     private MessageSource messageSource;
 
-    public List<CategoryDTO> getAllCategories() {
-        List<Category> categories = categoryRepository.findAll();
-        return categories.stream()
-                .map(categoryMapper::toDTO)
-                .collect(Collectors.toList());
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ImageVariantService imageVariantService;
+
+    @Autowired
+    private UploadSessionService uploadSessionService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // Tamaño máximo de página permitido al listar los productos de una categoría
+    public static final int MAX_PAGE_SIZE = 100;
+
+    // Propiedades por las que se puede ordenar el listado de categorías
+    public static final Set<String> SORT_PROPERTIES = Set.of("name", "id");
+
+    /**
+     * Lista las categorías paginadas por cursor, con filtros opcionales por nombre y categoría padre.
+     * La categoría padre se carga en la misma consulta. Para la jerarquía completa, ver {@link #getCategoryTree()}.
+     *
+     * @param name     texto que debe contener el nombre, o null para no filtrar.
+     * @param parentId ID de la categoría padre, o null para no filtrar.
+     * @param sort     ordenación ("name" o "id", opcionalmente seguida de ",desc").
+     * @param cursor   cursor devuelto en la página anterior, o null para la primera página.
+     * @param size     número de categorías por página.
+     * @return la página de categorías con el cursor de la siguiente.
+     * @throws IllegalArgumentException si la ordenación o el cursor no son válidos.
+     */
+    public CursorPageDTO<CategoryDTO> getCategories(String name, Long parentId, String sort, String cursor, int size) {
+        Sort order = CursorPagination.parseSort(sort, SORT_PROPERTIES, "name");
+        Specification<Category> filter = Specification.allOf(
+                CursorPagination.containsIgnoreCase("name", name),
+                CursorPagination.hasAssociation("parentCategory", parentId));
+        Window<Category> categories = categoryRepository.findBy(filter, query -> query
+                .sortBy(order)
+                .limit(CursorPagination.pageSize(size))
+                .scroll(CursorPagination.decodeCursor(cursor, order)));
+        return CursorPagination.toPage(categories, categoryMapper::toDTO);
     }
 
     public Optional<CategoryDTO> getCategoryById(Long id) {
@@ -51,6 +102,84 @@ public class CategoryService {
     }
 
 
+    /**
+     * Obtiene el árbol completo de categorías con una sola consulta.
+     *
+     * La base de datos devuelve las categorías ordenadas por profundidad, de modo que el padre de cada
+     * fila ya se ha procesado cuando se llega a ella. Después se recorren las filas en orden inverso
+     * (de las más profundas a las raíces) para sumar los productos de cada subárbol a su padre.
+     *
+     * @return las categorías principales, cada una con sus subcategorías.
+     */
+    @Transactional(readOnly = true)
+    public List<CategoryTreeDTO> getCategoryTree() {
+        List<Object[]> rows = categoryRepository.findTreeRows();
+        List<CategoryTreeDTO> nodes = new ArrayList<>(rows.size());
+        Map<Long, CategoryTreeDTO> nodesById = new HashMap<>();
+        List<CategoryTreeDTO> roots = new ArrayList<>();
+
+        for (Object[] row : rows) {
+            CategoryTreeDTO node = new CategoryTreeDTO();
+            node.setId(((Number) row[0]).longValue());
+            node.setName((String) row[1]);
+            node.setImage((String) row[2]);
+            node.setParentId(row[3] != null ? ((Number) row[3]).longValue() : null);
+            node.setProductCount(((Number) row[5]).longValue());
+            node.setTotalProductCount(node.getProductCount());
+
+            CategoryTreeDTO parent = node.getParentId() != null ? nodesById.get(node.getParentId()) : null;
+            if (parent != null) {
+                parent.getChildren().add(node);
+            } else {
+                roots.add(node);
+            }
+            nodes.add(node);
+            nodesById.put(node.getId(), node);
+        }
+
+        for (int i = nodes.size() - 1; i >= 0; i--) {
+            CategoryTreeDTO node = nodes.get(i);
+            CategoryTreeDTO parent = node.getParentId() != null ? nodesById.get(node.getParentId()) : null;
+            if (parent != null) {
+                parent.setTotalProductCount(parent.getTotalProductCount() + node.getTotalProductCount());
+            }
+        }
+
+        logger.info("Árbol de categorías generado con {} categorías.", nodes.size());
+        return roots;
+    }
+
+    /**
+     * Obtiene los productos de una categoría y de todas sus subcategorías, ordenados por nombre.
+     *
+     * @param id   ID de la categoría.
+     * @param page número de página (empezando en 0).
+     * @param size número de productos por página.
+     * @return la página de productos.
+     * @throws IllegalArgumentException si la categoría no existe.
+     */
+    @Transactional(readOnly = true)
+    public ProductPageDTO getProductsInSubtree(Long id, int page, int size) {
+        if (!categoryRepository.existsById(id)) {
+            throw new IllegalArgumentException("La categoría no existe.");
+        }
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        int pageNumber = Math.max(0, page);
+
+        // Se pide un producto de más para saber si existe una página siguiente
+        List<Object[]> rows = productRepository.findInCategorySubtree(id, pageSize + 1, pageNumber * pageSize);
+        boolean hasNext = rows.size() > pageSize;
+        List<ProductDTO> content = rows.stream()
+                .limit(pageSize)
+                .map(row -> new ProductDTO(
+                        ((Number) row[0]).longValue(),
+                        (String) row[1],
+                        (BigDecimal) row[2],
+                        row[3] != null ? ((Number) row[3]).longValue() : null))
+                .toList();
+        return new ProductPageDTO(content, pageNumber, content.size(), hasNext);
+    }
+
     public CategoryDTO createCategory(CategoryCreateDTO createDTO) {
         logger.info("Creando una nueva categoría con nombre {}", createDTO.getName());
 
@@ -66,66 +195,164 @@ public class CategoryService {
                     .orElseThrow(() -> new IllegalArgumentException("La categoría padre no existe."));
         }
 
-        // Procesar la imagen si se proporciona
+        // Procesar la imagen si se proporciona; una subida por partes solo se comprueba aquí y se asigna al guardar
         String fileName = null;
+        String imageUploadId = imageUploadId(createDTO);
         if (createDTO.getImageFile() != null && !createDTO.getImageFile().isEmpty()) {
             fileName = fileStorageService.saveFile(createDTO.getImageFile());
             if (fileName == null) {
                 throw new RuntimeException("Error al guardar la imagen.");
             }
+        } else if (imageUploadId != null) {
+            fileName = uploadSessionService.getStoredFileName(imageUploadId);
         }
 
         // Crear la entidad Category
         Category category = categoryMapper.toEntity(createDTO, parentCategory);
         category.setImage(fileName);
 
-        // Guardar la nueva categoría
-        Category savedCategory = categoryRepository.save(category);
+        // Guardar la nueva categoría y asignarle la subida en la misma transacción. Si no se guarda, la subida
+        // sigue disponible y solo se libera la referencia a la imagen que se acaba de guardar.
+        Category savedCategory;
+        try {
+            savedCategory = transactionTemplate.execute(status -> {
+                if (imageUploadId != null) {
+                    uploadSessionService.claimStoredFile(imageUploadId);
+                }
+                return categoryRepository.save(category);
+            });
+        } catch (RuntimeException e) {
+            if (fileName != null && imageUploadId == null) {
+                fileStorageService.deleteFile(fileName);
+            }
+            throw e;
+        }
         logger.info("Categoría creada exitosamente con ID {}", savedCategory.getId());
 
+        // Generar en segundo plano las versiones reducidas de la imagen
+        imageVariantService.scheduleVariants(fileName);
+
         // Convertir la entidad guardada a DTO y devolverla
         return categoryMapper.toDTO(savedCategory);
     }
 
+    /**
+     * Actualiza una categoría. El nombre y la categoría padre se comprueban antes de guardar la imagen y
+     * otra vez, con la jerarquía bloqueada, en la transacción que guarda los cambios (ver {@link #applyUpdate}).
+     *
+     * @param id        ID de la categoría.
+     * @param updateDTO nuevos datos de la categoría.
+     * @return la categoría actualizada.
+     * @throws IllegalArgumentException si la categoría o la categoría padre no existen, si el nombre ya está
+     *                                  en uso o si la categoría padre es la propia categoría o una de sus subcategorías.
+     */
     public CategoryDTO updateCategory(Long id, CategoryCreateDTO updateDTO) {
         logger.info("Actualizando categoría con ID {}", id);
 
-        // Buscar la categoría existente
-        Category existingCategory = categoryRepository.findById(id)
-                .orElseThrow(() -> new IllegalArgumentException("La categoría no existe."));
-
-        // Verificar si el nombre ya está en uso por otra categoría
-        if (categoryRepository.existsCategoryByNameAndNotId(updateDTO.getName(), id)) {
-            throw new IllegalArgumentException("El nombre de la categoría ya está en uso.");
-        }
-
-        // Obtener la categoría padre si está presente
-        Category parentCategory = null;
-        if (updateDTO.getParentCategoryId() != null) {
-            parentCategory = categoryRepository.findById(updateDTO.getParentCategoryId())
-                    .orElseThrow(() -> new IllegalArgumentException("La categoría padre no existe."));
+        // Comprobar los datos antes de guardar la imagen, para no guardarla si no son válidos
+        if (!categoryRepository.existsById(id)) {
+            throw new IllegalArgumentException("La categoría no existe.");
         }
+        validateUpdate(id, updateDTO);
 
-        // Procesar la imagen si se proporciona
-        String fileName = existingCategory.getImage(); // Conservar la imagen existente por defecto
+        // Procesar la imagen si se proporciona; si no, se conserva la existente. Una subida por partes
+        // solo se comprueba aquí y se asigna en la transacción que guarda los cambios.
+        String fileName = null;
+        String imageUploadId = imageUploadId(updateDTO);
         if (updateDTO.getImageFile() != null && !updateDTO.getImageFile().isEmpty()) {
             fileName = fileStorageService.saveFile(updateDTO.getImageFile());
             if (fileName == null) {
                 throw new RuntimeException("Error al guardar la nueva imagen.");
             }
+        } else if (imageUploadId != null) {
+            fileName = uploadSessionService.getStoredFileName(imageUploadId);
+        }
+        boolean imageReplaced = fileName != null;
+
+        // Guardar los cambios; si no se guardan, la subida sigue disponible y solo se libera la referencia
+        // a la imagen que se acaba de guardar
+        String newImage = fileName;
+        CategoryUpdate update;
+        try {
+            update = transactionTemplate.execute(status -> applyUpdate(id, updateDTO, newImage, imageUploadId));
+        } catch (RuntimeException e) {
+            if (imageReplaced && imageUploadId == null) {
+                fileStorageService.deleteFile(newImage);
+            }
+            throw e;
+        }
+        logger.info("Categoría con ID {} actualizada exitosamente.", id);
+
+        // Liberar la referencia a la imagen anterior. Si la nueva tiene el mismo contenido, es el mismo
+        // archivo y solo se deshace la referencia que acaba de sumar la subida.
+        if (imageReplaced && update.previousImage() != null && !update.previousImage().isEmpty()) {
+            fileStorageService.deleteFile(update.previousImage());
+        }
+        if (imageReplaced) {
+            imageVariantService.scheduleVariants(newImage);
+        }
+
+        // Convertir la entidad actualizada a DTO y devolverla
+        return categoryMapper.toDTO(update.category());
+    }
+
+    /**
+     * Guarda los cambios de una categoría en una transacción.
+     *
+     * Si se le asigna una categoría padre, antes de leer nada se bloquean todas las categorías: dos cambios
+     * de padre simultáneos (por ejemplo, A bajo B y B bajo A) pasarían cada uno la comprobación de ciclos
+     * sin ver el otro. Así se ejecutan uno detrás de otro y el segundo ve el cambio del primero.
+     *
+     * @param newImage      imagen nueva, o null para conservar la actual.
+     * @param imageUploadId subida por partes de la que viene la imagen nueva, o null.
+     */
+    private CategoryUpdate applyUpdate(Long id, CategoryCreateDTO updateDTO, String newImage, String imageUploadId) {
+        if (updateDTO.getParentCategoryId() != null) {
+            categoryRepository.lockAllForUpdate();
+        }
+        Category existingCategory = categoryRepository.findById(id)
+                .orElseThrow(() -> new IllegalArgumentException("La categoría no existe."));
+        Category parentCategory = validateUpdate(id, updateDTO);
+        if (imageUploadId != null) {
+            uploadSessionService.claimStoredFile(imageUploadId);
         }
 
-        // Actualizar los datos de la categoría
+        String previousImage = existingCategory.getImage();
         existingCategory.setName(updateDTO.getName());
         existingCategory.setParentCategory(parentCategory);
-        existingCategory.setImage(fileName);
+        if (newImage != null) {
+            existingCategory.setImage(newImage);
+        }
+        return new CategoryUpdate(categoryRepository.save(existingCategory), previousImage);
+    }
 
-        // Guardar los cambios
-        Category updatedCategory = categoryRepository.save(existingCategory);
-        logger.info("Categoría con ID {} actualizada exitosamente.", updatedCategory.getId());
+    private static String imageUploadId(CategoryCreateDTO dto) {
+        return dto.getImageUploadId() != null && !dto.getImageUploadId().isEmpty() ? dto.getImageUploadId() : null;
+    }
 
-        // Convertir la entidad actualizada a DTO y devolverla
-        return categoryMapper.toDTO(updatedCategory);
+    /**
+     * Comprueba el nombre y la categoría padre de una actualización.
+     *
+     * @return la categoría padre, o null si no se indica.
+     * @throws IllegalArgumentException si el nombre ya está en uso, si la categoría padre no existe o si es
+     *                                  la propia categoría o una de sus subcategorías.
+     */
+    private Category validateUpdate(Long id, CategoryCreateDTO updateDTO) {
+        // Verificar si el nombre ya está en uso por otra categoría
+        if (categoryRepository.existsCategoryByNameAndNotId(updateDTO.getName(), id)) {
+            throw new IllegalArgumentException("El nombre de la categoría ya está en uso.");
+        }
+
+        // La categoría padre no puede ser la propia categoría ni una de sus subcategorías,
+        // ya que se formaría un ciclo y la categoría desaparecería del árbol
+        if (updateDTO.getParentCategoryId() == null) {
+            return null;
+        }
+        if (categoryRepository.countInSubtree(id, updateDTO.getParentCategoryId()) > 0) {
+            throw new IllegalArgumentException("La categoría padre no puede ser la propia categoría ni una de sus subcategorías.");
+        }
+        return categoryRepository.findById(updateDTO.getParentCategoryId())
+                .orElseThrow(() -> new IllegalArgumentException("La categoría padre no existe."));
     }
 
     /**
@@ -151,4 +378,7 @@ public class CategoryService {
         categoryRepository.deleteById(id);
         logger.info("Categoría con ID {} eliminada exitosamente.", id);
     }
+
+    private record CategoryUpdate(Category category, String previousImage) {
+    }
 }
@@ -0,0 +1,350 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.services;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.TicketChangeDTO;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities.StreamEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.CollectionOptions;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import reactor.core.Disposable;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+/**
+ * Servicio del flujo de eventos SSE: notificaciones de cada usuario y cambios en los tickets.
+ *
+ * Los eventos se guardan en la colección limitada `stream_events`. Cada instancia de la aplicación lee
+ * los nuevos con un único cursor tailable y los reparte a sus clientes conectados, así que un evento
+ * guardado en una instancia llega a los clientes de todas.
+ *
+ * Cada evento lleva un número de secuencia que se obtiene incrementando un contador en MongoDB, y ese número
+ * es su ID SSE. Un cliente que se reconecta con `Last-Event-ID` recibe primero los eventos posteriores que
+ * siguen en la colección y después los nuevos, sin huecos ni repeticiones. Si ya no están todos (la colección
+ * solo guarda los últimos), se le envía un evento "reset" para que vuelva a consultar sus datos.
+ *
+ * El número se asigna justo antes de guardar el evento, así que un evento puede guardarse unos milisegundos
+ * después de otro con un número mayor. El cursor y los clientes conectados lo reciben igualmente; solo un
+ * cliente que se desconecta en ese intervalo puede no recibirlo al reconectarse.
+ */
+@Service
+public class EventStreamService {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventStreamService.class);
+
+    public static final String NOTIFICATION_EVENT = "notification";
+    public static final String TICKET_EVENT = "ticket";
+    public static final String RESET_EVENT = "reset";
+
+    private static final String COLLECTION = "stream_events";
+
+    // Colección con el contador de secuencia; un documento con el nombre de la colección de eventos como ID
+    private static final String SEQUENCE_COLLECTION = "stream_event_sequence";
+
+    // Al reabrir el cursor se vuelven a leer los últimos números, por si alguno se guardó desordenado
+    private static final long REORDER_WINDOW = 1000;
+
+    // Tamaño máximo de la colección limitada; al llenarse, MongoDB descarta los eventos más antiguos
+    @Value("${events.stream.capped-size-bytes:67108864}")
+    private long cappedSizeBytes;
+
+    @Value("${events.stream.capped-max-documents:100000}")
+    private long cappedMaxDocuments;
+
+    // Eventos que se reenvían como máximo a un cliente que se reconecta; si faltan más, recibe "reset"
+    @Value("${events.stream.replay-limit:1000}")
+    private int replayLimit;
+
+    // Eventos que pueden esperar a un cliente lento; si se supera, se cierra su conexión y se reconecta
+    @Value("${events.stream.client-buffer-size:256}")
+    private int clientBufferSize;
+
+    @Value("${events.stream.heartbeat-interval-seconds:15}")
+    private long heartbeatIntervalSeconds;
+
+    // Duración máxima de una conexión; el cliente se reconecta con el último ID recibido
+    @Value("${events.stream.max-duration-minutes:30}")
+    private long maxDurationMinutes;
+
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+
+    private final Sinks.Many<StreamEvent> liveEvents = Sinks.many().multicast().directBestEffort();
+
+    private Mono<Void> collectionReady;
+    private Disposable tail;
+
+    @PostConstruct
+    public void startTailing() {
+        // Se reintenta en la siguiente publicación si MongoDB no estaba disponible
+        collectionReady = ensureCappedCollection().cache(done -> Duration.ofMillis(Long.MAX_VALUE),
+                error -> Duration.ZERO, () -> Duration.ofMillis(Long.MAX_VALUE));
+
+        // Solo los eventos guardados desde el arranque; al reabrir el cursor se continúa por el último leído
+        AtomicReference<TailPosition> position = new AtomicReference<>();
+        tail = collectionReady
+                .then(Mono.defer(() -> position.get() != null ? Mono.just(position.get())
+                        : currentSequence().map(TailPosition::new).doOnNext(position::set)))
+                .flatMapMany(current -> mongoTemplate.tail(
+                        Query.query(Criteria.where("seq").gt(current.floor())), StreamEvent.class))
+                .filter(event -> position.get().firstSeen(event.getSeq()))
+                .doOnNext(liveEvents::tryEmitNext)
+                // El cursor se cierra si la colección está vacía o tras un error; se vuelve a abrir
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofSeconds(30))
+                        .doBeforeRetry(signal -> logger.warn("Se reabre el cursor de eventos tras un error: {}",
+                                signal.failure().getMessage())))
+                .repeatWhen(completed -> completed.delayElements(Duration.ofSeconds(1)))
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stopTailing() {
+        tail.dispose();
+        liveEvents.tryEmitComplete();
+    }
+
+    /**
+     * Guarda un evento para enviarlo a los clientes conectados. Un error al guardarlo se registra y no se propaga:
+     * el evento se pierde, pero los datos que describe ya están guardados.
+     *
+     * @param type     el tipo de evento.
+     * @param username el destinatario, o null para todos los usuarios.
+     * @param payload  los datos del evento.
+     * @return un Mono que termina cuando el evento se ha guardado.
+     */
+    public Mono<Void> publish(String type, String username, Object payload) {
+        return collectionReady
+                .then(nextSequence())
+                .flatMap(seq -> mongoTemplate.insert(new StreamEvent(null, seq, type, username, payload)))
+                .doOnError(e -> logger.error("Error al guardar el evento {}: {}", type, e.getMessage()))
+                .onErrorResume(e -> Mono.empty())
+                .then();
+    }
+
+    /**
+     * Publica un cambio en los tickets cuando termina con éxito la transacción actual (o en el momento,
+     * si no hay ninguna), para que los clientes no consulten datos que todavía no se ven o que se deshacen.
+     *
+     * @param action    CREATED, UPDATED, DELETED o IMPORTED.
+     * @param ticketIds los tickets que han cambiado.
+     */
+    public void publishTicketChange(String action, List<Long> ticketIds) {
+        TicketChangeDTO change = new TicketChangeDTO(action, List.copyOf(ticketIds));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publish(TICKET_EVENT, null, change).subscribe();
+                }
+            });
+        } else {
+            publish(TICKET_EVENT, null, change).subscribe();
+        }
+    }
+
+    /**
+     * Flujo de eventos de un usuario: sus notificaciones y los cambios en los tickets, con un comentario
+     * periódico para que los proxies no cierren la conexión.
+     *
+     * @param username    el usuario.
+     * @param lastEventId ID del último evento recibido, o null para recibir solo los nuevos. Los IDs de antes
+     *                    de numerar los eventos (ObjectId) se aceptan y reciben un evento "reset".
+     * @return el flujo de eventos SSE; termina al alcanzar la duración máxima o si el cliente no los lee a tiempo.
+     * @throws IllegalArgumentException si el ID del último evento no es válido.
+     */
+    public Flux<ServerSentEvent<Object>> stream(String username, String lastEventId) {
+        Flux<StreamEvent> live = liveEvents.asFlux().filter(event -> isVisibleTo(event, username));
+        Flux<ServerSentEvent<Object>> events;
+        if (lastEventId == null) {
+            events = live.map(EventStreamService::toSse);
+        } else if (ObjectId.isValid(lastEventId)) {
+            events = Flux.concat(Mono.just(resetEvent()), live.map(EventStreamService::toSse));
+        } else {
+            events = resume(username, parseSequence(lastEventId), live);
+        }
+        events = events.onBackpressureBuffer(clientBufferSize);
+        Flux<ServerSentEvent<Object>> heartbeats = Flux.interval(Duration.ofSeconds(heartbeatIntervalSeconds))
+                .map(tick -> ServerSentEvent.builder().comment("heartbeat").build());
+        return Flux.merge(events, heartbeats)
+                .take(Duration.ofMinutes(maxDurationMinutes))
+                .doOnSubscribe(subscription -> logger.info("Cliente de eventos conectado: {}.", username))
+                .doFinally(signal -> logger.info("Cliente de eventos desconectado: {} ({}).", username, signal));
+    }
+
+    /**
+     * Eventos posteriores a `lastEventId` guardados en la colección, seguidos de los nuevos. Se empieza a
+     * recibir los nuevos antes de consultar la colección y luego se descartan los que la consulta ya incluía,
+     * para no perder los que se guardan mientras tanto. Se descartan por número y no por ser menores que el
+     * último reenviado, porque uno con un número menor puede guardarse después.
+     *
+     * Mientras se consulta la colección se guardan como máximo `clientBufferSize` eventos nuevos. Si llegan
+     * más, se envían los reenviados y los nuevos que cabían y el flujo termina con error, igual que con un
+     * cliente lento; el cliente se reconecta desde el último que ha recibido, sin huecos.
+     */
+    private Flux<ServerSentEvent<Object>> resume(String username, long lastEventId, Flux<StreamEvent> live) {
+        return Flux.defer(() -> {
+            Sinks.Many<StreamEvent> buffered = Sinks.many().unicast()
+                    .onBackpressureBuffer(Queues.<StreamEvent>get(clientBufferSize).get());
+            Disposable connection = live.subscribe(event -> {
+                // Con la cola llena falla; antes de suscribirse el flujo devuelve FAIL_ZERO_SUBSCRIBER y no FAIL_OVERFLOW
+                if (buffered.tryEmitNext(event).isFailure()) {
+                    buffered.tryEmitError(Exceptions.failWithOverflow(
+                            "Demasiados eventos nuevos mientras se reenviaban los perdidos."));
+                }
+            });
+            AtomicReference<Set<Long>> replayed = new AtomicReference<>(Set.of());
+
+            Query missed = Query.query(Criteria.where("seq").gt(lastEventId)
+                            .orOperator(Criteria.where("username").is(username), Criteria.where("username").is(null)))
+                    .with(Sort.by(Sort.Direction.ASC, "seq"))
+                    .limit(replayLimit + 1);
+            Flux<ServerSentEvent<Object>> replay = Mono.zip(oldestSequence(), mongoTemplate.find(missed, StreamEvent.class).collectList())
+                    .flatMapMany(found -> {
+                        List<StreamEvent> events = found.getT2();
+                        // Si el evento siguiente ya no está en la colección o faltan demasiados, el cliente recarga
+                        if (found.getT1() > lastEventId + 1 || events.size() > replayLimit) {
+                            return Flux.just(resetEvent());
+                        }
+                        replayed.set(events.stream().map(StreamEvent::getSeq).collect(Collectors.toSet()));
+                        return Flux.fromIterable(events).map(EventStreamService::toSse);
+                    });
+
+            return Flux.concat(replay, buffered.asFlux()
+                            .filter(event -> !replayed.get().contains(event.getSeq()))
+                            .map(EventStreamService::toSse))
+                    .doFinally(signal -> connection.dispose());
+        });
+    }
+
+    /**
+     * Número del evento más antiguo que queda en la colección; si no hay ninguno, 0.
+     */
+    private Mono<Long> oldestSequence() {
+        return mongoTemplate.findOne(Query.query(Criteria.where("seq").exists(true))
+                        .with(Sort.by(Sort.Direction.ASC, "seq")).limit(1), StreamEvent.class)
+                .map(StreamEvent::getSeq)
+                .defaultIfEmpty(0L);
+    }
+
+    /**
+     * Reserva el siguiente número de secuencia. El incremento es atómico en MongoDB, así que dos instancias
+     * nunca obtienen el mismo.
+     */
+    private Mono<Long> nextSequence() {
+        return mongoTemplate.findAndModify(Query.query(Criteria.where("_id").is(COLLECTION)),
+                        new Update().inc("value", 1L), FindAndModifyOptions.options().upsert(true).returnNew(true),
+                        Document.class, SEQUENCE_COLLECTION)
+                .map(counter -> counter.get("value", Number.class).longValue());
+    }
+
+    /**
+     * Último número de secuencia reservado; 0 si todavía no se ha publicado ningún evento.
+     */
+    private Mono<Long> currentSequence() {
+        return mongoTemplate.findById(COLLECTION, Document.class, SEQUENCE_COLLECTION)
+                .map(counter -> counter.get("value", Number.class).longValue())
+                .defaultIfEmpty(0L);
+    }
+
+    /**
+     * Crea la colección limitada si no existe, y el índice por número de secuencia con el que se consultan
+     * los eventos de un cliente que se reconecta. Si otra instancia la crea a la vez, el error se ignora.
+     */
+    private Mono<Void> ensureCappedCollection() {
+        return mongoTemplate.collectionExists(COLLECTION)
+                .flatMap(exists -> exists ? Mono.empty() : mongoTemplate.createCollection(COLLECTION,
+                                CollectionOptions.empty().capped().size(cappedSizeBytes).maxDocuments(cappedMaxDocuments))
+                        .doOnNext(collection -> logger.info("Creada la colección limitada {}.", COLLECTION))
+                        .onErrorResume(e -> {
+                            logger.warn("No se ha creado la colección {}: {}", COLLECTION, e.getMessage());
+                            return Mono.empty();
+                        }))
+                .then(mongoTemplate.indexOps(COLLECTION).ensureIndex(new Index("seq", Sort.Direction.ASC).named("seq")))
+                .then();
+    }
+
+    private static boolean isVisibleTo(StreamEvent event, String username) {
+        return event.getUsername() == null || event.getUsername().equals(username);
+    }
+
+    private static long parseSequence(String lastEventId) {
+        try {
+            long seq = Long.parseLong(lastEventId.trim());
+            if (seq >= 0) {
+                return seq;
+            }
+        } catch (NumberFormatException e) {
+            // Se trata igual que un número negativo
+        }
+        throw new IllegalArgumentException("El ID del último evento no es válido.");
+    }
+
+    private static ServerSentEvent<Object> resetEvent() {
+        return ServerSentEvent.builder().event(RESET_EVENT).data((Object) "reset").build();
+    }
+
+    private static ServerSentEvent<Object> toSse(StreamEvent event) {
+        return ServerSentEvent.builder()
+                .id(String.valueOf(event.getSeq()))
+                .event(event.getType())
+                .data(event.getPayload())
+                .build();
+    }
+
+    /**
+     * Posición del cursor de eventos. Al reabrirlo se vuelve a leer desde `REORDER_WINDOW` números antes
+     * del último recibido, para no saltarse uno que se guardó después de otro posterior, y se descartan los
+     * que ya se habían repartido.
+     */
+    private static final class TailPosition {
+
+        // Último número reservado al arrancar; los anteriores no se reparten
+        private final long start;
+
+        // Números ya repartidos dentro de la ventana
+        private final NavigableSet<Long> seen = new ConcurrentSkipListSet<>();
+
+        TailPosition(long start) {
+            this.start = start;
+        }
+
+        long floor() {
+            return seen.isEmpty() ? start : Math.max(start, seen.last() - REORDER_WINDOW);
+        }
+
+        boolean firstSeen(long seq) {
+            if (seq <= start || !seen.add(seq)) {
+                return false;
+            }
+            seen.headSet(seen.last() - REORDER_WINDOW, true).clear();
+            return true;
+        }
+    }
+}
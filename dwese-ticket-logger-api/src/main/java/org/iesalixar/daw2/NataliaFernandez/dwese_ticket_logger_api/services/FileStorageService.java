@@ -1,21 +1,47 @@
 package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.services;
 
 
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities.StoredFile;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.repositories.StoredFileRepository;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.utils.UploadPaths;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 
-import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.UUID;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
 
 
+/**
+ * Servicio que guarda los archivos subidos en el directorio `UPLOAD_PATH`, repartidos en subdirectorios
+ * (ver `UploadPaths`).
+ *
+ * Los archivos se guardan por contenido: el nombre es el hash SHA-256 de sus bytes, de modo que una imagen
+ * subida para varias categorías se guarda una sola vez y cada uso suma una referencia (ver `StoredFile`).
+ * Los archivos con nombre aleatorio guardados antes de este esquema no tienen referencias y se borran directamente.
+ */
 @Service
 public class FileStorageService {
 
@@ -23,70 +49,237 @@ public class FileStorageService {
     private static final Logger logger = LoggerFactory.getLogger(FileStorageService.class);
 
 
+    // Tamaño del bloque con el que se copia y se calcula el hash de cada subida
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+
+    // Extensiones que no vienen comprimidas y de las que se guarda además una copia .gz para servirla precomprimida
+    private static final Set<String> COMPRESSIBLE_EXTENSIONS = Set.of("svg");
+
+
+    private static final String GZIP_SUFFIX = ".gz";
+
+
     // Variable de entorno para la ruta de almacenamiento
     @Value("${UPLOAD_PATH}")
     private String uploadPath;
 
 
+    @Autowired
+    private StoredFileRepository storedFileRepository;
+
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+
+    @Autowired
+    private ImageVariantService imageVariantService;
+
+
     /**
      * Guarda un archivo en el sistema de archivos y devuelve el nombre del archivo guardado.
      *
+     * El contenido se copia a un archivo temporal por bloques mientras se calcula su hash, sin cargarlo
+     * entero en memoria. Si ya existía un archivo con el mismo contenido, el temporal se descarta y solo
+     * se suma una referencia al existente.
+     *
      * @param file El archivo a guardar.
      * @return El nombre del archivo guardado o null si ocurre un error.
      */
     public String saveFile(MultipartFile file) {
+        Path tempFile = null;
         try {
-            // Generar un nombre único para el archivo
-            String fileExtension = getFileExtension(file.getOriginalFilename());
-            String uniqueFileName = UUID.randomUUID().toString() + "." + fileExtension;
+            Path uploadDir = Paths.get(uploadPath);
+            Files.createDirectories(uploadDir);
 
+            // El temporal se crea en el mismo sistema de archivos para poder moverlo después sin copiarlo
+            tempFile = Files.createTempFile(uploadDir, "upload-", ".tmp");
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            long size = copy(file, tempFile, digest);
+            String hash = HexFormat.of().formatHex(digest.digest());
 
-            // Ruta completa del archivo
-            Path filePath = Paths.get(uploadPath + File.separator + uniqueFileName);
+            // Devolver el nombre del archivo para guardarlo en la base de datos
+            return storeFile(tempFile, hash, size, file.getOriginalFilename());
+        } catch (IOException | UncheckedIOException | NoSuchAlgorithmException e) {
+            logger.error("Error al guardar el archivo: {}", e.getMessage());
+            return null;
+        } finally {
+            deleteTempFile(tempFile);
+        }
+    }
 
 
-            // Crear los directorios si no existen
-            Files.createDirectories(filePath.getParent());
+    /**
+     * Guarda un archivo que ya está en el disco y cuyo hash ya se ha calculado (por ejemplo, una subida
+     * por partes). Debe estar en el mismo sistema de archivos que `UPLOAD_PATH` para moverlo sin copiarlo.
+     * Si el contenido ya estaba guardado, el archivo no se mueve y lo debe borrar quien llama al método.
+     *
+     * @param file             El archivo a guardar.
+     * @param hash             El hash SHA-256 de su contenido, en hexadecimal.
+     * @param size             Su tamaño en bytes.
+     * @param originalFileName El nombre original del archivo, del que se toma la extensión.
+     * @return El nombre del archivo guardado.
+     */
+    public String storeFile(Path file, String hash, long size, String originalFileName) {
+        String extension = getFileExtension(originalFileName);
+        String fileName = extension.isEmpty() ? hash : hash + "." + extension;
+
+        String storedName = transactionTemplate.execute(status -> register(hash, fileName, size, file));
+        logger.info("Archivo {} guardado con éxito ({} bytes).", storedName, size);
+        return storedName;
+    }
 
 
-            // Guardar el archivo en la ruta
-            Files.write(filePath, file.getBytes());
+    /**
+     * Libera una referencia a un archivo y lo elimina del sistema de archivos si era la última.
+     *
+     * @param fileName El nombre del archivo a eliminar.
+     */
+    public void deleteFile(String fileName) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> release(fileName));
+        } catch (UncheckedIOException e) {
+            logger.error("Error al eliminar el archivo {}: {}", fileName, e.getMessage());
+        }
+    }
 
 
-            logger.info("Archivo {} guardado con éxito.", uniqueFileName);
-            return uniqueFileName; // Devolver el nombre del archivo para guardarlo en la base de datos
-        } catch (IOException e) {
-            logger.error("Error al guardar el archivo: {}", e.getMessage());
-            return null;
+    /**
+     * Copia el contenido de la subida al archivo de destino por bloques, actualizando el hash con cada bloque.
+     *
+     * @return el número de bytes copiados.
+     */
+    private long copy(MultipartFile file, Path target, MessageDigest digest) throws IOException {
+        long size = 0;
+        try (ReadableByteChannel in = Channels.newChannel(file.getInputStream());
+             FileChannel out = FileChannel.open(target, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            while (in.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer.array(), 0, buffer.limit());
+                while (buffer.hasRemaining()) {
+                    size += out.write(buffer);
+                }
+                buffer.clear();
+            }
         }
+        return size;
     }
 
 
     /**
-     * Elimina un archivo del sistema de archivos.
+     * Suma una referencia al archivo con el hash indicado y, si todavía no está en disco, mueve
+     * a su sitio el temporal. Se ejecuta en una transacción que mantiene bloqueada la fila del archivo.
      *
-     * @param fileName El nombre del archivo a eliminar.
+     * @return el nombre con el que está guardado el archivo.
      */
-    public void deleteFile(String fileName) {
+    private String register(String hash, String fileName, long size, Path tempFile) {
+        storedFileRepository.acquire(hash, fileName, size);
+        StoredFile storedFile = storedFileRepository.findById(hash).orElseThrow();
+
+        Path target = UploadPaths.locate(Paths.get(uploadPath), storedFile.getFileName());
+        if (Files.notExists(target)) {
+            try {
+                Files.createDirectories(target.getParent());
+                Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE);
+                if (COMPRESSIBLE_EXTENSIONS.contains(getFileExtension(target.getFileName().toString()))) {
+                    writeGzip(target);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        } else {
+            logger.info("El contenido de la subida ya estaba guardado como {} ({} referencias).",
+                    storedFile.getFileName(), storedFile.getRefCount());
+        }
+        return storedFile.getFileName();
+    }
+
+
+    /**
+     * Resta una referencia al archivo y, si no le quedan, borra su fila y el archivo del disco.
+     * El archivo se borra antes de confirmar la transacción, con la fila todavía bloqueada, para que una
+     * subida simultánea del mismo contenido espere y vuelva a escribirlo.
+     */
+    private void release(String fileName) {
+        Optional<StoredFile> storedFile = storedFileRepository.findByFileName(fileName);
+        if (storedFile.isPresent() && storedFile.get().getRefCount() > 1) {
+            storedFile.get().setRefCount(storedFile.get().getRefCount() - 1);
+            logger.info("Referencia al archivo {} liberada ({} restantes).", fileName, storedFile.get().getRefCount());
+            return;
+        }
+
+        storedFile.ifPresent(stored -> {
+            storedFileRepository.delete(stored);
+            storedFileRepository.flush();
+        });
+        deleteFromDisk(fileName);
+        logger.info("Archivo {} eliminado con éxito.", fileName);
+    }
+
+
+    /**
+     * Borra del disco un archivo junto con su copia comprimida y sus variantes. Si el archivo está dado
+     * de alta en `stored_files`, se debe llamar dentro de la transacción que tiene bloqueada su fila.
+     *
+     * @param fileName El nombre del archivo.
+     * @return Los bytes liberados.
+     */
+    public long deleteFromDisk(String fileName) {
         try {
-            Path filePath = Paths.get(uploadPath, fileName);
-            Files.deleteIfExists(filePath);
-            logger.info("Archivo {} eliminado con éxito.", fileName);
+            Path root = Paths.get(uploadPath);
+            long freed = UploadPaths.delete(root, fileName) + UploadPaths.delete(root, fileName + GZIP_SUFFIX);
+            return freed + imageVariantService.deleteVariants(fileName);
         } catch (IOException e) {
-            logger.error("Error al eliminar el archivo {}: {}", fileName, e.getMessage());
+            throw new UncheckedIOException(e);
+        }
+    }
+
+
+    /**
+     * Guarda junto al archivo una copia comprimida con gzip (`<nombre>.gz`), que se envía a los clientes
+     * que aceptan esa codificación. Se escribe en un temporal y se renombra, como el original.
+     */
+    private void writeGzip(Path file) throws IOException {
+        Path temp = Files.createTempFile(file.getParent(), "gzip-", ".tmp");
+        try {
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp), BUFFER_SIZE)) {
+                Files.copy(file, out);
+            }
+            Files.move(temp, Paths.get(file + GZIP_SUFFIX), StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+
+    /**
+     * Borra el archivo temporal de una subida si sigue existiendo (no se ha movido a su sitio).
+     */
+    private void deleteTempFile(Path tempFile) {
+        if (tempFile == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(tempFile);
+        } catch (IOException e) {
+            logger.warn("No se ha podido borrar el archivo temporal {}: {}", tempFile, e.getMessage());
         }
     }
 
 
     /**
-     * Obtiene la extensión del archivo.
+     * Obtiene la extensión del archivo, en minúsculas.
      *
      * @param fileName El nombre del archivo.
-     * @return La extensión del archivo o una cadena vacía si no tiene extensión.
+     * @return La extensión del archivo o una cadena vacía si no tiene una extensión válida.
      */
     private String getFileExtension(String fileName) {
         if (fileName != null && fileName.contains(".")) {
-            return fileName.substring(fileName.lastIndexOf(".") + 1);
+            String extension = fileName.substring(fileName.lastIndexOf(".") + 1).toLowerCase(Locale.ROOT);
+            // Solo se conservan extensiones alfanuméricas cortas, ya que forman parte del nombre guardado
+            return extension.matches("[a-z0-9]{1,10}") ? extension : "";
         } else {
             return ""; // Sin extensión
         }
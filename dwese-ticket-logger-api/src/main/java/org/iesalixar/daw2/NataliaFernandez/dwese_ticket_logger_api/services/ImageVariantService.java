@@ -0,0 +1,352 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.services;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.repositories.CategoryRepository;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.utils.UploadPaths;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Servicio que genera versiones reducidas de las imágenes de las categorías.
+ *
+ * Después de subir una imagen se generan en segundo plano, en un pool de hilos limitado, las variantes
+ * de {@link #VARIANTS} (redimensionadas y recomprimidas) en el directorio de subidas, con el nombre
+ * `<original>-<variante>.<jpg|png>`. Cada variante se escribe en un temporal que se renombra al terminar,
+ * así que una variante existe completa o no existe: la generación se puede repetir sin efecto y, tras un
+ * reinicio, se completan las que falten al arrancar y periódicamente.
+ */
+@Service
+public class ImageVariantService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageVariantService.class);
+
+    // Variantes que se generan de cada imagen: nombre y tamaño máximo del lado mayor en píxeles
+    public static final Map<String, Integer> VARIANTS = variants();
+
+    // Ruta pública desde la que se sirven los archivos subidos (ver WebConfig)
+    public static final String UPLOADS_URL = "/uploads/";
+
+    // Extensiones de imagen que se pueden leer para generar variantes
+    private static final Set<String> SOURCE_EXTENSIONS = Set.of("jpg", "jpeg", "png", "gif", "bmp");
+
+    @Value("${UPLOAD_PATH}")
+    private String uploadPath;
+
+    // Hilos que generan variantes a la vez (cada uno tiene una imagen decodificada en memoria)
+    @Value("${image.variants.workers:2}")
+    private int workers;
+
+    // Imágenes que pueden esperar en cola; las que no caben se generan en la siguiente revisión
+    @Value("${image.variants.queue-capacity:100}")
+    private int queueCapacity;
+
+    // Calidad de compresión de las variantes JPEG (0 a 1)
+    @Value("${image.variants.jpeg-quality:0.8}")
+    private float jpegQuality;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    // Imágenes en cola o en proceso, para no encolar la misma dos veces
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    private ThreadPoolTaskExecutor executor;
+
+    @PostConstruct
+    public void startExecutor() {
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("image-variants-");
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        executor.initialize();
+    }
+
+    @PreDestroy
+    public void stopExecutor() {
+        executor.shutdown();
+    }
+
+    /**
+     * Encola la generación de las variantes de una imagen. No hace nada si el archivo no es una imagen
+     * compatible o si ya está en cola.
+     *
+     * @param fileName nombre del archivo original en el directorio de subidas.
+     */
+    public void scheduleVariants(String fileName) {
+        if (!isSupported(fileName) || !pending.add(fileName)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    generateVariants(fileName);
+                } finally {
+                    pending.remove(fileName);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            pending.remove(fileName);
+            logger.warn("Cola de variantes llena; las variantes de {} se generarán en la siguiente revisión.", fileName);
+        }
+    }
+
+    /**
+     * Genera las variantes que falten de una imagen. Las que ya existen no se vuelven a generar.
+     *
+     * @param fileName nombre del archivo original en el directorio de subidas.
+     */
+    public void generateVariants(String fileName) {
+        Path root = Paths.get(uploadPath);
+        Path source = UploadPaths.locate(root, fileName);
+        Map<String, Path> missing = new LinkedHashMap<>();
+        VARIANTS.keySet().forEach(variant -> {
+            Path target = UploadPaths.locate(root, variantFileName(fileName, variant));
+            if (Files.notExists(target)) {
+                missing.put(variant, target);
+            }
+        });
+        if (missing.isEmpty() || Files.notExists(source)) {
+            return;
+        }
+
+        try {
+            int largest = missing.keySet().stream().mapToInt(VARIANTS::get).max().orElseThrow();
+            BufferedImage image = read(source, largest);
+            if (image == null) {
+                logger.warn("El archivo {} no es una imagen que se pueda leer; no se generan variantes.", fileName);
+                return;
+            }
+            boolean png = isPng(fileName);
+            for (Map.Entry<String, Path> entry : missing.entrySet()) {
+                BufferedImage resized = resize(image, VARIANTS.get(entry.getKey()), png);
+                write(resized, entry.getValue(), png);
+            }
+            logger.info("Generadas {} variantes de la imagen {}.", missing.size(), fileName);
+        } catch (IOException | RuntimeException e) {
+            logger.error("Error al generar las variantes de la imagen {}: {}", fileName, e.getMessage());
+        }
+    }
+
+    /**
+     * Obtiene las URLs de las variantes ya generadas de una imagen.
+     *
+     * @param fileName nombre del archivo original, o null.
+     * @return las URLs por nombre de variante; vacío si todavía no se han generado.
+     */
+    public Map<String, String> getVariantUrls(String fileName) {
+        Map<String, String> urls = new LinkedHashMap<>();
+        if (!isSupported(fileName)) {
+            return urls;
+        }
+        VARIANTS.keySet().forEach(variant -> {
+            String variantName = variantFileName(fileName, variant);
+            if (Files.exists(UploadPaths.locate(Paths.get(uploadPath), variantName))) {
+                urls.put(variant, UPLOADS_URL + variantName);
+            }
+        });
+        return urls;
+    }
+
+    /**
+     * Elimina las variantes de una imagen (se llama al eliminar el archivo original).
+     *
+     * @param fileName nombre del archivo original.
+     * @return los bytes liberados.
+     */
+    public long deleteVariants(String fileName) {
+        if (!isSupported(fileName)) {
+            return 0;
+        }
+        long freed = 0;
+        for (String variant : VARIANTS.keySet()) {
+            try {
+                freed += UploadPaths.delete(Paths.get(uploadPath), variantFileName(fileName, variant));
+            } catch (IOException e) {
+                logger.error("Error al eliminar la variante {} de {}: {}", variant, fileName, e.getMessage());
+            }
+        }
+        return freed;
+    }
+
+    /**
+     * Encola las imágenes de categorías a las que les falta alguna variante: las subidas antes de
+     * existir las variantes, las que no cupieron en la cola y las que se interrumpieron con un reinicio.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${image.variants.resume-interval-ms:600000}",
+            initialDelayString = "${image.variants.resume-interval-ms:600000}")
+    public void resumePendingVariants() {
+        List<String> images = categoryRepository.findDistinctImages();
+        int scheduled = 0;
+        for (String image : images) {
+            if (isSupported(image) && getVariantUrls(image).size() < VARIANTS.size()
+                    && Files.exists(UploadPaths.locate(Paths.get(uploadPath), image))) {
+                scheduleVariants(image);
+                scheduled++;
+            }
+        }
+        if (scheduled > 0) {
+            logger.info("Se han encolado {} imágenes con variantes pendientes.", scheduled);
+        }
+    }
+
+    /**
+     * Nombre del archivo de una variante: el nombre original sin extensión, la variante y
+     * la extensión de salida (PNG si el original puede tener transparencia, JPEG en otro caso).
+     */
+    public static String variantFileName(String fileName, String variant) {
+        int dot = fileName.lastIndexOf('.');
+        String base = dot < 0 ? fileName : fileName.substring(0, dot);
+        return base + "-" + variant + (isPng(fileName) ? ".png" : ".jpg");
+    }
+
+    private static boolean isSupported(String fileName) {
+        return fileName != null && SOURCE_EXTENSIONS.contains(extension(fileName));
+    }
+
+    private static boolean isPng(String fileName) {
+        String extension = extension(fileName);
+        return extension.equals("png") || extension.equals("gif");
+    }
+
+    private static String extension(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot < 0 ? "" : fileName.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Lee la imagen original. Si es mucho mayor que la variante más grande que hay que generar, se lee
+     * submuestreada para no decodificar en memoria la imagen completa.
+     */
+    private static BufferedImage read(Path source, int largestVariant) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(source.toFile())) {
+            Iterator<ImageReader> readers = in != null ? ImageIO.getImageReaders(in) : null;
+            if (readers == null || !readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int longest = Math.max(reader.getWidth(0), reader.getHeight(0));
+                // Se deja el doble de resolución de la variante para que el escalado final conserve la calidad
+                int step = Math.max(1, longest / (largestVariant * 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Reduce la imagen para que su lado mayor no supere `maxSize` (nunca la amplía). Las reducciones
+     * grandes se hacen en pasos a la mitad para evitar el aliasing del escalado bilineal en un solo paso.
+     */
+    private static BufferedImage resize(BufferedImage image, int maxSize, boolean alpha) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double scale = Math.min(1.0, (double) maxSize / Math.max(width, height));
+        int targetWidth = Math.max(1, (int) Math.round(width * scale));
+        int targetHeight = Math.max(1, (int) Math.round(height * scale));
+
+        BufferedImage current = image;
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            BufferedImage step = new BufferedImage(width, height, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = step.createGraphics();
+            try {
+                if (!alpha) {
+                    // Las zonas transparentes del original se rellenan de blanco en JPEG
+                    graphics.setColor(Color.WHITE);
+                    graphics.fillRect(0, 0, width, height);
+                }
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(current, 0, 0, width, height, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = step;
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+
+    /**
+     * Escribe la variante en un temporal y lo renombra a su nombre definitivo.
+     */
+    private void write(BufferedImage image, Path target, boolean png) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), "variant-", ".tmp");
+        try {
+            if (png) {
+                ImageIO.write(image, "png", temp.toFile());
+            } else {
+                writeJpeg(image, temp);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private void writeJpeg(BufferedImage image, Path target) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(target.toFile())) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private static Map<String, Integer> variants() {
+        Map<String, Integer> variants = new LinkedHashMap<>();
+        variants.put("thumb", 64);
+        variants.put("small", 256);
+        variants.put("medium", 768);
+        return Collections.unmodifiableMap(variants);
+    }
+}
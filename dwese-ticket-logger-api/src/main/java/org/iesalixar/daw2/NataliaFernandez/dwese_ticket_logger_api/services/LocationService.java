@@ -14,10 +14,16 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.MessageSource;
 import org.springframework.stereotype.Service;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.CursorPageDTO;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.utils.CursorPagination;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
 
 import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -40,24 +46,35 @@ public class LocationService {
     @Autowired
     private SupermarketRepository supermarketRepository;
 
+    // Propiedades por las que se puede ordenar el listado de ubicaciones
+    public static final Set<String> SORT_PROPERTIES = Set.of("address", "city", "id");
+
     /**
-     * Lista todas las ubicaciones almacenadas en la base de datos.
+     * Lista las ubicaciones paginadas por cursor, con filtros opcionales por ciudad, supermercado y provincia.
+     * El supermercado, la provincia y su región se cargan en la misma consulta.
      *
-     * @return Lista de LocationDTO.
+     * @param city          texto que debe contener la ciudad, o null para no filtrar.
+     * @param supermarketId ID del supermercado, o null para no filtrar.
+     * @param provinceId    ID de la provincia, o null para no filtrar.
+     * @param sort          ordenación ("address", "city" o "id", opcionalmente seguida de ",desc").
+     * @param cursor        cursor devuelto en la página anterior, o null para la primera página.
+     * @param size          número de ubicaciones por página.
+     * @return la página de ubicaciones con el cursor de la siguiente.
+     * @throws IllegalArgumentException si la ordenación o el cursor no son válidos.
      */
-    public List<LocationDTO> getAllLocations() {
-        try {
-            logger.info("Solicitando la lista de todas las ubicaciones...");
-            List<Location> locations = locationRepository.findAll();
-            logger.info("Se han encontrado {} ubicaciones.", locations.size());
-
-            return locations.stream()
-                    .map(locationMapper::toDTO)
-                    .collect(Collectors.toList());
-        } catch (Exception e) {
-            logger.error("Error al listar las ubicaciones: {}", e.getMessage());
-            throw new RuntimeException("Error al obtener todas las ubicaciones", e);
-        }
+    public CursorPageDTO<LocationDTO> getLocations(String city, Long supermarketId, Long provinceId,
+                                                   String sort, String cursor, int size) {
+        Sort order = CursorPagination.parseSort(sort, SORT_PROPERTIES, "city");
+        Specification<Location> filter = Specification.allOf(
+                CursorPagination.containsIgnoreCase("city", city),
+                CursorPagination.hasAssociation("supermarket", supermarketId),
+                CursorPagination.hasAssociation("province", provinceId));
+        Window<Location> locations = locationRepository.findBy(filter, query -> query
+                .sortBy(order)
+                .limit(CursorPagination.pageSize(size))
+                .scroll(CursorPagination.decodeCursor(cursor, order)));
+        logger.info("Se han encontrado {} ubicaciones en la página actual.", locations.size());
+        return CursorPagination.toPage(locations, locationMapper::toDTO);
     }
 
     /**
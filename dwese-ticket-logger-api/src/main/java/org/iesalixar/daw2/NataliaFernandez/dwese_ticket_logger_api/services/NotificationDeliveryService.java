@@ -0,0 +1,150 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.services;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.NotificationDTO;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.NotificationDeliveryMetricsDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.concurrent.Queues;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Servicio que envía las notificaciones guardadas a sus destinatarios por el broker STOMP.
+ *
+ * Todas las notificaciones pasan por un único flujo de larga duración: se encolan en un `Sinks.Many` con
+ * un búfer de tamaño fijo y un solo hilo las envía por lotes, en el orden en que se encolaron. Si llega una
+ * ráfaga mayor que el búfer (por ejemplo, desde una importación masiva), las que no caben se descartan y
+ * se cuentan; siguen guardadas en MongoDB, así que el cliente las ve al consultar sus notificaciones.
+ */
+@Service
+public class NotificationDeliveryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(NotificationDeliveryService.class);
+
+    // Destino de cada usuario; el cliente se suscribe a /user/queue/notifications
+    public static final String USER_DESTINATION = "/queue/notifications";
+
+    // Notificaciones que pueden esperar a enviarse
+    @Value("${notifications.delivery.buffer-size:10000}")
+    private int bufferSize;
+
+    // Máximo de notificaciones por lote
+    @Value("${notifications.delivery.batch-size:100}")
+    private int batchSize;
+
+    // Espera máxima para completar un lote antes de enviarlo
+    @Value("${notifications.delivery.batch-max-wait-ms:50}")
+    private long batchMaxWaitMs;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    private final LongAdder emitted = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    // Si se están descartando notificaciones, para avisar una vez por ráfaga y no por cada una
+    private final AtomicBoolean overflowing = new AtomicBoolean();
+
+    private Sinks.Many<Delivery> sink;
+    private Scheduler scheduler;
+    private Disposable pipeline;
+
+    @PostConstruct
+    public void startPipeline() {
+        sink = Sinks.many().unicast().onBackpressureBuffer(Queues.<Delivery>get(bufferSize).get());
+        scheduler = Schedulers.newSingle("notification-delivery");
+        pipeline = sink.asFlux()
+                .publishOn(scheduler, batchSize)
+                .bufferTimeout(batchSize, Duration.ofMillis(batchMaxWaitMs), scheduler, true)
+                .subscribe(this::deliver, error -> logger.error("El envío de notificaciones se ha detenido", error));
+    }
+
+    @PreDestroy
+    public void stopPipeline() {
+        sink.tryEmitComplete();
+        pipeline.dispose();
+        scheduler.dispose();
+    }
+
+    /**
+     * Encola una notificación para enviarla a su destinatario. No espera al envío.
+     *
+     * @param username     el destinatario.
+     * @param notification la notificación.
+     * @return true si se ha encolado; false si el búfer está lleno y se ha descartado.
+     */
+    public boolean publish(String username, NotificationDTO notification) {
+        Delivery delivery = new Delivery(username, notification);
+        Sinks.EmitResult result;
+        // El sink admite un solo emisor a la vez; si otro hilo está emitiendo se reintenta
+        while ((result = sink.tryEmitNext(delivery)) == Sinks.EmitResult.FAIL_NON_SERIALIZED) {
+            Thread.onSpinWait();
+        }
+        if (result.isSuccess()) {
+            emitted.increment();
+            if (overflowing.compareAndSet(true, false)) {
+                logger.info("El búfer de notificaciones vuelve a tener espacio; descartadas hasta ahora: {}.", dropped.sum());
+            }
+            return true;
+        }
+        dropped.increment();
+        if (result == Sinks.EmitResult.FAIL_OVERFLOW) {
+            if (overflowing.compareAndSet(false, true)) {
+                logger.warn("Búfer de notificaciones lleno ({}); se descartan las nuevas hasta que haya espacio.", bufferSize);
+            }
+        } else {
+            logger.warn("No se ha podido encolar la notificación {} para {}: {}", notification.getId(), username, result);
+        }
+        return false;
+    }
+
+    /**
+     * Contadores del envío de notificaciones desde que arrancó la aplicación.
+     *
+     * @return las métricas.
+     */
+    public NotificationDeliveryMetricsDTO getMetrics() {
+        long emittedCount = emitted.sum();
+        long deliveredCount = delivered.sum();
+        long failedCount = failed.sum();
+        return new NotificationDeliveryMetricsDTO(emittedCount, dropped.sum(),
+                Math.max(0, emittedCount - deliveredCount - failedCount), deliveredCount, failedCount,
+                batches.sum(), bufferSize);
+    }
+
+    /**
+     * Envía un lote al broker. Un error en una notificación no detiene el resto ni el flujo.
+     */
+    private void deliver(List<Delivery> batch) {
+        for (Delivery delivery : batch) {
+            try {
+                messagingTemplate.convertAndSendToUser(delivery.username(), USER_DESTINATION, delivery.notification());
+                delivered.increment();
+            } catch (Exception e) {
+                failed.increment();
+                logger.error("Error al enviar la notificación {} a {}: {}",
+                        delivery.notification().getId(), delivery.username(), e.getMessage());
+            }
+        }
+        batches.increment();
+    }
+
+    private record Delivery(String username, NotificationDTO notification) {
+    }
+}
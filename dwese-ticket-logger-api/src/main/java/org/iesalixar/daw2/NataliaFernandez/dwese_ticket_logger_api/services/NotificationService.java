@@ -1,62 +1,287 @@
 package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.services;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.CursorPageDTO;
 import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.NotificationCreateDTO;
 import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.NotificationDTO;
 import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities.Notification;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities.NotificationCounter;
 import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.mappers.NotificationMapper;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.repositories.NotificationCounterRepository;
 import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.repositories.NotificationRepository;
 
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.utils.CursorPagination;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.AuthenticationCredentialsNotFoundException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.scheduler.Schedulers;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
 
+
+/**
+ * Servicio de las notificaciones de cada usuario.
+ *
+ * Las notificaciones se listan de la más reciente a la más antigua, paginadas por cursor: cada página
+ * continúa a partir de la fecha y el ID de la última notificación de la anterior, sobre el índice
+ * (usuario, fecha, ID), así que el coste de una página no depende del número de notificaciones.
+ * El número de no leídas se guarda aparte en `notification_counters` y se actualiza al crear y al
+ * marcar como leídas las notificaciones.
+ *
+ * Al leerse, cada notificación recibe una fecha de caducidad y MongoDB la borra cuando llega (índice TTL
+ * sobre `expiresAt`), de modo que la colección no crece indefinidamente.
+ */
 @Service
 public class NotificationService {
 
     // Logger de la clase
     private static final Logger logger = LoggerFactory.getLogger(NotificationService.class);
 
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final String ADMIN_ROLE = "ROLE_ADMIN";
+
+    // Orden de los listados; coincide con los índices de `Notification`
+    private static final Sort NEWEST_FIRST = Sort.by(Sort.Direction.DESC, "createdAt", "id");
+
+    // Días que se conserva una notificación después de leerla
+    @Value("${notifications.retention.read-days:30}")
+    private long readRetentionDays;
+
     // Inyección de dependencias
     @Autowired
     private NotificationRepository notificationRepository;
 
     @Autowired
-    private SimpMessagingTemplate messagingTemplate;
+    private NotificationCounterRepository notificationCounterRepository;
+
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @Autowired
+    private NotificationDeliveryService notificationDeliveryService;
 
+    @Autowired
+    private EventStreamService eventStreamService;
+
+    /**
+     * Guarda una notificación enviada por el usuario actual. Si no indica destinatario, es para él mismo;
+     * solo un administrador puede enviarla a otro usuario.
+     *
+     * @param notificationCreateDTO datos de la notificación.
+     * @return la notificación guardada.
+     * @throws AccessDeniedException si un usuario que no es administrador indica otro destinatario.
+     */
     public Mono<NotificationDTO> saveNotification(NotificationCreateDTO notificationCreateDTO) {
+        String currentUsername = currentUsername();
+        String username = notificationCreateDTO.getUsername() != null && !notificationCreateDTO.getUsername().isBlank()
+                ? notificationCreateDTO.getUsername() : currentUsername;
+        if (!username.equals(currentUsername) && !currentUserIsAdmin()) {
+            throw new AccessDeniedException("Solo un administrador puede enviar notificaciones a otros usuarios.");
+        }
+        return notifyUser(username, notificationCreateDTO);
+    }
+
+    /**
+     * Guarda una notificación para un usuario y la encola para enviarla por WebSocket
+     * (ver `NotificationDeliveryService`).
+     *
+     * Para uso interno (otros servicios, tareas programadas): no comprueba quién la envía, así que el
+     * destinatario no debe tomarse de una petición sin pasar por {@link #saveNotification}.
+     *
+     * @param username              el destinatario.
+     * @param notificationCreateDTO datos de la notificación; su campo `username` se ignora.
+     * @return la notificación guardada.
+     */
+    public Mono<NotificationDTO> notifyUser(String username, NotificationCreateDTO notificationCreateDTO) {
         // Convertimos el DTO de entrada a la entidad Notification
-        Notification notification = NotificationMapper.toEntity(notificationCreateDTO);
+        Notification notification = NotificationMapper.toEntity(notificationCreateDTO, username);
+        if (notification.isRead()) {
+            notification.setExpiresAt(readExpiry());
+        }
 
         // Guardamos la notificación en la base de datos
         return notificationRepository.save(notification)
-                // Se ejecuta cuando la notificación ha sido guardada con éxito
-                .doOnSuccess(savedNotification -> {
-                    // Enviamos la notificación por WebSocket usando SimpMessagingTemplate
-                    Mono.fromRunnable(() ->
-                                    messagingTemplate.convertAndSend(
-                                            "/topic/notifications", // Canal de WebSocket donde se enviará la notificación
-                                            NotificationMapper.toDTO(savedNotification) // Convertimos la entidad guardada a DTO
-                                    )
-                            )
-                            // Ejecutamos la tarea en un pool de hilos elástico para evitar bloqueos
-                            .subscribeOn(Schedulers.boundedElastic())
-                            .subscribe(); // Nos suscribimos para ejecutar la tarea asíncrona de envío
-                })
+                .flatMap(savedNotification -> savedNotification.isRead()
+                        ? Mono.just(savedNotification)
+                        : incrementUnread(username, 1).thenReturn(savedNotification))
                 // Convertimos la notificación guardada en DTO antes de devolverla
-                .map(NotificationMapper::toDTO);
+                .map(NotificationMapper::toDTO)
+                // Se encola para enviarla por WebSocket solo a su destinatario, sin esperar al envío
+                .doOnNext(savedNotification -> notificationDeliveryService.publish(username, savedNotification))
+                // y se añade al flujo de eventos SSE
+                .flatMap(savedNotification -> eventStreamService
+                        .publish(EventStreamService.NOTIFICATION_EVENT, username, savedNotification)
+                        .thenReturn(savedNotification));
     }
 
+    /**
+     * Lista las notificaciones del usuario actual, de la más reciente a la más antigua.
+     *
+     * @param unreadOnly si es true solo se devuelven las no leídas.
+     * @param cursor     cursor `nextCursor` de la página anterior, o null para la primera página.
+     * @param size       número de notificaciones por página.
+     * @return la página de notificaciones con el cursor de la siguiente; error con
+     *         IllegalArgumentException si el cursor no es válido.
+     */
+    public Mono<CursorPageDTO<NotificationDTO>> getNotifications(boolean unreadOnly, String cursor, int size) {
+        String username = currentUsername();
+        int pageSize = CursorPagination.pageSize(size);
+        return Mono.fromCallable(() -> pageQuery(username, unreadOnly, cursor))
+                // Se pide una más para saber si hay página siguiente
+                .flatMap(query -> mongoTemplate.find(query.with(NEWEST_FIRST).limit(pageSize + 1), Notification.class)
+                        .collectList())
+                .map(notifications -> toPage(notifications, pageSize));
+    }
 
-    public Flux <NotificationDTO>getAllNotifications(){
-    return notificationRepository.findAll().map(NotificationMapper::toDTO);
+    /**
+     * Flujo de eventos SSE del usuario actual: sus notificaciones nuevas y los cambios en los tickets.
+     *
+     * @param lastEventId ID del último evento recibido, para continuar tras una reconexión; o null.
+     * @return el flujo de eventos.
+     * @throws IllegalArgumentException si el ID del último evento no es válido.
+     */
+    public Flux<ServerSentEvent<Object>> streamEvents(String lastEventId) {
+        return eventStreamService.stream(currentUsername(), lastEventId);
+    }
 
+    /**
+     * Número de notificaciones sin leer del usuario actual.
+     *
+     * @return el número de notificaciones sin leer.
+     */
+    public Mono<Long> getUnreadCount() {
+        return notificationCounterRepository.findById(currentUsername())
+                .map(counter -> Math.max(0, counter.getUnread()))
+                .defaultIfEmpty(0L);
+    }
 
+    /**
+     * Marca como leídas notificaciones del usuario actual con una sola actualización.
+     *
+     * @param ids IDs de las notificaciones, o vacío para marcar todas.
+     * @return el número de notificaciones que se han marcado (las que ya estaban leídas no cuentan).
+     */
+    public Mono<Long> markAsRead(List<String> ids) {
+        String username = currentUsername();
+        Criteria criteria = Criteria.where("username").is(username).and("read").is(false);
+        if (ids != null && !ids.isEmpty()) {
+            criteria = criteria.and("id").in(ids);
+        }
+        Update update = Update.update("read", true).set("expiresAt", readExpiry());
+        return mongoTemplate.updateMulti(Query.query(criteria), update, Notification.class)
+                .map(result -> result.getModifiedCount())
+                .flatMap(marked -> marked == 0 ? Mono.just(marked)
+                        : incrementUnread(username, -marked).thenReturn(marked))
+                .doOnNext(marked -> logger.info("{} notificaciones marcadas como leídas para {}.", marked, username));
+    }
+
+    /**
+     * Fija la caducidad de las notificaciones leídas que no la tienen, guardadas antes de que existiera
+     * la retención. Se ejecuta al arrancar; cuando ya no quedan, no modifica nada.
+     *
+     * @return el número de notificaciones actualizadas.
+     */
+    public Mono<Long> applyReadRetention() {
+        Query query = Query.query(Criteria.where("read").is(true).and("expiresAt").exists(false));
+        return mongoTemplate.updateMulti(query, Update.update("expiresAt", readExpiry()), Notification.class)
+                .map(result -> result.getModifiedCount());
+    }
+
+    private Instant readExpiry() {
+        return Instant.now().plus(Duration.ofDays(readRetentionDays));
+    }
+
+    /**
+     * Suma al contador de no leídas de un usuario, creándolo si no existe.
+     */
+    private Mono<NotificationCounter> incrementUnread(String username, long delta) {
+        return mongoTemplate.findAndModify(Query.query(Criteria.where("username").is(username)),
+                new Update().inc("unread", delta), FindAndModifyOptions.options().upsert(true).returnNew(true),
+                NotificationCounter.class);
+    }
+
+    /**
+     * Consulta de una página: las notificaciones del usuario anteriores a la posición del cursor.
+     * La fecha se acota con un rango sobre el índice y el ID solo desempata las de la misma fecha.
+     */
+    private static Query pageQuery(String username, boolean unreadOnly, String cursor) {
+        Criteria criteria = Criteria.where("username").is(username);
+        if (unreadOnly) {
+            criteria = criteria.and("read").is(false);
+        }
+        if (cursor != null && !cursor.isBlank()) {
+            Map<?, ?> position = decodeCursor(cursor);
+            Instant createdAt = Instant.ofEpochMilli(((Number) position.get("createdAt")).longValue());
+            criteria = criteria.and("createdAt").lte(createdAt).orOperator(
+                    Criteria.where("createdAt").lt(createdAt),
+                    Criteria.where("id").lt(position.get("id")));
+        }
+        return Query.query(criteria);
+    }
+
+    private static CursorPageDTO<NotificationDTO> toPage(List<Notification> notifications, int pageSize) {
+        List<Notification> content = notifications.size() > pageSize ? notifications.subList(0, pageSize) : notifications;
+        String nextCursor = null;
+        if (notifications.size() > pageSize) {
+            Notification last = content.get(content.size() - 1);
+            nextCursor = encodeCursor(last.getCreatedAt(), last.getId());
+        }
+        return new CursorPageDTO<>(content.stream().map(NotificationMapper::toDTO).toList(), content.size(), nextCursor);
+    }
+
+    private static String encodeCursor(Instant createdAt, String id) {
+        try {
+            String json = MAPPER.writeValueAsString(Map.of("createdAt", createdAt.toEpochMilli(), "id", id));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(json.getBytes(StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            throw new IllegalStateException("No se ha podido generar el cursor.", e);
+        }
+    }
+
+    private static Map<?, ?> decodeCursor(String cursor) {
+        Map<?, ?> position;
+        try {
+            position = MAPPER.readValue(Base64.getUrlDecoder().decode(cursor), Map.class);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("El cursor no es válido.");
+        }
+        if (!(position.get("createdAt") instanceof Number) || !(position.get("id") instanceof String)) {
+            throw new IllegalArgumentException("El cursor no es válido.");
+        }
+        return position;
+    }
+
+    private static boolean currentUserIsAdmin() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null && authentication.getAuthorities().stream()
+                .anyMatch(authority -> ADMIN_ROLE.equals(authority.getAuthority()));
+    }
 
+    private static String currentUsername() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null) {
+            throw new AuthenticationCredentialsNotFoundException("No hay ningún usuario autenticado.");
+        }
+        return authentication.getName();
     }
 }
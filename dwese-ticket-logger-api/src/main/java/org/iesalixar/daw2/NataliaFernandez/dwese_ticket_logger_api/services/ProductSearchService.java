@@ -0,0 +1,131 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.services;
+
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.ProductSearchPageDTO;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.ProductSearchResultDTO;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities.Product;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.repositories.ProductRepository;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.utils.SearchTextUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Servicio de búsqueda de productos por nombre.
+ *
+ * La búsqueda usa el índice FULLTEXT de la columna `search_name`, que guarda el nombre normalizado
+ * (sin acentos ni mayúsculas), así que "jamon" encuentra "Jamón Serrano" sin recorrer la tabla.
+ * Cada palabra buscada se trata como un prefijo obligatorio y los resultados se ordenan por relevancia.
+ */
+@Service
+public class ProductSearchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductSearchService.class);
+
+    // Tamaño máximo de página permitido en las búsquedas
+    public static final int MAX_PAGE_SIZE = 100;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // Longitud mínima de palabra del índice FULLTEXT (innodb_ft_min_token_size); las más cortas se ignoran
+    @Value("${product.search.min-token-size:3}")
+    private int minTokenSize;
+
+    // Productos que se actualizan en cada transacción al rellenar los nombres normalizados
+    @Value("${product.search.backfill-batch-size:1000}")
+    private int backfillBatchSize;
+
+    /**
+     * Busca productos por nombre, sin distinguir mayúsculas ni acentos.
+     *
+     * @param text el texto a buscar.
+     * @param page número de página (empezando en 0).
+     * @param size número de resultados por página.
+     * @return la página de productos encontrados, del más relevante al menos relevante.
+     * @throws IllegalArgumentException si el texto a buscar está vacío.
+     */
+    @Transactional(readOnly = true)
+    public ProductSearchPageDTO search(String text, int page, int size) {
+        String folded = SearchTextUtils.fold(text);
+        if (folded == null || folded.isEmpty()) {
+            throw new IllegalArgumentException("El texto a buscar no puede estar vacío.");
+        }
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        int pageNumber = Math.max(0, page);
+        int offset = pageNumber * pageSize;
+
+        // Palabras que puede usar el índice FULLTEXT; si no queda ninguna se busca por prefijo
+        List<String> terms = Arrays.stream(folded.split(" "))
+                .filter(term -> term.length() >= minTokenSize)
+                .toList();
+
+        // Se pide un resultado de más para saber si existe una página siguiente
+        List<Object[]> rows = terms.isEmpty()
+                ? productRepository.searchByPrefix(folded, pageSize + 1, offset)
+                : productRepository.searchFullText(toBooleanQuery(terms), pageSize + 1, offset);
+
+        boolean hasNext = rows.size() > pageSize;
+        List<ProductSearchResultDTO> content = rows.stream()
+                .limit(pageSize)
+                .map(ProductSearchService::toResult)
+                .toList();
+        return new ProductSearchPageDTO(content, pageNumber, content.size(), hasNext);
+    }
+
+    /**
+     * Calcula el nombre normalizado de los productos que no lo tienen (por ejemplo, los creados
+     * antes de añadir la búsqueda o insertados directamente en la base de datos).
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillSearchNames() {
+        long total = 0;
+        int updated;
+        do {
+            Integer count = transactionTemplate.execute(status -> {
+                List<Product> products = productRepository.findBySearchNameIsNull(Limit.of(backfillBatchSize));
+                products.forEach(product -> product.setSearchName(SearchTextUtils.fold(product.getName())));
+                return products.size();
+            });
+            updated = count != null ? count : 0;
+            total += updated;
+        } while (updated == backfillBatchSize);
+
+        if (total > 0) {
+            logger.info("Se ha calculado el nombre de búsqueda de {} productos.", total);
+        }
+    }
+
+    /**
+     * Convierte las palabras en una consulta booleana de MariaDB en la que todas son prefijos obligatorios.
+     * Las palabras ya están normalizadas, así que no contienen operadores del modo booleano.
+     */
+    private static String toBooleanQuery(List<String> terms) {
+        return terms.stream()
+                .map(term -> "+" + term + "*")
+                .collect(Collectors.joining(" "));
+    }
+
+    private static ProductSearchResultDTO toResult(Object[] row) {
+        return new ProductSearchResultDTO(
+                ((Number) row[0]).longValue(),
+                (String) row[1],
+                (BigDecimal) row[2],
+                row[3] != null ? ((Number) row[3]).longValue() : null,
+                ((Number) row[4]).doubleValue());
+    }
+}
@@ -12,10 +12,16 @@ import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.MessageSource;
 import org.springframework.stereotype.Service;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.CursorPageDTO;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.utils.CursorPagination;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
 
 import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -35,24 +41,32 @@ public class ProvinceService {
     @Autowired
     private MessageSource messageSource;
 
+    // Propiedades por las que se puede ordenar el listado de provincias
+    public static final Set<String> SORT_PROPERTIES = Set.of("name", "code", "id");
+
     /**
-     * Lista todas las provincias almacenadas en la base de datos.
+     * Lista las provincias paginadas por cursor, con filtros opcionales por nombre y región.
+     * La región de cada provincia se carga en la misma consulta.
      *
-     * @return Lista de ProvinceDTO.
+     * @param name     texto que debe contener el nombre, o null para no filtrar.
+     * @param regionId ID de la región, o null para no filtrar.
+     * @param sort     ordenación ("name", "code" o "id", opcionalmente seguida de ",desc").
+     * @param cursor   cursor devuelto en la página anterior, o null para la primera página.
+     * @param size     número de provincias por página.
+     * @return la página de provincias con el cursor de la siguiente.
+     * @throws IllegalArgumentException si la ordenación o el cursor no son válidos.
      */
-    public List<ProvinceDTO> getAllProvinces() {
-        try {
-            logger.info("Solicitando la lista de todas las provincias...");
-            List<Province> provinces = provinceRepository.findAll();
-            logger.info("Se han encontrado {} provincias.", provinces.size());
-
-            return provinces.stream()
-                    .map(provinceMapper::toDTO)
-                    .collect(Collectors.toList());
-        } catch (Exception e) {
-            logger.error("Error al listar las provincias: {}", e.getMessage());
-            throw new RuntimeException("Error al obtener todas las provincias", e);
-        }
+    public CursorPageDTO<ProvinceDTO> getProvinces(String name, Long regionId, String sort, String cursor, int size) {
+        Sort order = CursorPagination.parseSort(sort, SORT_PROPERTIES, "name");
+        Specification<Province> filter = Specification.allOf(
+                CursorPagination.containsIgnoreCase("name", name),
+                CursorPagination.hasAssociation("region", regionId));
+        Window<Province> provinces = provinceRepository.findBy(filter, query -> query
+                .sortBy(order)
+                .limit(CursorPagination.pageSize(size))
+                .scroll(CursorPagination.decodeCursor(cursor, order)));
+        logger.info("Se han encontrado {} provincias en la página actual.", provinces.size());
+        return CursorPagination.toPage(provinces, provinceMapper::toDTO);
     }
 
     /**
@@ -1,15 +1,94 @@
 package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.services;
 
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rabbitmq.client.Channel;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.TicketImportDTO;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.TicketImportErrorDTO;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.TicketImportResultDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageBuilder;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.config.RabbitMQConfig.FAILED_QUEUE_NAME;
 import static org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.config.RabbitMQConfig.QUEUE_NAME;
+import static org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.config.RabbitMQConfig.TICKET_LISTENER_FACTORY;
 
+/**
+ * Consumidor de la cola de tickets.
+ *
+ * Recibe los tickets en lotes y los guarda con el servicio de importación (una transacción por lote).
+ * Cuando el lote se ha guardado se confirman todos sus mensajes; los que no se han podido guardar por
+ * ser incorrectos se envían a la cola de fallidos con el motivo. Si la base de datos no está disponible
+ * se devuelve el lote entero a la cola para reintentarlo. La entrega es "al menos una vez": si se pierde
+ * la confirmación después de guardar, el lote se vuelve a recibir.
+ */
 @Service
 public class RabbitMQConsumer {
-    @RabbitListener (queues = QUEUE_NAME)
-    public void receiveMessage(String message){
-        System.out.println("Se ha recibido el mensaje de RabbitMQ:" + message);
+
+    private static final Logger logger = LoggerFactory.getLogger(RabbitMQConsumer.class);
+
+    // Cabecera con el motivo por el que un mensaje se ha enviado a la cola de fallidos
+    public static final String ERROR_HEADER = "x-ticket-error";
+
+    @Autowired
+    private TicketImportService ticketImportService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private RabbitTemplate rabbitTemplate;
+
+    @RabbitListener(queues = QUEUE_NAME, containerFactory = TICKET_LISTENER_FACTORY)
+    public void receiveTickets(List<Message> messages, Channel channel) throws IOException {
+        long lastDeliveryTag = messages.get(messages.size() - 1).getMessageProperties().getDeliveryTag();
+
+        List<TicketImportDTO> tickets = new ArrayList<>(messages.size());
+        List<Message> ticketMessages = new ArrayList<>(messages.size());
+        Map<Message, String> failed = new LinkedHashMap<>();
+        for (Message message : messages) {
+            try {
+                tickets.add(objectMapper.readValue(message.getBody(), TicketImportDTO.class));
+                ticketMessages.add(message);
+            } catch (IOException e) {
+                failed.put(message, "Mensaje no válido: " + e.getMessage());
+            }
+        }
+
+        try {
+            TicketImportResultDTO result = ticketImportService.importTickets(tickets);
+            for (TicketImportErrorDTO error : result.getErrors()) {
+                failed.put(ticketMessages.get((int) error.getLine() - 1), error.getMessage());
+            }
+        } catch (RuntimeException e) {
+            logger.error("Error al guardar un lote de {} tickets de RabbitMQ, se devuelven a la cola: {}",
+                    messages.size(), e.getMessage());
+            channel.basicNack(lastDeliveryTag, true, true);
+            return;
+        }
+
+        failed.forEach(this::sendToFailedQueue);
+        channel.basicAck(lastDeliveryTag, true);
+        logger.info("Lote de RabbitMQ procesado: {} tickets guardados, {} fallidos.",
+                messages.size() - failed.size(), failed.size());
+    }
+
+    private void sendToFailedQueue(Message message, String reason) {
+        logger.warn("Ticket de RabbitMQ enviado a {}: {}", FAILED_QUEUE_NAME, reason);
+        rabbitTemplate.send(FAILED_QUEUE_NAME, MessageBuilder.fromMessage(message)
+                .setHeader(ERROR_HEADER, reason)
+                .build());
     }
 }
@@ -1,9 +1,11 @@
 package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.services;
 
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.TicketImportDTO;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import static org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.config.RabbitMQConfig.QUEUE_NAME;
@@ -15,8 +17,23 @@ public class RabbitMQProducerService {
     @Autowired
     private RabbitTemplate rabbitTemplate;
 
-    public void sendMessage(String message) {
-        rabbitTemplate.convertAndSend(QUEUE_NAME, message);
-        logger.info("Mensaje enviado a RabbitMQ: {}", message);
+    // Tiempo máximo de espera de la confirmación del broker al encolar un ticket
+    @Value("${tickets.queue.confirm-timeout-ms:5000}")
+    private long confirmTimeout;
+
+    /**
+     * Encola un ticket para guardarlo de forma asíncrona y espera a que el broker confirme
+     * que lo ha recibido, para no dar por aceptado un ticket que se ha perdido por el camino.
+     *
+     * @param ticket el ticket a encolar.
+     * @throws org.springframework.amqp.AmqpException si el broker no confirma el mensaje a tiempo.
+     */
+    public void sendTicket(TicketImportDTO ticket) {
+        rabbitTemplate.invoke(operations -> {
+            operations.convertAndSend(QUEUE_NAME, ticket);
+            operations.waitForConfirmsOrDie(confirmTimeout);
+            return null;
+        });
+        logger.debug("Ticket encolado en RabbitMQ para la ubicación {}", ticket.getLocationId());
     }
 }
@@ -8,12 +8,16 @@ import org.slf4j.LoggerFactory;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.MessageSource;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.CursorPageDTO;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.utils.CursorPagination;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
 
 import java.util.Locale;
 import java.util.Optional;
+import java.util.Set;
 
 
 @Service
@@ -30,22 +34,28 @@ public class RegionService {
     @Autowired
     private MessageSource messageSource;
 
+    // Propiedades por las que se puede ordenar el listado de regiones
+    public static final Set<String> SORT_PROPERTIES = Set.of("name", "code", "id");
+
     /**
-     * Lista todas las regiones almacenadas en la base de datos.
+     * Lista las regiones paginadas por cursor, con filtro opcional por nombre.
      *
-     * @return Lista de RegionDTO.
+     * @param name   texto que debe contener el nombre, o null para no filtrar.
+     * @param sort   ordenación ("name", "code" o "id", opcionalmente seguida de ",desc").
+     * @param cursor cursor devuelto en la página anterior, o null para la primera página.
+     * @param size   número de regiones por página.
+     * @return la página de regiones con el cursor de la siguiente.
+     * @throws IllegalArgumentException si la ordenación o el cursor no son válidos.
      */
-    public Page<RegionDTO> getAllRegions(Pageable pageable) {
-        logger.info("Solicitando todas las regiones con paginación: página {}, tamaño {}",
-                pageable.getPageNumber(), pageable.getPageSize());
-        try {
-            Page<Region> regions = regionRepository.findAll(pageable);
-            logger.info("Se han encontrado {} regiones en la página actual.", regions.getNumberOfElements());
-            return regions.map(regionMapper::toDTO);
-        } catch (Exception e) {
-            logger.info("Error al obtener la lista paginada de regiones: {}", e.getMessage());
-            throw e;
-        }
+    public CursorPageDTO<RegionDTO> getRegions(String name, String sort, String cursor, int size) {
+        Sort order = CursorPagination.parseSort(sort, SORT_PROPERTIES, "name");
+        Specification<Region> filter = Specification.allOf(CursorPagination.containsIgnoreCase("name", name));
+        Window<Region> regions = regionRepository.findBy(filter, query -> query
+                .sortBy(order)
+                .limit(CursorPagination.pageSize(size))
+                .scroll(CursorPagination.decodeCursor(cursor, order)));
+        logger.info("Se han encontrado {} regiones en la página actual.", regions.size());
+        return CursorPagination.toPage(regions, regionMapper::toDTO);
     }
 
     /**
@@ -0,0 +1,203 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.services;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.SpendingRollupDTO;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities.Category;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities.Province;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities.Region;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities.SpendingDimension;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities.SpendingRollup;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities.Supermarket;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.repositories.CategoryRepository;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.repositories.ProvinceRepository;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.repositories.RegionRepository;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.repositories.SpendingRollupRepository;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.repositories.SupermarketRepository;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.repositories.TicketRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Servicio que mantiene y consulta el gasto mensual agregado (`spending_monthly`).
+ *
+ * Cada modificación de un ticket resta su aportación anterior antes de cambiarlo y suma la nueva
+ * después de guardarlo, dentro de la misma transacción, así que las consultas de analítica leen
+ * directamente las filas agregadas sin importar cuántos tickets haya. La aportación se asigna al
+ * supermercado, provincia, región y categoría que tienen la ubicación y los productos al guardar el ticket,
+ * y se guardan en el propio ticket para restarla después de los mismos aunque hayan cambiado. Un ticket que
+ * se vuelve a guardar pasa a los elementos actuales; `rebuild` hace lo mismo con todos.
+ */
+@Service
+public class SpendingRollupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SpendingRollupService.class);
+
+    // Máximo de meses que se devuelven en una consulta
+    private static final int MAX_MONTHS = 120;
+
+    @Autowired
+    private SpendingRollupRepository spendingRollupRepository;
+
+    @Autowired
+    private TicketRepository ticketRepository;
+
+    @Autowired
+    private SupermarketRepository supermarketRepository;
+
+    @Autowired
+    private ProvinceRepository provinceRepository;
+
+    @Autowired
+    private RegionRepository regionRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Suma la aportación de los tickets a la tabla agregada. Se debe llamar después de guardar
+     * los tickets y sus líneas, en la misma transacción.
+     *
+     * @param ticketIds los IDs de los tickets.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void addTickets(Collection<Long> ticketIds) {
+        if (!ticketIds.isEmpty()) {
+            // Escribir antes los cambios pendientes de los tickets, que la consulta lee de la base de datos
+            entityManager.flush();
+            spendingRollupRepository.stampTickets(ticketIds);
+            spendingRollupRepository.stampTicketLines(ticketIds);
+            spendingRollupRepository.applyTickets(ticketIds, 1);
+        }
+    }
+
+    /**
+     * Resta la aportación de los tickets a la tabla agregada, de los elementos a los que se sumó.
+     * Se debe llamar antes de modificar o eliminar los tickets, en la misma transacción.
+     *
+     * @param ticketIds los IDs de los tickets.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void removeTickets(Collection<Long> ticketIds) {
+        if (!ticketIds.isEmpty()) {
+            spendingRollupRepository.applyTickets(ticketIds, -1);
+        }
+    }
+
+    /**
+     * Obtiene el gasto mensual de una dimensión entre dos meses.
+     *
+     * @param dimension   la dimensión (supermercado, provincia, región o categoría).
+     * @param from        primer mes (incluido).
+     * @param to          último mes (incluido).
+     * @param dimensionId ID de un único elemento de la dimensión, o null para todos.
+     * @return el gasto de cada mes y elemento, ordenado por mes.
+     * @throws IllegalArgumentException si el rango de meses no es válido.
+     */
+    @Transactional(readOnly = true)
+    public List<SpendingRollupDTO> getSpending(SpendingDimension dimension, YearMonth from, YearMonth to, Long dimensionId) {
+        if (from.isAfter(to) || from.plusMonths(MAX_MONTHS).isBefore(to)) {
+            throw new IllegalArgumentException("El rango de meses no es válido (máximo " + MAX_MONTHS + " meses).");
+        }
+
+        List<SpendingRollup> rows = spendingRollupRepository.findByDimension(
+                dimension, from.atDay(1), to.atDay(1), dimensionId);
+        Set<Long> ids = rows.stream().map(row -> row.getId().getDimensionId()).collect(Collectors.toSet());
+        Map<Long, String> names = findNames(dimension, ids);
+
+        return rows.stream()
+                .map(row -> new SpendingRollupDTO(
+                        YearMonth.from(row.getId().getMonth()).toString(),
+                        dimension,
+                        row.getId().getDimensionId(),
+                        names.get(row.getId().getDimensionId()),
+                        row.getAmount().setScale(2, RoundingMode.HALF_UP),
+                        row.getUnits()))
+                .toList();
+    }
+
+    /**
+     * Vuelve a calcular la tabla agregada a partir de los tickets, asignando su gasto a los elementos que
+     * tienen ahora sus ubicaciones y productos. Se hace un mes en cada transacción para no bloquear los
+     * tickets durante toda la reconstrucción.
+     *
+     * @return el número de meses reconstruidos.
+     */
+    public long rebuild() {
+        Date minDate = ticketRepository.findMinDate();
+        Date maxDate = ticketRepository.findMaxDate();
+        if (minDate == null || maxDate == null) {
+            transactionTemplate.executeWithoutResult(status ->
+                    spendingRollupRepository.deleteMonths(LocalDate.of(1, 1, 1), LocalDate.of(9999, 1, 1)));
+            logger.info("No hay tickets; se ha vaciado la tabla de gasto mensual.");
+            return 0;
+        }
+
+        YearMonth first = toYearMonth(minDate);
+        YearMonth last = toYearMonth(maxDate);
+        long months = 0;
+        for (YearMonth month = first; !month.isAfter(last); month = month.plusMonths(1)) {
+            LocalDate start = month.atDay(1);
+            LocalDate end = month.plusMonths(1).atDay(1);
+            transactionTemplate.executeWithoutResult(status -> {
+                spendingRollupRepository.stampDateRange(toDate(start), toDate(end));
+                spendingRollupRepository.stampTicketLinesDateRange(toDate(start), toDate(end));
+                spendingRollupRepository.deleteMonths(start, end);
+                spendingRollupRepository.applyDateRange(toDate(start), toDate(end), 1);
+            });
+            months++;
+        }
+
+        // Eliminar los meses que ya no tienen tickets fuera del rango reconstruido
+        transactionTemplate.executeWithoutResult(status -> {
+            spendingRollupRepository.deleteMonths(LocalDate.of(1, 1, 1), first.atDay(1));
+            spendingRollupRepository.deleteMonths(last.plusMonths(1).atDay(1), LocalDate.of(9999, 1, 1));
+        });
+
+        logger.info("Tabla de gasto mensual reconstruida: {} meses, de {} a {}.", months, first, last);
+        return months;
+    }
+
+    private Map<Long, String> findNames(SpendingDimension dimension, Set<Long> ids) {
+        return switch (dimension) {
+            case SUPERMARKET -> supermarketRepository.findAllById(ids).stream()
+                    .collect(Collectors.toMap(Supermarket::getId, Supermarket::getName));
+            case PROVINCE -> provinceRepository.findAllById(ids).stream()
+                    .collect(Collectors.toMap(Province::getId, Province::getName));
+            case REGION -> regionRepository.findAllById(ids).stream()
+                    .collect(Collectors.toMap(Region::getId, Region::getName));
+            case CATEGORY -> categoryRepository.findAllById(ids).stream()
+                    .collect(Collectors.toMap(Category::getId, Category::getName));
+        };
+    }
+
+    private static YearMonth toYearMonth(Date date) {
+        return YearMonth.from(date.toInstant().atZone(ZoneId.systemDefault()));
+    }
+
+    private static Date toDate(LocalDate date) {
+        return Date.from(date.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+}
@@ -0,0 +1,97 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.services;
+
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.SqlEndpointMetricsDTO;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.utils.SqlRequestStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Servicio que acumula, por endpoint, las sentencias SQL, el tiempo JDBC y la espera de conexiones
+ * de cada petición desde que arrancó la aplicación (o desde el último reinicio de las métricas).
+ */
+@Service
+public class SqlMetricsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SqlMetricsService.class);
+
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    private final Map<String, EndpointMetrics> metrics = new ConcurrentHashMap<>();
+
+    /**
+     * Suma los contadores de una petición a los de su endpoint.
+     *
+     * @param endpoint el método HTTP y el patrón de la ruta (por ejemplo "GET /api/v1/ticket-logger/regions/{id}").
+     * @param stats    los contadores de la petición.
+     */
+    public void record(String endpoint, SqlRequestStats stats) {
+        metrics.computeIfAbsent(endpoint, key -> new EndpointMetrics()).add(stats);
+    }
+
+    /**
+     * Obtiene las métricas de todos los endpoints, empezando por los que más tiempo han pasado en la base de datos.
+     *
+     * @return la lista de métricas por endpoint.
+     */
+    public List<SqlEndpointMetricsDTO> getMetrics() {
+        return metrics.entrySet().stream()
+                .map(entry -> entry.getValue().toDTO(entry.getKey()))
+                .sorted(Comparator.comparingDouble(SqlEndpointMetricsDTO::getTotalJdbcTimeMs).reversed())
+                .toList();
+    }
+
+    /**
+     * Pone a cero las métricas de todos los endpoints.
+     */
+    public void reset() {
+        metrics.clear();
+        logger.info("Se han reiniciado las métricas SQL por endpoint.");
+    }
+
+    /**
+     * Contadores acumulados de un endpoint. Se actualizan sin bloqueos desde varias peticiones a la vez.
+     */
+    private static class EndpointMetrics {
+
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder statements = new LongAdder();
+        private final LongAdder jdbcNanos = new LongAdder();
+        private final LongAdder connectionWaitNanos = new LongAdder();
+        private final LongAccumulator maxStatements = new LongAccumulator(Math::max, 0);
+        private final LongAccumulator maxJdbcNanos = new LongAccumulator(Math::max, 0);
+        private final LongAccumulator maxConnectionWaitNanos = new LongAccumulator(Math::max, 0);
+
+        void add(SqlRequestStats stats) {
+            requests.increment();
+            statements.add(stats.getStatements());
+            jdbcNanos.add(stats.getJdbcNanos());
+            connectionWaitNanos.add(stats.getConnectionWaitNanos());
+            maxStatements.accumulate(stats.getStatements());
+            maxJdbcNanos.accumulate(stats.getJdbcNanos());
+            maxConnectionWaitNanos.accumulate(stats.getConnectionWaitNanos());
+        }
+
+        SqlEndpointMetricsDTO toDTO(String endpoint) {
+            long count = Math.max(1, requests.sum());
+            return new SqlEndpointMetricsDTO(
+                    endpoint,
+                    requests.sum(),
+                    statements.sum(),
+                    (double) statements.sum() / count,
+                    maxStatements.get(),
+                    jdbcNanos.sum() / NANOS_PER_MILLI,
+                    jdbcNanos.sum() / NANOS_PER_MILLI / count,
+                    maxJdbcNanos.get() / NANOS_PER_MILLI,
+                    connectionWaitNanos.sum() / NANOS_PER_MILLI / count,
+                    maxConnectionWaitNanos.get() / NANOS_PER_MILLI);
+        }
+    }
+}
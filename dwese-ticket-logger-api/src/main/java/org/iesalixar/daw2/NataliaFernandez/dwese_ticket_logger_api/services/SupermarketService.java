@@ -10,10 +10,16 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.MessageSource;
 import org.springframework.stereotype.Service;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.CursorPageDTO;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.utils.CursorPagination;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
 
 import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -30,24 +36,28 @@ public class SupermarketService {
     @Autowired
     private MessageSource messageSource;
 
+    // Propiedades por las que se puede ordenar el listado de supermercados
+    public static final Set<String> SORT_PROPERTIES = Set.of("name", "id");
+
     /**
-     * Lista todos los supermercados almacenados en la base de datos.
+     * Lista los supermercados paginados por cursor, con filtro opcional por nombre.
      *
-     * @return Lista de SupermarketDTO.
+     * @param name   texto que debe contener el nombre, o null para no filtrar.
+     * @param sort   ordenación ("name" o "id", opcionalmente seguida de ",desc").
+     * @param cursor cursor devuelto en la página anterior, o null para la primera página.
+     * @param size   número de supermercados por página.
+     * @return la página de supermercados con el cursor de la siguiente.
+     * @throws IllegalArgumentException si la ordenación o el cursor no son válidos.
      */
-    public List<SupermarketDTO> getAllSupermarkets() {
-        try {
-            logger.info("Solicitando la lista de todos los supermercados...");
-            List<Supermarket> supermarkets = supermarketRepository.findAll();
-            logger.info("Se han encontrado {} supermercados.", supermarkets.size());
-
-            return supermarkets.stream()
-                    .map(supermarketMapper::toDTO)
-                    .collect(Collectors.toList());
-        } catch (Exception e) {
-            logger.error("Error al listar los supermercados: {}", e.getMessage());
-            throw new RuntimeException("Error al obtener todos los supermercados", e);
-        }
+    public CursorPageDTO<SupermarketDTO> getSupermarkets(String name, String sort, String cursor, int size) {
+        Sort order = CursorPagination.parseSort(sort, SORT_PROPERTIES, "name");
+        Specification<Supermarket> filter = Specification.allOf(CursorPagination.containsIgnoreCase("name", name));
+        Window<Supermarket> supermarkets = supermarketRepository.findBy(filter, query -> query
+                .sortBy(order)
+                .limit(CursorPagination.pageSize(size))
+                .scroll(CursorPagination.decodeCursor(cursor, order)));
+        logger.info("Se han encontrado {} supermercados en la página actual.", supermarkets.size());
+        return CursorPagination.toPage(supermarkets, supermarketMapper::toDTO);
     }
 
     /**
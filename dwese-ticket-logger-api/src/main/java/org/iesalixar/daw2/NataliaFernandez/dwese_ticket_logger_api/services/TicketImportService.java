@@ -0,0 +1,328 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.TicketImportDTO;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.TicketImportErrorDTO;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.TicketImportResultDTO;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.TicketLineCreateDTO;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities.Location;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities.Product;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities.Ticket;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities.TicketLine;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.repositories.LocationRepository;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.repositories.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Servicio de importación masiva de tickets en formato NDJSON (un ticket JSON por línea).
+ *
+ * El fichero se lee línea a línea sin cargarlo entero en memoria. Los registros válidos se
+ * agrupan en bloques y cada bloque se guarda en una transacción: las ubicaciones y los productos
+ * del bloque se obtienen con una consulta cada uno y las inserciones se envían a la base de datos
+ * en lotes JDBC (`hibernate.jdbc.batch_size`). Un registro erróneo se anota con su número de
+ * línea y no interrumpe la importación.
+ */
+@Service
+public class TicketImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TicketImportService.class);
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private LocationRepository locationRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private SpendingRollupService spendingRollupService;
+
+    @Autowired
+    private EventStreamService eventStreamService;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // Número de tickets que se guardan en cada transacción
+    @Value("${ticket.import.chunk-size:500}")
+    private int chunkSize;
+
+    // Número máximo de errores que se devuelven en el resultado
+    @Value("${ticket.import.max-errors:1000}")
+    private int maxErrors;
+
+    /**
+     * Importa los tickets leídos de un flujo NDJSON.
+     *
+     * @param input flujo con un ticket JSON por línea (las líneas vacías se ignoran).
+     * @return el número de registros recibidos, importados y erróneos, con los errores de cada registro.
+     * @throws IOException si no se puede leer el flujo.
+     */
+    public TicketImportResultDTO importTickets(InputStream input) throws IOException {
+        TicketImportResultDTO result = new TicketImportResultDTO();
+        ObjectReader reader = objectMapper.readerFor(TicketImportDTO.class);
+        List<ImportRecord> chunk = new ArrayList<>(chunkSize);
+
+        try (BufferedReader lines = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            String line;
+            long lineNumber = 0;
+            while ((line = lines.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                result.setReceived(result.getReceived() + 1);
+
+                TicketImportDTO ticket;
+                try {
+                    ticket = reader.readValue(line);
+                } catch (JsonProcessingException e) {
+                    addError(result, lineNumber, "JSON no válido: " + e.getOriginalMessage());
+                    continue;
+                }
+                accept(new ImportRecord(lineNumber, ticket), chunk, result);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            saveChunk(chunk, result);
+        }
+
+        logger.info("Importación de tickets finalizada: {} recibidos, {} importados, {} con errores.",
+                result.getReceived(), result.getImported(), result.getFailed());
+        return result;
+    }
+
+    /**
+     * Importa una lista de tickets ya leídos, por ejemplo los recibidos de la cola de tickets.
+     * En los errores, `line` es la posición del ticket en la lista (empezando en 1).
+     *
+     * @param tickets los tickets a importar.
+     * @return el número de tickets recibidos, importados y erróneos, con los errores de cada ticket.
+     */
+    public TicketImportResultDTO importTickets(List<TicketImportDTO> tickets) {
+        TicketImportResultDTO result = new TicketImportResultDTO();
+        List<ImportRecord> chunk = new ArrayList<>(Math.min(chunkSize, tickets.size()));
+        for (int i = 0; i < tickets.size(); i++) {
+            result.setReceived(result.getReceived() + 1);
+            accept(new ImportRecord(i + 1, tickets.get(i)), chunk, result);
+        }
+        if (!chunk.isEmpty()) {
+            saveChunk(chunk, result);
+        }
+        return result;
+    }
+
+    /**
+     * Valida un ticket y lo añade al bloque pendiente, guardando el bloque cuando está completo.
+     */
+    private void accept(ImportRecord record, List<ImportRecord> chunk, TicketImportResultDTO result) {
+        String violations = validate(record.ticket());
+        if (violations != null) {
+            addError(result, record.line(), violations);
+            return;
+        }
+        chunk.add(record);
+        if (chunk.size() >= chunkSize) {
+            saveChunk(chunk, result);
+            chunk.clear();
+        }
+    }
+
+    /**
+     * Guarda un bloque de tickets en una transacción. Si la transacción falla se reintenta cada
+     * ticket del bloque por separado para identificar los registros que provocan el error.
+     * Los errores transitorios (base de datos no disponible, sin conexiones libres...) no se
+     * atribuyen a los registros y se propagan para que la importación se pueda repetir.
+     */
+    private void saveChunk(List<ImportRecord> chunk, TicketImportResultDTO result) {
+        List<TicketImportErrorDTO> errors = new ArrayList<>();
+        try {
+            transactionTemplate.executeWithoutResult(status -> persistRecords(chunk, errors));
+        } catch (RuntimeException e) {
+            logger.warn("Error al guardar un bloque de {} tickets, se reintentan uno a uno: {}",
+                    chunk.size(), e.getMessage());
+            errors.clear();
+            for (ImportRecord record : chunk) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> persistRecords(List.of(record), errors));
+                } catch (RuntimeException recordError) {
+                    if (isTransient(recordError)) {
+                        throw recordError;
+                    }
+                    errors.add(new TicketImportErrorDTO(record.line(), "Error al guardar el ticket: "
+                            + recordError.getMessage()));
+                }
+            }
+        }
+
+        result.setImported(result.getImported() + chunk.size() - errors.size());
+        for (TicketImportErrorDTO error : errors) {
+            addError(result, error.getLine(), error.getMessage());
+        }
+    }
+
+    /**
+     * Crea los tickets de un bloque dentro de la transacción actual. Los registros que hacen
+     * referencia a una ubicación o a un producto inexistente se anotan como erróneos y se omiten.
+     */
+    private void persistRecords(List<ImportRecord> records, List<TicketImportErrorDTO> errors) {
+        Set<Long> locationIds = new HashSet<>();
+        Set<Long> productIds = new HashSet<>();
+        for (ImportRecord record : records) {
+            locationIds.add(record.ticket().getLocationId());
+            for (TicketLineCreateDTO line : record.ticket().getLines()) {
+                if (line.getProductId() != null) {
+                    productIds.add(line.getProductId());
+                }
+            }
+        }
+        Map<Long, Location> locations = locationRepository.findAllById(locationIds).stream()
+                .collect(Collectors.toMap(Location::getId, Function.identity()));
+        Map<Long, Product> products = productRepository.findAllById(productIds).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+
+        List<Long> ticketIds = new ArrayList<>(records.size());
+        for (ImportRecord record : records) {
+            String error = checkReferences(record.ticket(), locations, products);
+            if (error != null) {
+                errors.add(new TicketImportErrorDTO(record.line(), error));
+                continue;
+            }
+            Ticket ticket = buildTicket(record.ticket(), locations, products);
+            entityManager.persist(ticket);
+            ticketIds.add(ticket.getId());
+        }
+
+        // Enviar las inserciones del bloque, sumar su gasto a la analítica y liberar las entidades
+        spendingRollupService.addTickets(ticketIds);
+        entityManager.flush();
+        entityManager.clear();
+        // Un solo evento por bloque, que se publica si la transacción termina bien
+        if (!ticketIds.isEmpty()) {
+            eventStreamService.publishTicketChange("IMPORTED", ticketIds);
+        }
+    }
+
+    /**
+     * Comprueba que la ubicación y los productos existentes del ticket están en base de datos,
+     * que cada línea indica un producto existente o los datos de uno nuevo y que ningún producto
+     * aparece en dos líneas, igual que al crear un ticket por la API.
+     *
+     * @return el mensaje de error, o null si el ticket es correcto.
+     */
+    private String checkReferences(TicketImportDTO ticket, Map<Long, Location> locations, Map<Long, Product> products) {
+        if (!locations.containsKey(ticket.getLocationId())) {
+            return "No existe la ubicación con ID " + ticket.getLocationId() + ".";
+        }
+        Set<Long> seenProductIds = new HashSet<>();
+        for (TicketLineCreateDTO line : ticket.getLines()) {
+            if (line.getProductId() != null) {
+                if (!products.containsKey(line.getProductId())) {
+                    return "No existe el producto con ID " + line.getProductId() + ".";
+                }
+                if (!seenProductIds.add(line.getProductId())) {
+                    return "Un producto no puede aparecer en varias líneas del mismo ticket.";
+                }
+            } else if (line.getProductName() == null || line.getProductPrice() == null) {
+                return "Cada producto debe indicar un ID o un nombre y un precio.";
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Crea el ticket con sus líneas. Los productos nuevos se guardan antes que el ticket.
+     */
+    private Ticket buildTicket(TicketImportDTO dto, Map<Long, Location> locations, Map<Long, Product> products) {
+        Ticket ticket = new Ticket();
+        ticket.setDate(dto.getDate());
+        ticket.setDiscount(dto.getDiscount());
+        ticket.setLocation(locations.get(dto.getLocationId()));
+
+        for (TicketLineCreateDTO lineDto : dto.getLines()) {
+            Product product;
+            if (lineDto.getProductId() != null) {
+                product = products.get(lineDto.getProductId());
+            } else {
+                product = new Product();
+                product.setName(lineDto.getProductName());
+                product.setPrice(lineDto.getProductPrice());
+                entityManager.persist(product);
+            }
+
+            BigDecimal unitPrice = Objects.requireNonNullElse(lineDto.getUnitPrice(), product.getPrice());
+            ticket.getLines().add(new TicketLine(ticket, product, lineDto.getQuantity(), unitPrice));
+        }
+        ticket.recalculateTotal();
+        return ticket;
+    }
+
+    /**
+     * Valida un ticket y devuelve los errores encontrados en un único mensaje, o null si es válido.
+     */
+    private String validate(TicketImportDTO ticket) {
+        Set<ConstraintViolation<TicketImportDTO>> violations = validator.validate(ticket);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                .sorted()
+                .collect(Collectors.joining("; "));
+    }
+
+    private static boolean isTransient(RuntimeException e) {
+        return e instanceof TransientDataAccessException
+                || e instanceof RecoverableDataAccessException
+                || e instanceof CannotCreateTransactionException;
+    }
+
+    private void addError(TicketImportResultDTO result, long line, String message) {
+        result.setFailed(result.getFailed() + 1);
+        if (result.getErrors().size() < maxErrors) {
+            result.getErrors().add(new TicketImportErrorDTO(line, message));
+        } else {
+            result.setErrorsTruncated(true);
+        }
+    }
+
+    private record ImportRecord(long line, TicketImportDTO ticket) {
+    }
+}
@@ -0,0 +1,410 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.services;
+
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.ProductPriceDTO;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.TicketLineCreateDTO;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.TicketPageDTO;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.TicketProductBatchDTO;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.TicketProductBatchResultDTO;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.TicketSummaryDTO;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities.Product;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities.Ticket;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities.TicketLine;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.repositories.ProductRepository;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.repositories.TicketLineRepository;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.repositories.TicketRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Servicio para manejar las operaciones de consulta de tickets.
+ */
+@Service
+public class TicketService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TicketService.class);
+
+    // Tamaño máximo de página permitido en los listados
+    public static final int MAX_PAGE_SIZE = 100;
+
+    @Autowired
+    private TicketRepository ticketRepository;
+
+    @Autowired
+    private TicketLineRepository ticketLineRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private SpendingRollupService spendingRollupService;
+
+    @Autowired
+    private EventStreamService eventStreamService;
+
+    /**
+     * Lista los tickets ordenados del más reciente al más antiguo usando paginación por cursor.
+     *
+     * @param from       fecha mínima (incluida), o null.
+     * @param to         fecha máxima (excluida), o null.
+     * @param locationId ID de la ubicación, o null.
+     * @param cursor     cursor devuelto en la página anterior, o null para la primera página.
+     * @param size       número de tickets por página.
+     * @return la página de tickets con el cursor de la siguiente.
+     * @throws IllegalArgumentException si el cursor no es válido.
+     */
+    @Transactional(readOnly = true)
+    public TicketPageDTO getTickets(Date from, Date to, Long locationId, String cursor, int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+
+        Date cursorDate = null;
+        Long cursorId = null;
+        if (cursor != null && !cursor.isBlank()) {
+            long[] decoded = decodeCursor(cursor);
+            cursorDate = new Date(decoded[0]);
+            cursorId = decoded[1];
+        }
+
+        // Se pide un ticket de más para saber si existe una página siguiente
+        List<TicketSummaryDTO> tickets = ticketRepository.findSummariesAfter(
+                from, to, locationId, cursorDate, cursorId, Limit.of(pageSize + 1));
+
+        String nextCursor = null;
+        if (tickets.size() > pageSize) {
+            tickets = tickets.subList(0, pageSize);
+            TicketSummaryDTO last = tickets.get(pageSize - 1);
+            nextCursor = encodeCursor(last.getDate(), last.getId());
+        }
+
+        logger.info("Se han encontrado {} tickets en la página actual.", tickets.size());
+        return new TicketPageDTO(tickets, tickets.size(), nextCursor);
+    }
+
+    /**
+     * Obtiene el historial de precios pagados por un producto, del más reciente al más antiguo.
+     *
+     * @param productId ID del producto.
+     * @param size      número máximo de registros.
+     * @return la lista de precios pagados.
+     */
+    @Transactional(readOnly = true)
+    public List<ProductPriceDTO> getPriceHistory(Long productId, int size) {
+        int limit = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        return ticketLineRepository.findPriceHistory(productId, Limit.of(limit));
+    }
+
+    /**
+     * Crea un ticket con sus líneas y suma su gasto a la tabla de analítica.
+     *
+     * @param ticket el ticket a crear.
+     * @return el ticket guardado.
+     * @throws IllegalArgumentException si alguna línea hace referencia a un producto que no existe o lo repite.
+     */
+    @Transactional
+    public Ticket createTicket(Ticket ticket) {
+        resolveLinesAndTotal(ticket);
+        Ticket savedTicket = ticketRepository.save(ticket);
+        spendingRollupService.addTickets(List.of(savedTicket.getId()));
+        eventStreamService.publishTicketChange("CREATED", List.of(savedTicket.getId()));
+        return savedTicket;
+    }
+
+    /**
+     * Reemplaza los datos y las líneas de un ticket existente.
+     *
+     * @param id     ID del ticket.
+     * @param ticket los nuevos datos del ticket.
+     * @return el ticket actualizado, o vacío si no existe.
+     * @throws IllegalArgumentException si alguna línea hace referencia a un producto que no existe o lo repite.
+     */
+    @Transactional
+    public Optional<Ticket> updateTicket(Long id, Ticket ticket) {
+        if (!ticketRepository.existsById(id)) {
+            return Optional.empty();
+        }
+        spendingRollupService.removeTickets(List.of(id));
+        ticket.setId(id);
+        resolveLinesAndTotal(ticket);
+        Ticket updatedTicket = ticketRepository.save(ticket);
+        spendingRollupService.addTickets(List.of(id));
+        eventStreamService.publishTicketChange("UPDATED", List.of(id));
+        return Optional.of(updatedTicket);
+    }
+
+    /**
+     * Elimina un ticket y resta su gasto de la tabla de analítica.
+     *
+     * @param id ID del ticket.
+     * @return true si el ticket existía.
+     */
+    @Transactional
+    public boolean deleteTicket(Long id) {
+        if (!ticketRepository.existsById(id)) {
+            return false;
+        }
+        spendingRollupService.removeTickets(List.of(id));
+        ticketRepository.deleteById(id);
+        eventStreamService.publishTicketChange("DELETED", List.of(id));
+        return true;
+    }
+
+    /**
+     * Añade unidades de un producto existente a un ticket, con su precio actual.
+     *
+     * @param ticketId  ID del ticket.
+     * @param productId ID del producto.
+     * @param quantity  número de unidades.
+     * @return el ticket actualizado, o vacío si el ticket o el producto no existen.
+     */
+    @Transactional
+    public Optional<Ticket> addProduct(Long ticketId, Long productId, int quantity) {
+        Optional<Ticket> ticketOpt = ticketRepository.findById(ticketId);
+        Optional<Product> productOpt = productRepository.findById(productId);
+        if (ticketOpt.isEmpty() || productOpt.isEmpty()) {
+            return Optional.empty();
+        }
+
+        spendingRollupService.removeTickets(List.of(ticketId));
+        ticketOpt.get().addProduct(productOpt.get(), quantity);
+        spendingRollupService.addTickets(List.of(ticketId));
+        eventStreamService.publishTicketChange("UPDATED", List.of(ticketId));
+        return ticketOpt;
+    }
+
+    /**
+     * Crea un producto y lo añade a un ticket.
+     *
+     * @param ticketId     ID del ticket.
+     * @param productName  nombre del producto.
+     * @param productPrice precio del producto.
+     * @param quantity     número de unidades.
+     * @return el ticket actualizado, o vacío si el ticket no existe.
+     */
+    @Transactional
+    public Optional<Ticket> addNewProduct(Long ticketId, String productName, BigDecimal productPrice, int quantity) {
+        Optional<Ticket> ticketOpt = ticketRepository.findById(ticketId);
+        if (ticketOpt.isEmpty()) {
+            return Optional.empty();
+        }
+
+        spendingRollupService.removeTickets(List.of(ticketId));
+        Product newProduct = new Product();
+        newProduct.setName(productName);
+        newProduct.setPrice(productPrice);
+        productRepository.save(newProduct);
+        ticketOpt.get().addProduct(newProduct, quantity);
+        spendingRollupService.addTickets(List.of(ticketId));
+        eventStreamService.publishTicketChange("UPDATED", List.of(ticketId));
+        return ticketOpt;
+    }
+
+    /**
+     * Quita un producto de un ticket.
+     *
+     * @param ticketId  ID del ticket.
+     * @param productId ID del producto.
+     * @return el ticket actualizado, o vacío si el ticket no existe o no contiene el producto.
+     */
+    @Transactional
+    public Optional<Ticket> removeProduct(Long ticketId, Long productId) {
+        Optional<Ticket> ticketOpt = ticketRepository.findById(ticketId);
+        if (ticketOpt.isEmpty() || ticketOpt.get().findLine(productId) == null) {
+            return Optional.empty();
+        }
+
+        spendingRollupService.removeTickets(List.of(ticketId));
+        ticketOpt.get().removeProduct(productId);
+        spendingRollupService.addTickets(List.of(ticketId));
+        eventStreamService.publishTicketChange("UPDATED", List.of(ticketId));
+        return ticketOpt;
+    }
+
+    /**
+     * Añade y quita varios productos de un ticket en una sola operación.
+     *
+     * Los productos y las líneas afectadas del ticket se obtienen con una consulta IN cada uno,
+     * sin cargar el resto de líneas, y solo se insertan, actualizan o eliminan las filas necesarias.
+     *
+     * @param ticketId ID del ticket.
+     * @param batch    productos a añadir y a quitar.
+     * @return el resultado de la operación, o vacío si el ticket no existe.
+     * @throws IllegalArgumentException si algún producto no existe o aparece a la vez para añadir y quitar.
+     */
+    @Transactional
+    public Optional<TicketProductBatchResultDTO> applyProductBatch(Long ticketId, TicketProductBatchDTO batch) {
+        Optional<Ticket> ticketOpt = ticketRepository.findById(ticketId);
+        if (ticketOpt.isEmpty()) {
+            return Optional.empty();
+        }
+        Ticket ticket = ticketOpt.get();
+        spendingRollupService.removeTickets(List.of(ticketId));
+
+        // Agrupar las unidades por producto existente y preparar los productos nuevos
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        Map<Long, BigDecimal> unitPrices = new HashMap<>();
+        List<TicketLineCreateDTO> newProductLines = new ArrayList<>();
+        for (TicketLineCreateDTO line : batch.getAdd()) {
+            if (line.getProductId() != null) {
+                quantities.merge(line.getProductId(), line.getQuantity(), Integer::sum);
+                if (line.getUnitPrice() != null) {
+                    unitPrices.put(line.getProductId(), line.getUnitPrice());
+                }
+            } else if (line.getProductName() != null && line.getProductPrice() != null) {
+                newProductLines.add(line);
+            } else {
+                throw new IllegalArgumentException("Cada producto debe indicar un ID o un nombre y un precio.");
+            }
+        }
+        Set<Long> removeIds = new HashSet<>(batch.getRemove());
+        if (removeIds.stream().anyMatch(quantities::containsKey)) {
+            throw new IllegalArgumentException("Un producto no puede añadirse y quitarse en la misma operación.");
+        }
+
+        // Una consulta para los productos a añadir y otra para las líneas ya existentes
+        Map<Long, Product> products = productRepository.findAllById(quantities.keySet()).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        if (products.size() != quantities.size()) {
+            throw new IllegalArgumentException("Algún producto no existe.");
+        }
+        Set<Long> affectedIds = new HashSet<>(quantities.keySet());
+        affectedIds.addAll(removeIds);
+        Map<Long, TicketLine> existingLines = affectedIds.isEmpty() ? Map.of()
+                : ticketLineRepository.findByTicketIdAndProductIds(ticketId, affectedIds).stream()
+                .collect(Collectors.toMap(line -> line.getProduct().getId(), Function.identity()));
+
+        BigDecimal delta = BigDecimal.ZERO;
+        List<TicketLine> toSave = new ArrayList<>();
+        int added = 0;
+        int updated = 0;
+
+        // Productos nuevos: se crean todos juntos y se añaden como líneas nuevas
+        List<Product> newProducts = new ArrayList<>();
+        for (TicketLineCreateDTO line : newProductLines) {
+            Product product = new Product();
+            product.setName(line.getProductName());
+            product.setPrice(line.getProductPrice());
+            newProducts.add(product);
+            BigDecimal unitPrice = line.getUnitPrice() != null ? line.getUnitPrice() : product.getPrice();
+            toSave.add(new TicketLine(ticket, product, line.getQuantity(), unitPrice));
+            delta = delta.add(unitPrice.multiply(BigDecimal.valueOf(line.getQuantity())));
+            added++;
+        }
+
+        // Productos existentes: se incrementa la línea si ya está en el ticket o se crea una nueva
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            TicketLine line = existingLines.get(entry.getKey());
+            if (line == null) {
+                Product product = products.get(entry.getKey());
+                BigDecimal unitPrice = unitPrices.getOrDefault(entry.getKey(), product.getPrice());
+                line = new TicketLine(ticket, product, entry.getValue(), unitPrice);
+                toSave.add(line);
+                added++;
+            } else {
+                line.setQuantity(line.getQuantity() + entry.getValue());
+                updated++;
+            }
+            delta = delta.add(line.getUnitPrice().multiply(BigDecimal.valueOf(entry.getValue())));
+        }
+
+        // Productos a quitar: se borran sus líneas con una sola sentencia
+        List<TicketLine> toRemove = removeIds.stream()
+                .map(existingLines::get)
+                .filter(Objects::nonNull)
+                .toList();
+        for (TicketLine line : toRemove) {
+            delta = delta.subtract(line.getAmount());
+        }
+
+        productRepository.saveAll(newProducts);
+        ticketLineRepository.saveAll(toSave);
+        ticketLineRepository.deleteAllInBatch(toRemove);
+        ticket.adjustSubtotal(delta);
+        spendingRollupService.addTickets(List.of(ticketId));
+        eventStreamService.publishTicketChange("UPDATED", List.of(ticketId));
+
+        logger.info("Ticket {}: {} líneas añadidas, {} actualizadas y {} eliminadas.",
+                ticketId, added, updated, toRemove.size());
+        return Optional.of(new TicketProductBatchResultDTO(ticketId, added, updated, toRemove.size(),
+                ticket.getSubtotal(), ticket.getTotal()));
+    }
+
+    /**
+     * Asocia las líneas recibidas a un ticket y a los productos guardados en base de datos,
+     * y recalcula el total del ticket. Si una línea no indica precio unitario se toma el precio
+     * actual del producto.
+     *
+     * @param ticket ticket recibido en la petición.
+     * @throws IllegalArgumentException si alguna línea hace referencia a un producto que no existe o si
+     *                                  varias líneas son del mismo producto.
+     */
+    private void resolveLinesAndTotal(Ticket ticket) {
+        if (ticket.getLines() == null) {
+            ticket.setLines(new ArrayList<>());
+        }
+        if (!ticket.getLines().isEmpty()) {
+            List<Long> productIds = ticket.getLines().stream()
+                    .map(line -> line.getProduct() != null ? line.getProduct().getId() : null)
+                    .toList();
+            // Cada producto solo puede aparecer en una línea (clave única ticket-producto); la cantidad va en la línea
+            List<Long> knownIds = productIds.stream().filter(Objects::nonNull).toList();
+            if (new HashSet<>(knownIds).size() < knownIds.size()) {
+                throw new IllegalArgumentException("Un producto no puede aparecer en varias líneas del mismo ticket.");
+            }
+            Map<Long, Product> products = productRepository.findAllById(productIds).stream()
+                    .collect(Collectors.toMap(Product::getId, Function.identity()));
+
+            for (TicketLine line : ticket.getLines()) {
+                Product product = products.get(line.getProduct() != null ? line.getProduct().getId() : null);
+                if (product == null) {
+                    throw new IllegalArgumentException("El producto de una línea del ticket no existe.");
+                }
+                line.setTicket(ticket);
+                line.setProduct(product);
+                if (line.getUnitPrice() == null) {
+                    line.setUnitPrice(product.getPrice());
+                }
+            }
+        }
+        ticket.recalculateTotal();
+    }
+
+    /**
+     * Codifica la posición (fecha, ID) del último ticket de una página como un cursor opaco.
+     */
+    private String encodeCursor(Date date, Long id) {
+        String raw = date.getTime() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodifica un cursor y devuelve {fecha en milisegundos, ID}.
+     */
+    private long[] decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split(":");
+            return new long[]{Long.parseLong(parts[0]), Long.parseLong(parts[1])};
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("El cursor no es válido.");
+        }
+    }
+}
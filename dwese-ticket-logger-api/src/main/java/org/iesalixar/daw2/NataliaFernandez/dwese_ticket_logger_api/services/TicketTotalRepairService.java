@@ -0,0 +1,73 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.services;
+
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.repositories.TicketRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Servicio que comprueba y corrige los totales guardados de los tickets.
+ *
+ * Los totales se mantienen de forma incremental al modificar los tickets; esta tarea recalcula
+ * en bloque, por rangos de IDs, los tickets cuyo total no coincide con sus líneas
+ * (por ejemplo, tras cargas manuales de datos) e informa del desajuste encontrado.
+ */
+@Service
+public class TicketTotalRepairService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TicketTotalRepairService.class);
+
+    @Autowired
+    private TicketRepository ticketRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // Número de IDs de ticket que se procesan en cada transacción
+    @Value("${ticket.total-repair.batch-size:5000}")
+    private int batchSize;
+
+    /**
+     * Ejecución programada de la reparación de totales.
+     */
+    @Scheduled(cron = "${ticket.total-repair.cron:0 0 3 * * *}")
+    public void scheduledRepair() {
+        repairTotals(false);
+    }
+
+    /**
+     * Recorre los tickets por rangos de IDs, cuenta los que tienen el total desajustado y, si no es
+     * una simulación, los corrige.
+     *
+     * @param dryRun si es true solo se informa del desajuste, sin modificar datos.
+     * @return el número de tickets con el total desajustado.
+     */
+    public long repairTotals(boolean dryRun) {
+        Long maxId = ticketRepository.findMaxId();
+        if (maxId == null) {
+            return 0;
+        }
+
+        long drifted = 0;
+        for (long fromId = 1; fromId <= maxId; fromId += batchSize) {
+            long from = fromId;
+            long to = fromId + batchSize - 1;
+            Long fixed = transactionTemplate.execute(status -> dryRun
+                    ? ticketRepository.countTotalsDrift(from, to)
+                    : (long) ticketRepository.repairTotals(from, to));
+            if (fixed != null && fixed > 0) {
+                logger.warn("Tickets con ID entre {} y {}: {} totales desajustados{}.",
+                        from, to, fixed, dryRun ? "" : " corregidos");
+                drifted += fixed;
+            }
+        }
+
+        logger.info("Revisión de totales de tickets finalizada: {} tickets desajustados{}.",
+                drifted, dryRun ? " (simulación)" : " corregidos");
+        return drifted;
+    }
+}
@@ -0,0 +1,309 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.services;
+
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.UploadCleanupReportDTO;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities.StoredFile;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.repositories.CategoryRepository;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.repositories.StoredFileRepository;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.repositories.UploadSessionRepository;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.utils.UploadPaths;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Servicio que borra los archivos subidos que ya no usa ninguna categoría.
+ *
+ * Compara el directorio de subidas con las imágenes asignadas a las categorías y con las subidas por partes
+ * finalizadas que todavía no se han asignado, y borra los archivos huérfanos (con sus variantes y copias .gz) y los temporales abandonados de subidas interrumpidas.
+ * También corrige las filas de `stored_files` cuyo número de referencias no coincide con el real,
+ * por ejemplo si una categoría se borró sin liberar su imagen.
+ *
+ * Solo se tocan archivos y filas sin cambios durante el periodo de gracia, para no borrar una subida cuya
+ * categoría todavía se está guardando. Los borrados se hacen por lotes con una pausa entre ellos y con
+ * un máximo por ejecución, para no saturar el disco; lo que quede se borra en la siguiente ejecución.
+ */
+@Service
+public class UploadCleanupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UploadCleanupService.class);
+
+    // Archivo guardado por contenido o derivado de uno (variante, copia .gz): el grupo 1 es el hash
+    private static final Pattern CONTENT_ADDRESSED = Pattern.compile("([0-9a-f]{64})(?:-[a-z]+)?(?:\\.[a-z0-9]+){0,2}");
+
+    // Temporales de FileStorageService e ImageVariantService que quedan si el proceso se interrumpe
+    private static final Pattern TEMP_FILE = Pattern.compile("(?:upload|variant|gzip)-.*\\.tmp");
+
+    private static final String GZIP_SUFFIX = ".gz";
+
+    @Value("${UPLOAD_PATH}")
+    private String uploadPath;
+
+    // Antigüedad mínima de un archivo o de su última subida para poder borrarlo
+    @Value("${uploads.cleanup.grace-period-hours:24}")
+    private long gracePeriodHours;
+
+    @Value("${uploads.cleanup.max-deletes-per-run:5000}")
+    private int maxDeletesPerRun;
+
+    @Value("${uploads.cleanup.batch-size:100}")
+    private int batchSize;
+
+    // Pausa entre lotes de borrados
+    @Value("${uploads.cleanup.batch-pause-ms:200}")
+    private long batchPauseMs;
+
+    // Si la ejecución programada solo informa de lo que borraría
+    @Value("${uploads.cleanup.dry-run:false}")
+    private boolean scheduledDryRun;
+
+    @Autowired
+    private StoredFileRepository storedFileRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private UploadSessionRepository uploadSessionRepository;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * Ejecución programada de la limpieza.
+     */
+    @Scheduled(cron = "${uploads.cleanup.cron:0 30 3 * * *}")
+    public void scheduledCleanup() {
+        cleanup(scheduledDryRun);
+    }
+
+    /**
+     * Corrige las referencias de `stored_files` y borra los archivos huérfanos del directorio de subidas.
+     *
+     * @param dryRun si es true solo se informa de lo que se borraría, sin modificar nada.
+     * @return el resultado de la limpieza.
+     */
+    public synchronized UploadCleanupReportDTO cleanup(boolean dryRun) {
+        long start = System.currentTimeMillis();
+        LocalDateTime cutoff = LocalDateTime.now().minusHours(gracePeriodHours);
+        UploadCleanupReportDTO report = new UploadCleanupReportDTO();
+        report.setDryRun(dryRun);
+
+        Map<String, Long> references = referenceCounts();
+        Set<String> liveHashes = reconcileStoredFiles(references, cutoff, report);
+        sweepDirectory(keptFileNames(references.keySet()), liveHashes,
+                cutoff.atZone(ZoneId.systemDefault()).toInstant(), report);
+
+        report.setDurationMs(System.currentTimeMillis() - start);
+        logger.info("Limpieza de archivos subidos finalizada{}: {} archivos revisados, {} borrados ({} bytes), " +
+                        "{} filas borradas, {} referencias corregidas{}.",
+                dryRun ? " (simulación)" : "", report.getScannedFiles(), report.getDeletedFiles(),
+                report.getReclaimedBytes(), report.getDeletedRecords(), report.getRepairedReferences(),
+                report.isLimitReached() ? "; se ha alcanzado el máximo de borrados por ejecución" : "");
+        return report;
+    }
+
+    /**
+     * Número de usos de cada archivo subido. Si otras entidades pasan a guardar imágenes,
+     * sus referencias se deben sumar aquí para que la limpieza no borre sus archivos.
+     */
+    private Map<String, Long> referenceCounts() {
+        Map<String, Long> counts = new HashMap<>();
+        for (Object[] row : categoryRepository.countImageReferences()) {
+            counts.merge((String) row[0], ((Number) row[1]).longValue(), Long::sum);
+        }
+        // Cada subida por partes finalizada tiene una referencia hasta que se asigna o caduca
+        for (Object[] row : uploadSessionRepository.countStoredFileReferences()) {
+            counts.merge((String) row[0], ((Number) row[1]).longValue(), Long::sum);
+        }
+        return counts;
+    }
+
+    /**
+     * Usos actuales de un archivo; se suman las mismas referencias que en {@link #referenceCounts}.
+     */
+    private long countReferences(String fileName) {
+        return categoryRepository.countByImage(fileName) + uploadSessionRepository.countByStoredFileName(fileName);
+    }
+
+    /**
+     * Compara el número de referencias de cada fila de `stored_files` con los usos reales y, en las que
+     * no coinciden y no se han vuelto a subir durante el periodo de gracia, lo corrige o borra la fila
+     * si ya no la usa nadie. Sus archivos los borra después el recorrido del directorio.
+     *
+     * @return los hashes de las filas que se conservan.
+     */
+    private Set<String> reconcileStoredFiles(Map<String, Long> references, LocalDateTime cutoff,
+                                             UploadCleanupReportDTO report) {
+        Set<String> liveHashes = new HashSet<>();
+        for (StoredFile stored : storedFileRepository.findAll()) {
+            long used = references.getOrDefault(stored.getFileName(), 0L);
+            boolean keep = used == stored.getRefCount() || !stored.getLastUsedAt().isBefore(cutoff)
+                    || Boolean.FALSE.equals(transactionTemplate.execute(status ->
+                            reconcile(stored.getFileName(), cutoff, report)));
+            if (keep) {
+                liveHashes.add(stored.getHash());
+            }
+        }
+        return liveHashes;
+    }
+
+    /**
+     * Vuelve a comprobar una fila con su fila bloqueada (puede haber cambiado desde la consulta inicial)
+     * y corrige su número de referencias o la borra.
+     *
+     * @return true si la fila ya no existe o se ha borrado.
+     */
+    private boolean reconcile(String fileName, LocalDateTime cutoff, UploadCleanupReportDTO report) {
+        StoredFile stored = storedFileRepository.findByFileName(fileName).orElse(null);
+        if (stored == null) {
+            return true;
+        }
+        long used = countReferences(fileName);
+        if (used == stored.getRefCount() || !stored.getLastUsedAt().isBefore(cutoff)) {
+            return false;
+        }
+
+        if (used > 0) {
+            logger.warn("El archivo {} tiene {} referencias y se usa {} veces{}.",
+                    fileName, stored.getRefCount(), used, report.isDryRun() ? "" : "; se corrige");
+            if (!report.isDryRun()) {
+                stored.setRefCount((int) used);
+            }
+            report.setRepairedReferences(report.getRepairedReferences() + 1);
+            return false;
+        }
+
+        logger.info("El archivo {} tiene {} referencias y no lo usa ninguna categoría ni subida{}.",
+                fileName, stored.getRefCount(), report.isDryRun() ? "" : "; se borra su fila");
+        if (!report.isDryRun()) {
+            storedFileRepository.delete(stored);
+        }
+        report.setDeletedRecords(report.getDeletedRecords() + 1);
+        return true;
+    }
+
+    /**
+     * Recorre el directorio de subidas y borra los archivos huérfanos y los temporales abandonados
+     * con una antigüedad mayor que el periodo de gracia.
+     */
+    private void sweepDirectory(Set<String> kept, Set<String> liveHashes, Instant cutoff, UploadCleanupReportDTO report) {
+        Path root = Paths.get(uploadPath);
+        if (Files.notExists(root)) {
+            return;
+        }
+
+        Path sessions = root.resolve(UploadPaths.SESSIONS_DIRECTORY);
+        try (Stream<Path> files = Files.walk(root)) {
+            // Las subidas por partes en curso las gestiona UploadSessionService
+            Iterator<Path> iterator = files.filter(path -> !path.startsWith(sessions)).iterator();
+            while (iterator.hasNext()) {
+                Path file = iterator.next();
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                if (!attributes.isRegularFile()) {
+                    continue;
+                }
+                report.setScannedFiles(report.getScannedFiles() + 1);
+
+                String fileName = file.getFileName().toString();
+                Matcher matcher = CONTENT_ADDRESSED.matcher(fileName);
+                String hash = matcher.matches() ? matcher.group(1) : null;
+                boolean orphan = TEMP_FILE.matcher(fileName).matches()
+                        || (hash != null ? !liveHashes.contains(hash) && !kept.contains(fileName)
+                                         : !kept.contains(fileName) && !fileName.startsWith("."));
+                if (!orphan || !attributes.lastModifiedTime().toInstant().isBefore(cutoff)) {
+                    continue;
+                }
+
+                if (report.getDeletedFiles() >= maxDeletesPerRun) {
+                    report.setLimitReached(true);
+                    break;
+                }
+                if (delete(file, hash, report.isDryRun())) {
+                    report.setDeletedFiles(report.getDeletedFiles() + 1);
+                    report.setReclaimedBytes(report.getReclaimedBytes() + attributes.size());
+                    throttle(report);
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            logger.error("Error al recorrer el directorio de subidas: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Borra un archivo huérfano. Los archivos guardados por contenido se borran con el hash bloqueado,
+     * para que una subida simultánea del mismo contenido no lo dé por existente mientras se borra.
+     *
+     * @return true si el archivo se ha borrado (o se borraría en una simulación).
+     */
+    private boolean delete(Path file, String hash, boolean dryRun) throws IOException {
+        if (dryRun) {
+            return true;
+        }
+        if (hash == null) {
+            return Files.deleteIfExists(file);
+        }
+        return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            if (storedFileRepository.findByHash(hash).isPresent()) {
+                return false; // El contenido se ha vuelto a subir
+            }
+            try {
+                return Files.deleteIfExists(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }));
+    }
+
+    /**
+     * Hace una pausa después de cada lote de borrados.
+     */
+    private void throttle(UploadCleanupReportDTO report) {
+        if (report.isDryRun() || report.getDeletedFiles() % batchSize != 0 || batchPauseMs <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(batchPauseMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Nombres de los archivos en uso y de sus derivados (copia .gz y variantes).
+     */
+    private static Set<String> keptFileNames(Set<String> referenced) {
+        Set<String> kept = new HashSet<>();
+        for (String fileName : referenced) {
+            kept.add(fileName);
+            kept.add(fileName + GZIP_SUFFIX);
+            ImageVariantService.VARIANTS.keySet()
+                    .forEach(variant -> kept.add(ImageVariantService.variantFileName(fileName, variant)));
+        }
+        return kept;
+    }
+}
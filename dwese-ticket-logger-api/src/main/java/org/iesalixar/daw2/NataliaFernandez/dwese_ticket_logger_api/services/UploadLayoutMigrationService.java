@@ -0,0 +1,109 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.services;
+
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.utils.UploadPaths;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Servicio que mueve los archivos subidos que están directamente en `UPLOAD_PATH` a su subdirectorio
+ * del reparto (ver `UploadPaths`).
+ *
+ * Se ejecuta en segundo plano poco después de arrancar y periódicamente, con la aplicación en marcha:
+ * cada archivo se mueve con un renombrado atómico y, mientras tanto, las lecturas y los borrados lo buscan
+ * en las dos ubicaciones. Cuando ya no quedan archivos por migrar, cada ejecución solo lista el directorio.
+ */
+@Service
+public class UploadLayoutMigrationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UploadLayoutMigrationService.class);
+
+    @Value("${UPLOAD_PATH}")
+    private String uploadPath;
+
+    // Archivos que se mueven seguidos antes de cada pausa
+    @Value("${uploads.sharding.migration-batch-size:500}")
+    private int batchSize;
+
+    @Value("${uploads.sharding.migration-batch-pause-ms:100}")
+    private long batchPauseMs;
+
+    /**
+     * Mueve al reparto los archivos que quedan en la raíz del directorio de subidas. Los temporales
+     * se dejan donde están: son de subidas en curso o los borra la limpieza de archivos huérfanos.
+     *
+     * @return el número de archivos movidos.
+     */
+    @Scheduled(initialDelayString = "${uploads.sharding.migration-initial-delay-ms:60000}",
+            fixedDelayString = "${uploads.sharding.migration-interval-ms:3600000}")
+    public synchronized long migrateFlatFiles() {
+        Path root = Paths.get(uploadPath);
+        if (Files.notExists(root)) {
+            return 0;
+        }
+
+        long moved = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(root,
+                path -> Files.isRegularFile(path) && isMigratable(path.getFileName().toString()))) {
+            for (Path file : files) {
+                if (move(root, file)) {
+                    moved++;
+                    if (moved % batchSize == 0) {
+                        logger.info("Migración del directorio de subidas: {} archivos movidos.", moved);
+                        pause();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Error al migrar el directorio de subidas: {}", e.getMessage());
+        }
+
+        if (moved > 0) {
+            logger.info("Migración del directorio de subidas finalizada: {} archivos movidos a subdirectorios.", moved);
+        }
+        return moved;
+    }
+
+    /**
+     * Mueve un archivo a su subdirectorio. Si ya existe allí uno con el mismo nombre se sustituye:
+     * los nombres por contenido identifican los bytes y los antiguos son aleatorios, así que es el mismo archivo.
+     *
+     * @return true si se ha movido; false si ya no existía (se ha borrado mientras tanto).
+     */
+    private boolean move(Path root, Path file) {
+        String fileName = file.getFileName().toString();
+        Path target = UploadPaths.shardedPath(root, fileName);
+        try {
+            Files.createDirectories(target.getParent());
+            Files.move(file, target, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        } catch (IOException e) {
+            logger.warn("No se ha podido mover el archivo {} a {}: {}", fileName, target, e.getMessage());
+            return false;
+        }
+    }
+
+    private static boolean isMigratable(String fileName) {
+        return !fileName.startsWith(".") && !fileName.endsWith(".tmp");
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(batchPauseMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,368 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.services;
+
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.UploadSessionCreateDTO;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.UploadSessionDTO;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities.UploadSession;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.repositories.UploadSessionRepository;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.utils.UploadPaths;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.AuthenticationCredentialsNotFoundException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+/**
+ * Servicio de subidas por partes que se pueden reanudar, para imágenes grandes o conexiones inestables.
+ *
+ * 1. El cliente crea una sesión con el nombre, el tamaño y el hash SHA-256 del archivo.
+ * 2. Envía el contenido en bloques, cada uno con la posición en la que empieza. Cada bloque se copia
+ *    del cuerpo de la petición al final de `UPLOAD_PATH/.sessions/<id>.part` sin cargarlo en memoria.
+ *    Si se corta la conexión, se conserva lo recibido y el cliente consulta la sesión para continuar.
+ * 3. Al finalizar se comprueban el tamaño y el hash y el archivo se guarda con `FileStorageService`.
+ *    El ID de la sesión se puede usar después como imagen de una categoría; la sesión se borra en la
+ *    transacción que guarda la categoría, así que si no se guarda se puede volver a intentar.
+ *
+ * Las sesiones caducan pasado un tiempo desde su creación y se borran con su archivo temporal.
+ */
+@Service
+public class UploadSessionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UploadSessionService.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final String PART_SUFFIX = ".part";
+
+    @Value("${UPLOAD_PATH}")
+    private String uploadPath;
+
+    @Value("${uploads.sessions.max-file-size-bytes:104857600}")
+    private long maxFileSize;
+
+    @Value("${uploads.sessions.max-chunk-size-bytes:8388608}")
+    private long maxChunkSize;
+
+    @Value("${uploads.sessions.ttl-hours:24}")
+    private long ttlHours;
+
+    @Autowired
+    private UploadSessionRepository uploadSessionRepository;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    /**
+     * Crea una sesión de subida vacía para el usuario actual.
+     *
+     * @param createDTO nombre, tamaño y hash del archivo.
+     * @return el estado de la sesión.
+     */
+    public UploadSessionDTO createSession(UploadSessionCreateDTO createDTO) {
+        if (createDTO.getSize() > maxFileSize) {
+            throw new IllegalArgumentException("El archivo no puede tener más de " + maxFileSize + " bytes.");
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        UploadSession session = new UploadSession(UUID.randomUUID().toString(), currentUsername(),
+                createDTO.getFileName(), createDTO.getSize(), createDTO.getSha256().toLowerCase(Locale.ROOT),
+                null, now, now.plusHours(ttlHours));
+        try {
+            Files.createDirectories(sessionsDirectory());
+            Files.createFile(partFile(session.getId()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        uploadSessionRepository.save(session);
+
+        logger.info("Subida por partes {} iniciada: {} ({} bytes).", session.getId(), session.getFileName(), session.getSize());
+        return toDTO(session);
+    }
+
+    /**
+     * Obtiene el estado de una sesión del usuario actual, con los bytes recibidos hasta ahora.
+     *
+     * @param id ID de la sesión.
+     * @return el estado de la sesión.
+     * @throws NoSuchElementException si no existe, es de otro usuario o ha caducado.
+     */
+    public UploadSessionDTO getSession(String id) {
+        return toDTO(findSession(id));
+    }
+
+    /**
+     * Añade un bloque al archivo de la sesión. El bloque se lee del flujo a medida que llega y se escribe
+     * directamente en el archivo temporal. Si el flujo se corta, lo recibido hasta entonces se conserva.
+     *
+     * @param id     ID de la sesión.
+     * @param offset posición del primer byte del bloque; debe coincidir con los bytes ya recibidos.
+     * @param body   contenido del bloque.
+     * @return el estado de la sesión tras el bloque.
+     * @throws IllegalStateException si la posición no coincide, la sesión ya está finalizada o
+     *                               se está recibiendo otro bloque de la misma sesión.
+     * @throws IllegalArgumentException si el bloque es mayor que el permitido o que lo que queda del archivo.
+     */
+    public UploadSessionDTO appendChunk(String id, long offset, InputStream body) throws IOException {
+        UploadSession session = findSession(id);
+        if (session.getStoredFileName() != null) {
+            throw new IllegalStateException("La subida ya está finalizada.");
+        }
+
+        try (FileChannel out = FileChannel.open(partFile(id), StandardOpenOption.WRITE);
+             FileLock lock = lockOrFail(out)) {
+            long received = out.size();
+            if (offset != received) {
+                throw new IllegalStateException("El bloque debe empezar en la posición " + received + ".");
+            }
+
+            long limit = Math.min(maxChunkSize, session.getSize() - received);
+            long written = copy(body, out, received, limit);
+            if (written > limit) {
+                out.truncate(received);
+                throw new IllegalArgumentException("El bloque supera el tamaño máximo permitido o el tamaño del archivo.");
+            }
+            logger.debug("Subida por partes {}: {} bytes recibidos de {}.", id, received + written, session.getSize());
+        }
+        return toDTO(session);
+    }
+
+    /**
+     * Finaliza la subida: comprueba que se ha recibido el archivo completo y que su hash coincide con el
+     * declarado, y lo guarda con `FileStorageService`. Si la sesión ya estaba finalizada, devuelve su estado.
+     *
+     * @param id ID de la sesión.
+     * @return el estado de la sesión, con el nombre del archivo guardado.
+     * @throws IllegalArgumentException si falta contenido o el hash no coincide (en ese caso la sesión se descarta).
+     */
+    public UploadSessionDTO completeSession(String id) throws IOException {
+        UploadSession session = findSession(id);
+        if (session.getStoredFileName() != null) {
+            return toDTO(session);
+        }
+
+        Path part = partFile(id);
+        try (FileChannel channel = FileChannel.open(part, StandardOpenOption.READ, StandardOpenOption.WRITE);
+             FileLock lock = lockOrFail(channel)) {
+            long received = channel.size();
+            if (received != session.getSize()) {
+                throw new IllegalArgumentException("Faltan bytes por subir: recibidos " + received + " de " + session.getSize() + ".");
+            }
+
+            String hash = sha256(channel);
+            if (!hash.equals(session.getSha256())) {
+                delete(session);
+                logger.warn("Subida por partes {} descartada: el hash no coincide con el declarado.", id);
+                throw new IllegalArgumentException("El hash SHA-256 del archivo recibido no coincide con el declarado.");
+            }
+
+            session.setStoredFileName(fileStorageService.storeFile(part, hash, received, session.getFileName()));
+        }
+        Files.deleteIfExists(part); // Si el contenido ya estaba guardado, el temporal no se ha movido
+        uploadSessionRepository.save(session);
+
+        logger.info("Subida por partes {} finalizada como {}.", id, session.getStoredFileName());
+        return toDTO(session);
+    }
+
+    /**
+     * Obtiene el archivo de una subida finalizada del usuario actual, sin borrar la sesión.
+     *
+     * @param id ID de la sesión.
+     * @return el nombre del archivo guardado.
+     * @throws IllegalArgumentException si la sesión no existe, es de otro usuario o no está finalizada.
+     */
+    public String getStoredFileName(String id) {
+        return uploadSessionRepository.findByIdAndUsername(id, currentUsername())
+                .map(UploadSession::getStoredFileName)
+                .orElseThrow(() -> new IllegalArgumentException("La subida de la imagen no existe o no está finalizada."));
+    }
+
+    /**
+     * Asigna el archivo de una subida finalizada: borra la sesión y la referencia al archivo que se sumó al
+     * finalizar pasa a ser de quien lo asigna. Se llama en la transacción que guarda la entidad que usa el
+     * archivo; si esta no se guarda, la sesión sigue existiendo y el cliente puede volver a intentarlo.
+     *
+     * @param id ID de la sesión.
+     * @return el nombre del archivo guardado.
+     * @throws IllegalArgumentException si la sesión no existe, es de otro usuario, no está finalizada o ya se ha asignado.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public String claimStoredFile(String id) {
+        String storedFileName = getStoredFileName(id);
+        if (uploadSessionRepository.deleteFinished(id) == 0) {
+            throw new IllegalArgumentException("La subida de la imagen ya se ha asignado.");
+        }
+        return storedFileName;
+    }
+
+    /**
+     * Cancela una subida y borra lo recibido.
+     *
+     * @param id ID de la sesión.
+     */
+    public void cancelSession(String id) {
+        UploadSession session = findSession(id);
+        if (session.getStoredFileName() != null) {
+            fileStorageService.deleteFile(session.getStoredFileName());
+        }
+        delete(session);
+        logger.info("Subida por partes {} cancelada.", id);
+    }
+
+    /**
+     * Borra las sesiones caducadas con sus archivos temporales, y los temporales que se hayan quedado
+     * sin sesión. Las referencias de las subidas finalizadas que no se llegaron a usar las corrige la
+     * limpieza de archivos huérfanos.
+     */
+    @Scheduled(fixedDelayString = "${uploads.sessions.expiry-check-interval-ms:3600000}")
+    public void deleteExpiredSessions() {
+        int expired = 0;
+        for (UploadSession session : uploadSessionRepository.findByExpiresAtBefore(LocalDateTime.now())) {
+            delete(session);
+            expired++;
+        }
+
+        Path directory = sessionsDirectory();
+        if (Files.isDirectory(directory)) {
+            FileTime cutoff = FileTime.from(Instant.now().minusSeconds(ttlHours * 3600));
+            try (DirectoryStream<Path> parts = Files.newDirectoryStream(directory, "*" + PART_SUFFIX)) {
+                for (Path part : parts) {
+                    if (Files.getLastModifiedTime(part).compareTo(cutoff) < 0) {
+                        Files.deleteIfExists(part);
+                        expired++;
+                    }
+                }
+            } catch (IOException e) {
+                logger.error("Error al borrar las subidas por partes caducadas: {}", e.getMessage());
+            }
+        }
+
+        if (expired > 0) {
+            logger.info("Se han borrado {} subidas por partes caducadas.", expired);
+        }
+    }
+
+    private UploadSession findSession(String id) {
+        return uploadSessionRepository.findByIdAndUsername(id, currentUsername())
+                .filter(session -> session.getExpiresAt().isAfter(LocalDateTime.now()))
+                .orElseThrow(() -> new NoSuchElementException("La subida no existe o ha caducado."));
+    }
+
+    private void delete(UploadSession session) {
+        try {
+            Files.deleteIfExists(partFile(session.getId()));
+        } catch (IOException e) {
+            logger.warn("No se ha podido borrar el archivo temporal de la subida {}: {}", session.getId(), e.getMessage());
+        }
+        uploadSessionRepository.delete(session);
+    }
+
+    /**
+     * Copia el flujo al archivo a partir de `position`, por bloques. Deja de copiar en cuanto se supera
+     * `limit`, así que devuelve un valor mayor que `limit` si el flujo era demasiado largo.
+     */
+    private static long copy(InputStream body, FileChannel out, long position, long limit) throws IOException {
+        long written = 0;
+        ReadableByteChannel in = Channels.newChannel(body);
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        while (written <= limit && in.read(buffer) != -1) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                written += out.write(buffer, position + written);
+            }
+            buffer.clear();
+        }
+        return written;
+    }
+
+    private static String sha256(FileChannel channel) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        long position = 0;
+        int read;
+        while ((read = channel.read(buffer, position)) != -1) {
+            buffer.flip();
+            digest.update(buffer);
+            buffer.clear();
+            position += read;
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Bloquea el archivo temporal para que dos peticiones no escriban a la vez en la misma sesión
+     * (también entre instancias que compartan el directorio de subidas).
+     */
+    private static FileLock lockOrFail(FileChannel channel) throws IOException {
+        FileLock lock = channel.tryLock();
+        if (lock == null) {
+            throw new IllegalStateException("Se está recibiendo otro bloque de esta subida.");
+        }
+        return lock;
+    }
+
+    private UploadSessionDTO toDTO(UploadSession session) {
+        long offset;
+        if (session.getStoredFileName() != null) {
+            offset = session.getSize();
+        } else {
+            try {
+                offset = Files.size(partFile(session.getId()));
+            } catch (IOException e) {
+                offset = 0;
+            }
+        }
+        String url = session.getStoredFileName() != null ? ImageVariantService.UPLOADS_URL + session.getStoredFileName() : null;
+        return new UploadSessionDTO(session.getId(), session.getFileName(), session.getSize(), offset,
+                session.getStoredFileName() != null, session.getStoredFileName(), url, session.getExpiresAt());
+    }
+
+    private Path sessionsDirectory() {
+        return Paths.get(uploadPath, UploadPaths.SESSIONS_DIRECTORY);
+    }
+
+    private Path partFile(String id) {
+        return sessionsDirectory().resolve(id + PART_SUFFIX);
+    }
+
+    private static String currentUsername() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null) {
+            throw new AuthenticationCredentialsNotFoundException("No hay ningún usuario autenticado.");
+        }
+        return authentication.getName();
+    }
+}
@@ -0,0 +1,151 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.utils;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.CursorPageDTO;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Utilidades para los listados del catálogo paginados por cursor (keyset).
+ *
+ * En lugar de saltar filas con OFFSET, cada página continúa a partir de los valores de ordenación
+ * del último elemento de la anterior, así que el coste de una página no depende de lo lejos que
+ * esté del principio. Para que la posición sea única, la ordenación siempre termina por el ID.
+ */
+public final class CursorPagination {
+
+    // Tamaño máximo de página permitido en los listados del catálogo
+    public static final int MAX_PAGE_SIZE = 100;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private CursorPagination() {
+    }
+
+    /**
+     * Limita el tamaño de página solicitado al rango permitido.
+     */
+    public static int pageSize(int size) {
+        return Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+    }
+
+    /**
+     * Convierte el parámetro `sort` ("propiedad" o "propiedad,desc") en una ordenación que termina por el ID.
+     *
+     * @param sort            el parámetro recibido, o null para la ordenación por defecto.
+     * @param allowed         las propiedades por las que se permite ordenar (no pueden ser nulas en la base de datos).
+     * @param defaultProperty la propiedad por defecto.
+     * @return la ordenación.
+     * @throws IllegalArgumentException si la propiedad o la dirección no son válidas.
+     */
+    public static Sort parseSort(String sort, Set<String> allowed, String defaultProperty) {
+        String property = defaultProperty;
+        Sort.Direction direction = Sort.Direction.ASC;
+        if (sort != null && !sort.isBlank()) {
+            String[] parts = sort.split(",");
+            property = parts[0].trim();
+            if (parts.length > 2) {
+                throw new IllegalArgumentException("La ordenación no es válida.");
+            }
+            if (parts.length == 2) {
+                direction = Sort.Direction.fromOptionalString(parts[1].trim())
+                        .orElseThrow(() -> new IllegalArgumentException("La dirección de ordenación no es válida."));
+            }
+        }
+        if (!allowed.contains(property)) {
+            throw new IllegalArgumentException("No se puede ordenar por '" + property + "'.");
+        }
+        Sort order = Sort.by(direction, property);
+        return "id".equals(property) ? order : order.and(Sort.by(direction, "id"));
+    }
+
+    /**
+     * Convierte el cursor recibido en la posición desde la que continuar el listado.
+     *
+     * @param cursor el cursor devuelto en la página anterior, o null para la primera página.
+     * @param sort   la ordenación del listado; el cursor tiene que haberse generado con la misma.
+     * @return la posición de inicio.
+     * @throws IllegalArgumentException si el cursor no es válido para la ordenación.
+     */
+    public static ScrollPosition decodeCursor(String cursor, Sort sort) {
+        if (cursor == null || cursor.isBlank()) {
+            return ScrollPosition.keyset();
+        }
+        Map<String, Object> keys;
+        try {
+            byte[] json = Base64.getUrlDecoder().decode(cursor);
+            keys = MAPPER.readValue(new String(json, StandardCharsets.UTF_8), new TypeReference<LinkedHashMap<String, Object>>() {});
+        } catch (Exception e) {
+            throw new IllegalArgumentException("El cursor no es válido.");
+        }
+        Set<String> properties = sort.stream().map(Sort.Order::getProperty).collect(Collectors.toSet());
+        if (!keys.keySet().equals(properties)) {
+            throw new IllegalArgumentException("El cursor no corresponde a la ordenación solicitada.");
+        }
+        // Los números del JSON pueden llegar como Integer; los IDs de las entidades son Long
+        keys.replaceAll((property, value) -> value instanceof Number number ? number.longValue() : value);
+        return ScrollPosition.forward(keys);
+    }
+
+    /**
+     * Convierte una ventana de resultados en una página con el cursor de la siguiente.
+     *
+     * @param window la ventana devuelta por el repositorio.
+     * @param mapper la conversión de cada entidad a su DTO.
+     * @return la página.
+     */
+    public static <E, D> CursorPageDTO<D> toPage(Window<E> window, Function<E, D> mapper) {
+        List<D> content = window.getContent().stream().map(mapper).toList();
+        String nextCursor = null;
+        if (window.hasNext() && !window.isEmpty()
+                && window.positionAt(window.size() - 1) instanceof KeysetScrollPosition position) {
+            try {
+                String json = MAPPER.writeValueAsString(position.getKeys());
+                nextCursor = Base64.getUrlEncoder().withoutPadding().encodeToString(json.getBytes(StandardCharsets.UTF_8));
+            } catch (Exception e) {
+                throw new IllegalStateException("No se ha podido generar el cursor.", e);
+            }
+        }
+        return new CursorPageDTO<>(content, content.size(), nextCursor);
+    }
+
+    /**
+     * Filtro "contiene" sin distinguir mayúsculas sobre un atributo de texto.
+     *
+     * @return el filtro, o null (sin filtrar) si el texto está vacío.
+     */
+    public static <T> Specification<T> containsIgnoreCase(String attribute, String text) {
+        if (text == null || text.isBlank()) {
+            return null;
+        }
+        String pattern = "%" + text.trim().toLowerCase(Locale.ROOT)
+                .replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+        return (root, query, cb) -> cb.like(cb.lower(root.get(attribute)), pattern, '\\');
+    }
+
+    /**
+     * Filtro por el ID de una asociación (por ejemplo, las provincias de una región).
+     *
+     * @return el filtro, o null (sin filtrar) si el ID es null.
+     */
+    public static <T> Specification<T> hasAssociation(String association, Long id) {
+        if (id == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.equal(root.get(association).get("id"), id);
+    }
+}
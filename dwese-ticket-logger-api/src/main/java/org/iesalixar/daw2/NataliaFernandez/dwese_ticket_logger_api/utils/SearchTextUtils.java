@@ -0,0 +1,36 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.utils;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Utilidades para normalizar textos de búsqueda.
+ *
+ * Un texto normalizado está en minúsculas, sin acentos ni diéresis ("jamón" → "jamon", "pingüino" →
+ * "pinguino") y con los signos de puntuación sustituidos por espacios, de modo que la búsqueda no
+ * depende de cómo se escribió el nombre. La "ñ" también se convierte en "n".
+ */
+public final class SearchTextUtils {
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_ALPHANUMERIC = Pattern.compile("[^a-z0-9]+");
+
+    private SearchTextUtils() {
+    }
+
+    /**
+     * Normaliza un texto para guardarlo en un campo de búsqueda o para buscar con él.
+     *
+     * @param text el texto original.
+     * @return el texto normalizado, o null si el texto es null.
+     */
+    public static String fold(String text) {
+        if (text == null) {
+            return null;
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        String withoutAccents = DIACRITICS.matcher(decomposed).replaceAll("");
+        return NON_ALPHANUMERIC.matcher(withoutAccents.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+}
@@ -0,0 +1,75 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.utils;
+
+/**
+ * Contadores de acceso a la base de datos de la petición HTTP que se está atendiendo.
+ *
+ * Cada petición abre sus contadores en el hilo que la atiende (ver `SqlMetricsFilter`) y
+ * `SqlStatementListener` los va incrementando desde las sesiones de Hibernate de ese mismo hilo.
+ * Fuera de una petición (colas, tareas programadas) no hay contadores y no se registra nada.
+ */
+public final class SqlRequestStats {
+
+    private static final ThreadLocal<SqlRequestStats> CURRENT = new ThreadLocal<>();
+
+    private long statements;
+    private long jdbcNanos;
+    private long connectionWaitNanos;
+
+    private SqlRequestStats() {
+    }
+
+    /**
+     * Abre unos contadores nuevos para la petición del hilo actual.
+     *
+     * @return los contadores abiertos.
+     */
+    public static SqlRequestStats start() {
+        SqlRequestStats stats = new SqlRequestStats();
+        CURRENT.set(stats);
+        return stats;
+    }
+
+    /**
+     * Obtiene los contadores de la petición del hilo actual.
+     *
+     * @return los contadores, o null si el hilo no está atendiendo una petición.
+     */
+    public static SqlRequestStats current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Cierra los contadores del hilo actual.
+     */
+    public static void clear() {
+        CURRENT.remove();
+    }
+
+    void addStatement(long nanos) {
+        statements++;
+        jdbcNanos += nanos;
+    }
+
+    void addJdbcTime(long nanos) {
+        jdbcNanos += nanos;
+    }
+
+    void addConnectionWait(long nanos) {
+        connectionWaitNanos += nanos;
+    }
+
+    // Número de sentencias (o lotes JDBC) enviadas a la base de datos
+    public long getStatements() {
+        return statements;
+    }
+
+    // Tiempo total preparando y ejecutando sentencias, en nanosegundos
+    public long getJdbcNanos() {
+        return jdbcNanos;
+    }
+
+    // Tiempo total esperando una conexión del pool, en nanosegundos
+    public long getConnectionWaitNanos() {
+        return connectionWaitNanos;
+    }
+}
@@ -0,0 +1,71 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.utils;
+
+import org.hibernate.SessionEventListener;
+
+/**
+ * Listener de sesión de Hibernate que mide las sentencias JDBC y la espera de conexiones
+ * y las suma a los contadores de la petición actual ({@link SqlRequestStats}).
+ *
+ * Hibernate crea una instancia por sesión (propiedad `hibernate.session.events.auto`), y una sesión
+ * solo se usa desde un hilo, así que los instantes de inicio se pueden guardar en campos.
+ */
+public class SqlStatementListener implements SessionEventListener {
+
+    private long connectionStart;
+    private long prepareStart;
+    private long executeStart;
+    private long batchStart;
+
+    @Override
+    public void jdbcConnectionAcquisitionStart() {
+        connectionStart = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcConnectionAcquisitionEnd() {
+        SqlRequestStats stats = SqlRequestStats.current();
+        if (stats != null) {
+            stats.addConnectionWait(System.nanoTime() - connectionStart);
+        }
+    }
+
+    @Override
+    public void jdbcPrepareStatementStart() {
+        prepareStart = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcPrepareStatementEnd() {
+        SqlRequestStats stats = SqlRequestStats.current();
+        if (stats != null) {
+            stats.addJdbcTime(System.nanoTime() - prepareStart);
+        }
+    }
+
+    @Override
+    public void jdbcExecuteStatementStart() {
+        executeStart = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        SqlRequestStats stats = SqlRequestStats.current();
+        if (stats != null) {
+            stats.addStatement(System.nanoTime() - executeStart);
+        }
+    }
+
+    // Un lote JDBC se envía en un único viaje a la base de datos y cuenta como una sentencia
+    @Override
+    public void jdbcExecuteBatchStart() {
+        batchStart = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteBatchEnd() {
+        SqlRequestStats stats = SqlRequestStats.current();
+        if (stats != null) {
+            stats.addStatement(System.nanoTime() - batchStart);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.utils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+
+/**
+ * Ubicación de los archivos subidos dentro del directorio `UPLOAD_PATH`.
+ *
+ * Los archivos se reparten en dos niveles de 256 directorios según los cuatro primeros caracteres
+ * hexadecimales de un hash (`ab/cd/<nombre>`), de modo que cada directorio tiene unos pocos archivos
+ * aunque haya cientos de miles. En los archivos guardados por contenido (y sus variantes y copias .gz)
+ * es su propio hash, así que quedan juntos; en los antiguos con nombre aleatorio, el SHA-256 del nombre.
+ *
+ * Las categorías y las URLs usan solo el nombre del archivo. Mientras se migran los archivos que estaban
+ * directamente en `UPLOAD_PATH` (ver `UploadLayoutMigrationService`), se buscan en las dos ubicaciones.
+ */
+public final class UploadPaths {
+
+    private static final Pattern CONTENT_ADDRESSED = Pattern.compile("[0-9a-f]{64}.*");
+
+    // Subdirectorio de las subidas por partes en curso. Empieza por punto: no se sirve ni se migra.
+    public static final String SESSIONS_DIRECTORY = ".sessions";
+
+    private UploadPaths() {
+    }
+
+    /**
+     * Comprueba si un texto es un nombre de archivo sin directorios, que se puede ubicar en el reparto.
+     *
+     * @param fileName el texto.
+     * @return true si es un nombre de archivo válido.
+     */
+    public static boolean isFileName(String fileName) {
+        return fileName != null && !fileName.isEmpty() && !fileName.equals(".") && !fileName.equals("..")
+                && fileName.indexOf('/') < 0 && fileName.indexOf('\\') < 0;
+    }
+
+    /**
+     * Directorio del reparto que corresponde a un archivo, relativo a `UPLOAD_PATH` (por ejemplo "ab/cd").
+     *
+     * @param fileName el nombre del archivo.
+     * @return el directorio relativo.
+     */
+    public static String shardDirectory(String fileName) {
+        String hash = CONTENT_ADDRESSED.matcher(fileName).matches() ? fileName : sha256(fileName);
+        return hash.substring(0, 2) + "/" + hash.substring(2, 4);
+    }
+
+    /**
+     * Ruta de un archivo en el reparto, donde se escriben los archivos nuevos.
+     *
+     * @param root     el directorio de subidas.
+     * @param fileName el nombre del archivo.
+     * @return la ruta del archivo.
+     */
+    public static Path shardedPath(Path root, String fileName) {
+        return root.resolve(shardDirectory(fileName)).resolve(fileName);
+    }
+
+    /**
+     * Ruta en la que está un archivo: en el reparto o, si todavía no se ha migrado, directamente en
+     * el directorio de subidas. Si no está en ninguna, devuelve la ruta del reparto.
+     *
+     * @param root     el directorio de subidas.
+     * @param fileName el nombre del archivo.
+     * @return la ruta del archivo.
+     */
+    public static Path locate(Path root, String fileName) {
+        Path sharded = shardedPath(root, fileName);
+        if (Files.exists(sharded)) {
+            return sharded;
+        }
+        Path flat = root.resolve(fileName);
+        // Si la migración lo ha movido entre las dos comprobaciones, ya está en el reparto
+        return Files.exists(flat) ? flat : sharded;
+    }
+
+    /**
+     * Borra un archivo de las dos ubicaciones posibles. Se borra primero la antigua: si la migración
+     * lo mueve mientras tanto, se encuentra después en el reparto.
+     *
+     * @param root     el directorio de subidas.
+     * @param fileName el nombre del archivo.
+     * @return los bytes liberados.
+     */
+    public static long delete(Path root, String fileName) throws IOException {
+        return deleteIfExists(root.resolve(fileName)) + deleteIfExists(shardedPath(root, fileName));
+    }
+
+    private static long deleteIfExists(Path path) throws IOException {
+        long size = Files.exists(path) ? Files.size(path) : 0;
+        return Files.deleteIfExists(path) ? size : 0;
+    }
+
+    private static String sha256(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
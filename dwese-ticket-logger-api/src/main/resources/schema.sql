@@ -70,14 +70,143 @@ CREATE TABLE IF NOT EXISTS products (
 );
 
 
--- Crear la tabla 'product_ticket'
-CREATE TABLE IF NOT EXISTS product_ticket (
-   product_id INT NOT NULL,
+-- Crear la tabla 'ticket_lines' (producto, unidades y precio unitario en el momento de la compra)
+CREATE TABLE IF NOT EXISTS ticket_lines (
+   id INT AUTO_INCREMENT PRIMARY KEY,
    ticket_id INT NOT NULL,
-   PRIMARY KEY (product_id, ticket_id),
-   FOREIGN KEY (product_id) REFERENCES products(id),
-   FOREIGN KEY (ticket_id) REFERENCES tickets(id)
+   product_id INT NOT NULL,
+   quantity INT NOT NULL DEFAULT 1,
+   unit_price DECIMAL(10, 2) NOT NULL,
+   UNIQUE KEY uk_ticket_lines_ticket_product (ticket_id, product_id),
+   KEY idx_ticket_lines_product (product_id, ticket_id),
+   FOREIGN KEY (ticket_id) REFERENCES tickets(id) ON DELETE CASCADE,
+   FOREIGN KEY (product_id) REFERENCES products(id)
+);
+
+
+
+-- Crear la tabla 'spending_monthly' (gasto mensual agregado por supermercado, provincia, región y categoría)
+-- Se mantiene de forma incremental al modificar los tickets; dimension_id = 0 agrupa lo que no tiene asignado el elemento.
+CREATE TABLE IF NOT EXISTS spending_monthly (
+   dimension VARCHAR(20) NOT NULL,
+   month_start DATE NOT NULL,
+   dimension_id INT NOT NULL,
+   amount DECIMAL(16, 4) NOT NULL DEFAULT 0,
+   units BIGINT NOT NULL DEFAULT 0,
+   PRIMARY KEY (dimension, month_start, dimension_id),
+   KEY idx_spending_monthly_element (dimension, dimension_id, month_start)
 );
 
 
+-- Elementos a los que se sumó el gasto de cada ticket y línea en 'spending_monthly' (0 si no tenía),
+-- para restarlo de los mismos aunque después cambie la ubicación o el producto. Solo los escribe la analítica;
+-- NULL en los tickets anteriores, que usan los valores actuales hasta que se vuelven a guardar.
+ALTER TABLE tickets ADD COLUMN IF NOT EXISTS rollup_supermarket_id INT NULL;
+ALTER TABLE tickets ADD COLUMN IF NOT EXISTS rollup_province_id INT NULL;
+ALTER TABLE tickets ADD COLUMN IF NOT EXISTS rollup_region_id INT NULL;
+ALTER TABLE ticket_lines ADD COLUMN IF NOT EXISTS rollup_category_id INT NULL;
+
+
+-- Índices para el listado de tickets paginado por cursor (fecha, id), con y sin filtro de ubicación
+CREATE INDEX IF NOT EXISTS idx_tickets_date_id ON tickets (date, id);
+CREATE INDEX IF NOT EXISTS idx_tickets_location_date_id ON tickets (location_id, date, id);
+
+
+-- Subtotal y total guardados en cada ticket (se mantienen al modificar sus productos o el descuento)
+ALTER TABLE tickets ADD COLUMN IF NOT EXISTS subtotal DECIMAL(10, 2) NOT NULL DEFAULT 0;
+ALTER TABLE tickets ADD COLUMN IF NOT EXISTS total DECIMAL(10, 2) NOT NULL DEFAULT 0;
+
+
+-- Migración de la antigua tabla 'product_ticket' a 'ticket_lines'.
+-- Solo se ejecuta si la tabla existe (bases de datos creadas con el modelo anterior): se copian sus filas
+-- con el precio actual del producto, se recalculan los totales de esos tickets y se elimina la tabla.
+-- En el resto de arranques cada sentencia se sustituye por 'DO 0', que no hace nada.
+SET @legacy_product_ticket = (SELECT COUNT(*) FROM information_schema.tables
+                              WHERE table_schema = DATABASE() AND table_name = 'product_ticket');
+
+SET @sql = IF(@legacy_product_ticket > 0,
+   'INSERT IGNORE INTO ticket_lines (ticket_id, product_id, quantity, unit_price)
+    SELECT pt.ticket_id, pt.product_id, 1, p.price
+    FROM product_ticket pt JOIN products p ON p.id = pt.product_id',
+   'DO 0');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
 
+SET @sql = IF(@legacy_product_ticket > 0,
+   'UPDATE tickets t
+    JOIN (SELECT tl.ticket_id, SUM(tl.quantity * tl.unit_price) AS amount
+          FROM ticket_lines tl JOIN product_ticket pt ON pt.ticket_id = tl.ticket_id AND pt.product_id = tl.product_id
+          GROUP BY tl.ticket_id) x ON x.ticket_id = t.id
+    SET t.subtotal = x.amount, t.total = ROUND(x.amount * (1 - t.discount / 100), 2)',
+   'DO 0');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+SET @sql = IF(@legacy_product_ticket > 0, 'DROP TABLE product_ticket', 'DO 0');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+
+-- Secuencias para los IDs de tickets, productos y líneas de ticket.
+-- Hibernate reserva bloques de 50 IDs (INCREMENT BY debe coincidir con allocationSize), lo que permite
+-- agrupar las inserciones en lotes JDBC. Se ajustan para continuar después del mayor ID existente
+-- (SETVAL no hace nada si la secuencia ya va por delante).
+CREATE SEQUENCE IF NOT EXISTS tickets_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS products_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS ticket_lines_seq START WITH 1 INCREMENT BY 50;
+
+SET @max_id = (SELECT COALESCE(MAX(id), 0) FROM tickets);
+SET @sql = CONCAT('SELECT SETVAL(tickets_seq, ', @max_id, ')');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+SET @max_id = (SELECT COALESCE(MAX(id), 0) FROM products);
+SET @sql = CONCAT('SELECT SETVAL(products_seq, ', @max_id, ')');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+SET @max_id = (SELECT COALESCE(MAX(id), 0) FROM ticket_lines);
+SET @sql = CONCAT('SELECT SETVAL(ticket_lines_seq, ', @max_id, ')');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+
+-- Nombre normalizado de los productos (minúsculas, sin acentos) con índice FULLTEXT para la búsqueda.
+-- La aplicación lo calcula al guardar cada producto y rellena al arrancar los que estén vacíos.
+ALTER TABLE products ADD COLUMN IF NOT EXISTS search_name VARCHAR(255) NULL;
+CREATE FULLTEXT INDEX IF NOT EXISTS ft_products_search_name ON products (search_name);
+CREATE INDEX IF NOT EXISTS idx_products_search_name ON products (search_name);
+
+
+-- Archivos subidos guardados por contenido: el nombre es el hash SHA-256 y varias categorías pueden
+-- compartir el mismo archivo. 'ref_count' es el número de referencias; al llegar a 0 se borra el archivo.
+CREATE TABLE IF NOT EXISTS stored_files (
+   hash CHAR(64) NOT NULL PRIMARY KEY,
+   file_name VARCHAR(100) NOT NULL,
+   size BIGINT NOT NULL,
+   ref_count INT NOT NULL DEFAULT 0,
+   created_at DATETIME NOT NULL,
+   last_used_at DATETIME NOT NULL,
+   UNIQUE KEY uk_stored_files_file_name (file_name)
+);
+
+
+-- Subidas por partes en curso: el contenido recibido está en UPLOAD_PATH/.sessions/<id>.part.
+-- 'stored_file_name' se rellena al finalizar la subida y la fila se borra al asignar el archivo o al caducar.
+CREATE TABLE IF NOT EXISTS upload_sessions (
+   id VARCHAR(36) NOT NULL PRIMARY KEY,
+   username VARCHAR(50) NOT NULL,
+   file_name VARCHAR(255) NOT NULL,
+   size BIGINT NOT NULL,
+   sha256 CHAR(64) NOT NULL,
+   stored_file_name VARCHAR(100),
+   created_at DATETIME NOT NULL,
+   expires_at DATETIME NOT NULL,
+   KEY idx_upload_sessions_expires_at (expires_at)
+);
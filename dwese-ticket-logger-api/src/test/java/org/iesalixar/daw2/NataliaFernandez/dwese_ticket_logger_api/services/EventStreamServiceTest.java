@@ -0,0 +1,186 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.services;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities.StreamEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.ReactiveIndexOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Comprueba la reanudación del flujo de eventos por número de secuencia: el reenvío de los eventos perdidos
+ * sin repeticiones, el evento "reset" cuando ya no están todos y el cursor que se reabre sin saltarse
+ * eventos guardados desordenados.
+ *
+ * MongoDB se sustituye por un mock; los eventos "nuevos" se entregan por el cursor tailable simulado.
+ */
+class EventStreamServiceTest {
+
+    private static final String USER = "user";
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private final ReactiveMongoTemplate mongoTemplate = mock(ReactiveMongoTemplate.class);
+    private final Sinks.Many<StreamEvent> tailCursor = Sinks.many().unicast().onBackpressureBuffer();
+    private final Deque<Flux<StreamEvent>> reopenedCursors = new ArrayDeque<>();
+
+    private EventStreamService eventStreamService;
+
+    @BeforeEach
+    void setUp() {
+        ReactiveIndexOperations indexOperations = mock(ReactiveIndexOperations.class);
+        when(indexOperations.ensureIndex(any(IndexDefinition.class))).thenReturn(Mono.just("seq"));
+        when(mongoTemplate.indexOps(anyString())).thenReturn(indexOperations);
+        when(mongoTemplate.collectionExists(anyString())).thenReturn(Mono.just(true));
+        when(mongoTemplate.findById(any(), eq(Document.class), anyString())).thenReturn(Mono.empty());
+        when(mongoTemplate.tail(any(Query.class), eq(StreamEvent.class))).thenReturn(tailCursor.asFlux())
+                .thenAnswer(invocation -> reopenedCursors.isEmpty() ? Flux.never() : reopenedCursors.poll());
+
+        eventStreamService = new EventStreamService();
+        ReflectionTestUtils.setField(eventStreamService, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(eventStreamService, "replayLimit", 3);
+        ReflectionTestUtils.setField(eventStreamService, "clientBufferSize", 16);
+        ReflectionTestUtils.setField(eventStreamService, "heartbeatIntervalSeconds", 3600L);
+        ReflectionTestUtils.setField(eventStreamService, "maxDurationMinutes", 30L);
+        eventStreamService.startTailing();
+    }
+
+    @AfterEach
+    void tearDown() {
+        eventStreamService.stopTailing();
+    }
+
+    @Test
+    void resumeReplaysMissedEventsThenLiveOnesWithoutRepeats() {
+        when(mongoTemplate.findOne(any(Query.class), eq(StreamEvent.class))).thenReturn(Mono.just(event(5)));
+        // El 12 se reservó antes que el 13 pero se guarda después: no está en la consulta y llega como nuevo
+        when(mongoTemplate.find(any(Query.class), eq(StreamEvent.class))).thenReturn(Flux.defer(() -> {
+            tailCursor.tryEmitNext(event(13));
+            tailCursor.tryEmitNext(event(12));
+            tailCursor.tryEmitNext(event(14));
+            return Flux.just(event(11), event(13));
+        }));
+
+        List<String> ids = eventStreamService.stream(USER, "10")
+                .take(4)
+                .map(ServerSentEvent::id)
+                .collectList()
+                .block(TIMEOUT);
+
+        assertThat(ids).containsExactly("11", "13", "12", "14");
+    }
+
+    @Test
+    void resumeSendsResetWhenTheNextEventIsNoLongerStored() {
+        when(mongoTemplate.findOne(any(Query.class), eq(StreamEvent.class))).thenReturn(Mono.just(event(12)));
+        when(mongoTemplate.find(any(Query.class), eq(StreamEvent.class))).thenReturn(Flux.just(event(12)));
+
+        assertThat(firstEvent("10").event()).isEqualTo(EventStreamService.RESET_EVENT);
+        // Si el siguiente sí está, no hace falta recargar
+        assertThat(firstEvent("11").id()).isEqualTo("12");
+    }
+
+    @Test
+    void resumeSendsResetWhenMoreEventsThanTheReplayLimitWereMissed() {
+        when(mongoTemplate.findOne(any(Query.class), eq(StreamEvent.class))).thenReturn(Mono.just(event(1)));
+        when(mongoTemplate.find(any(Query.class), eq(StreamEvent.class)))
+                .thenReturn(Flux.just(event(11), event(12), event(13), event(14)));
+
+        assertThat(firstEvent("10").event()).isEqualTo(EventStreamService.RESET_EVENT);
+    }
+
+    @Test
+    void resumeEndsTheStreamWhenTooManyLiveEventsArriveDuringTheReplay() {
+        when(mongoTemplate.findOne(any(Query.class), eq(StreamEvent.class))).thenReturn(Mono.just(event(5)));
+        // Llegan más eventos nuevos que `clientBufferSize` (16) mientras se consulta la colección
+        when(mongoTemplate.find(any(Query.class), eq(StreamEvent.class))).thenReturn(Flux.defer(() -> {
+            for (long seq = 12; seq < 32; seq++) {
+                tailCursor.tryEmitNext(event(seq));
+            }
+            return Flux.just(event(11));
+        }));
+
+        List<String> received = new ArrayList<>();
+        assertThatThrownBy(() -> eventStreamService.stream(USER, "10")
+                .doOnNext(event -> received.add(event.id()))
+                .blockLast(TIMEOUT))
+                .matches(Exceptions::isOverflow);
+        // Se envían el reenviado y los nuevos que cabían, sin huecos, y el flujo termina: el cliente se reconecta desde el 27
+        assertThat(received).containsExactlyElementsOf(
+                LongStream.rangeClosed(11, 27).mapToObj(String::valueOf).toList());
+    }
+
+    @Test
+    void legacyObjectIdSendsResetAndMalformedIdIsRejected() {
+        assertThat(firstEvent(new ObjectId().toHexString()).event()).isEqualTo(EventStreamService.RESET_EVENT);
+        assertThatThrownBy(() -> eventStreamService.stream(USER, "abc")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> eventStreamService.stream(USER, "-1")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void reopenedCursorDeliversLateEventsOnceEach() {
+        // Al reabrirse, el cursor vuelve a devolver el 1 y el 3 junto con el 2, que se guardó más tarde
+        reopenedCursors.add(Flux.just(event(1), event(3), event(2)));
+        Mono<List<String>> received = eventStreamService.stream(USER, null)
+                .take(3)
+                .map(ServerSentEvent::id)
+                .collectList()
+                .cache();
+        received.subscribe();
+
+        tailCursor.tryEmitNext(event(1));
+        tailCursor.tryEmitNext(event(3));
+        tailCursor.tryEmitComplete();
+
+        assertThat(received.block(TIMEOUT)).containsExactly("1", "3", "2");
+    }
+
+    @Test
+    void publishStoresTheEventWithTheNextSequenceNumber() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(Document.class), anyString())).thenReturn(Mono.just(new Document("value", 7L)));
+        when(mongoTemplate.insert(any(StreamEvent.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+        eventStreamService.publish(EventStreamService.NOTIFICATION_EVENT, USER, "payload").block(TIMEOUT);
+
+        ArgumentCaptor<StreamEvent> saved = ArgumentCaptor.forClass(StreamEvent.class);
+        verify(mongoTemplate).insert(saved.capture());
+        assertThat(saved.getValue().getSeq()).isEqualTo(7L);
+    }
+
+    private ServerSentEvent<Object> firstEvent(String lastEventId) {
+        return eventStreamService.stream(USER, lastEventId).blockFirst(TIMEOUT);
+    }
+
+    private static StreamEvent event(long seq) {
+        return new StreamEvent(null, seq, EventStreamService.NOTIFICATION_EVENT, USER, "payload " + seq);
+    }
+}
@@ -0,0 +1,127 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.services;
+
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities.StoredFile;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.repositories.StoredFileRepository;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.utils.UploadPaths;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Comprueba el recuento de referencias de los archivos guardados por contenido: el mismo contenido subido
+ * dos veces se guarda una sola vez con dos referencias, y el archivo (con su copia .gz) solo se borra del
+ * disco al liberar la última.
+ *
+ * La tabla `stored_files` se sustituye por un mapa en memoria detrás del mock del repositorio.
+ */
+class FileStorageServiceTest {
+
+    private static final byte[] SVG = "<svg xmlns=\"http://www.w3.org/2000/svg\"/>".getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    Path uploadDir;
+
+    private final Map<String, StoredFile> storedFiles = new HashMap<>();
+
+    private FileStorageService fileStorageService;
+
+    @BeforeEach
+    void setUp() {
+        StoredFileRepository storedFileRepository = mock(StoredFileRepository.class);
+        when(storedFileRepository.acquire(anyString(), anyString(), anyLong())).thenAnswer(invocation -> {
+            String hash = invocation.getArgument(0);
+            StoredFile existing = storedFiles.get(hash);
+            if (existing != null) {
+                existing.setRefCount(existing.getRefCount() + 1);
+            } else {
+                LocalDateTime now = LocalDateTime.now();
+                storedFiles.put(hash, new StoredFile(hash, invocation.getArgument(1), invocation.getArgument(2), 1, now, now));
+            }
+            return 1;
+        });
+        when(storedFileRepository.findById(anyString()))
+                .thenAnswer(invocation -> Optional.ofNullable(storedFiles.get(invocation.<String>getArgument(0))));
+        when(storedFileRepository.findByFileName(anyString())).thenAnswer(invocation -> storedFiles.values().stream()
+                .filter(stored -> stored.getFileName().equals(invocation.getArgument(0)))
+                .findFirst());
+        doAnswer(invocation -> storedFiles.remove(invocation.<StoredFile>getArgument(0).getHash()))
+                .when(storedFileRepository).delete(any(StoredFile.class));
+
+        fileStorageService = new FileStorageService();
+        ReflectionTestUtils.setField(fileStorageService, "uploadPath", uploadDir.toString());
+        ReflectionTestUtils.setField(fileStorageService, "storedFileRepository", storedFileRepository);
+        ReflectionTestUtils.setField(fileStorageService, "imageVariantService", mock(ImageVariantService.class));
+        ReflectionTestUtils.setField(fileStorageService, "transactionTemplate",
+                new TransactionTemplate(mock(PlatformTransactionManager.class)));
+    }
+
+    @Test
+    void sameContentUploadedTwiceIsStoredOnceWithTwoReferences() throws IOException {
+        String first = fileStorageService.saveFile(upload("logo.svg"));
+        String second = fileStorageService.saveFile(upload("otro-nombre.SVG"));
+
+        assertThat(second).isEqualTo(first);
+        assertThat(first).matches("[0-9a-f]{64}\\.svg");
+        assertThat(storedFiles.get(first.substring(0, 64)).getRefCount()).isEqualTo(2);
+        // El original y su copia .gz, sin temporales
+        assertThat(filesOnDisk()).containsExactlyInAnyOrder(first, first + ".gz");
+    }
+
+    @Test
+    void fileIsDeletedFromDiskOnlyWhenTheLastReferenceIsReleased() throws IOException {
+        String fileName = fileStorageService.saveFile(upload("logo.svg"));
+        fileStorageService.saveFile(upload("logo.svg"));
+        Path stored = UploadPaths.shardedPath(uploadDir, fileName);
+
+        fileStorageService.deleteFile(fileName);
+        assertThat(stored).exists();
+        assertThat(storedFiles.get(fileName.substring(0, 64)).getRefCount()).isEqualTo(1);
+
+        fileStorageService.deleteFile(fileName);
+        assertThat(stored).doesNotExist();
+        assertThat(storedFiles).isEmpty();
+        assertThat(filesOnDisk()).isEmpty();
+    }
+
+    @Test
+    void legacyFileWithoutReferencesIsDeletedDirectly() throws IOException {
+        Path legacy = Files.writeString(uploadDir.resolve("1a2b3c-logo.png"), "legacy");
+
+        fileStorageService.deleteFile("1a2b3c-logo.png");
+
+        assertThat(legacy).doesNotExist();
+    }
+
+    private static MockMultipartFile upload(String originalFileName) {
+        return new MockMultipartFile("file", originalFileName, "image/svg+xml", SVG);
+    }
+
+    private List<String> filesOnDisk() throws IOException {
+        try (Stream<Path> files = Files.walk(uploadDir)) {
+            return files.filter(Files::isRegularFile).map(path -> path.getFileName().toString()).toList();
+        }
+    }
+}
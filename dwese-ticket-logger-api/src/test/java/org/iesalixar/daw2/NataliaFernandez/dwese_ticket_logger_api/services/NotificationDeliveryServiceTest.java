@@ -0,0 +1,108 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.services;
+
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.NotificationDTO;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.NotificationDeliveryMetricsDTO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Comprueba el envío de notificaciones con un búfer pequeño: una ráfaga mayor que el búfer descarta las
+ * que no caben, sin perder la cuenta, y las que se aceptan llegan al broker en el orden en que se encolaron.
+ *
+ * El broker se sustituye por un mock que bloquea el primer envío hasta que se ha publicado toda la ráfaga,
+ * de modo que el búfer se llena siempre, sea cual sea la velocidad de la máquina.
+ */
+class NotificationDeliveryServiceTest {
+
+    private static final int BUFFER_SIZE = 8;
+    private static final int BURST = 100;
+
+    private final List<String> sent = Collections.synchronizedList(new ArrayList<>());
+    private final CountDownLatch brokerReleased = new CountDownLatch(1);
+
+    private NotificationDeliveryService deliveryService;
+
+    @BeforeEach
+    void setUp() {
+        SimpMessagingTemplate messagingTemplate = mock(SimpMessagingTemplate.class);
+        doAnswer(invocation -> {
+            brokerReleased.await(10, TimeUnit.SECONDS);
+            sent.add(invocation.<NotificationDTO>getArgument(2).getId());
+            return null;
+        }).when(messagingTemplate).convertAndSendToUser(anyString(), eq(NotificationDeliveryService.USER_DESTINATION), any(Object.class));
+
+        deliveryService = new NotificationDeliveryService();
+        ReflectionTestUtils.setField(deliveryService, "bufferSize", BUFFER_SIZE);
+        ReflectionTestUtils.setField(deliveryService, "batchSize", 4);
+        ReflectionTestUtils.setField(deliveryService, "batchMaxWaitMs", 10L);
+        ReflectionTestUtils.setField(deliveryService, "messagingTemplate", messagingTemplate);
+        deliveryService.startPipeline();
+    }
+
+    @AfterEach
+    void tearDown() {
+        brokerReleased.countDown();
+        deliveryService.stopPipeline();
+    }
+
+    @Test
+    void burstLargerThanTheBufferDropsTheOverflowAndKeepsTheOrder() {
+        List<String> accepted = new ArrayList<>();
+        for (int i = 0; i < BURST; i++) {
+            String id = "n" + i;
+            if (deliveryService.publish("user", notification(id))) {
+                accepted.add(id);
+            }
+        }
+
+        NotificationDeliveryMetricsDTO metrics = deliveryService.getMetrics();
+        assertThat(metrics.getEmitted() + metrics.getDropped()).isEqualTo(BURST);
+        assertThat(metrics.getEmitted()).isEqualTo(accepted.size());
+        assertThat(metrics.getDropped()).isPositive();
+
+        brokerReleased.countDown();
+        await().atMost(Duration.ofSeconds(5))
+                .until(() -> deliveryService.getMetrics().getDelivered() == accepted.size());
+
+        assertThat(sent).containsExactlyElementsOf(accepted);
+        assertThat(deliveryService.getMetrics().getQueued()).isZero();
+    }
+
+    @Test
+    void acceptsNotificationsAgainOnceTheBufferDrains() {
+        for (int i = 0; i < BURST; i++) {
+            deliveryService.publish("user", notification("burst" + i));
+        }
+        brokerReleased.countDown();
+        long emittedInBurst = deliveryService.getMetrics().getEmitted();
+        await().atMost(Duration.ofSeconds(5))
+                .until(() -> deliveryService.getMetrics().getDelivered() == emittedInBurst);
+
+        assertThat(deliveryService.publish("user", notification("after"))).isTrue();
+        await().atMost(Duration.ofSeconds(5)).until(() -> sent.contains("after"));
+        assertThat(sent.get(sent.size() - 1)).isEqualTo("after");
+    }
+
+    private static NotificationDTO notification(String id) {
+        return new NotificationDTO(id, "Asunto", "Mensaje", false, Instant.now());
+    }
+}
@@ -0,0 +1,175 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.services;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.config.HibernateCacheConfig;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.CursorPageDTO;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.LocationDTO;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities.Location;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities.Province;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities.Region;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities.Supermarket;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.mappers.LocationMapper;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.mappers.ProvinceMapper;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.mappers.RegionMapper;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.mappers.SupermarketMapper;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.repositories.LocationRepository;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.repositories.ProvinceRepository;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.repositories.RegionRepository;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.repositories.SupermarketRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Comprueba cuántas sentencias SQL ejecutan las lecturas de provincias y ubicaciones, y que los listados
+ * usan la caché de consultas.
+ *
+ * Cada lectura se ejecuta con la caché de segundo nivel vacía y dentro de una única sesión, igual que
+ * una petición con la sesión abierta hasta la vista, de modo que cualquier asociación perezosa que
+ * vuelva a recorrer un mapper aparece como sentencias adicionales y el test falla.
+ */
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({HibernateCacheConfig.class, ProvinceService.class, LocationService.class,
+        ProvinceMapper.class, LocationMapper.class, RegionMapper.class, SupermarketMapper.class})
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:statement-count;MODE=MariaDB;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.sql.init.mode=never"})
+class ReferenceDataStatementCountTest {
+
+    private static final int ROWS = 10;
+
+    @Autowired
+    private ProvinceService provinceService;
+
+    @Autowired
+    private LocationService locationService;
+
+    @Autowired
+    private RegionRepository regionRepository;
+
+    @Autowired
+    private ProvinceRepository provinceRepository;
+
+    @Autowired
+    private SupermarketRepository supermarketRepository;
+
+    @Autowired
+    private LocationRepository locationRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private Long provinceId;
+
+    private Long locationId;
+
+    @BeforeEach
+    void setUp() {
+        locationRepository.deleteAll();
+        provinceRepository.deleteAll();
+        supermarketRepository.deleteAll();
+        regionRepository.deleteAll();
+
+        // Cada provincia y cada ubicación apuntan a una región y un supermercado distintos,
+        // así que una carga perezosa por fila se notaría en el número de sentencias
+        List<Location> locations = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            Region region = regionRepository.save(new Region(String.format("%02d", i), "Región " + i));
+            Province province = provinceRepository.save(new Province(String.format("%02d", i), "Provincia " + i, region));
+            Supermarket supermarket = supermarketRepository.save(new Supermarket("Supermercado " + i));
+            locations.add(new Location("Calle " + i, "Ciudad " + i, supermarket, province));
+        }
+        locationRepository.saveAll(locations);
+        provinceId = locations.get(0).getProvince().getId();
+        locationId = locations.get(0).getId();
+    }
+
+    @Test
+    void getProvincesRunsOneStatement() {
+        assertThat(countStatements(() -> assertThat(provinceService.getProvinces(null, null, null, null, 20).getContent())
+                .hasSize(ROWS))).isEqualTo(1);
+    }
+
+    @Test
+    void getProvinceByIdRunsOneStatement() {
+        assertThat(countStatements(() -> assertThat(provinceService.getProvinceById(provinceId)).isPresent())).isEqualTo(1);
+    }
+
+    @Test
+    void getLocationsRunsOneStatement() {
+        assertThat(countStatements(() -> assertThat(locationService.getLocations(null, null, null, null, null, 20).getContent())
+                .hasSize(ROWS))).isEqualTo(1);
+    }
+
+    @Test
+    void getLocationsWalksEveryPageWithOneStatementEach() {
+        List<LocationDTO> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            String current = cursor;
+            List<CursorPageDTO<LocationDTO>> holder = new ArrayList<>();
+            assertThat(countStatements(() -> holder.add(locationService.getLocations(null, null, null, "city,desc", current, 3))))
+                    .isEqualTo(1);
+            seen.addAll(holder.get(0).getContent());
+            cursor = holder.get(0).getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertThat(pages).isEqualTo(4);
+        assertThat(seen).extracting(LocationDTO::getCity).doesNotHaveDuplicates().hasSize(ROWS)
+                .isSortedAccordingTo(Comparator.reverseOrder());
+    }
+
+    @Test
+    void getLocationsServesARepeatedPageFromTheQueryCache() {
+        assertThat(countStatements(() -> locationService.getLocations(null, null, null, null, null, 5))).isEqualTo(1);
+
+        // La misma página con las cachés ya llenas: ni la consulta ni las asociaciones llegan a la base de datos
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        transactionTemplate.executeWithoutResult(status ->
+                assertThat(locationService.getLocations(null, null, null, null, null, 5).getContent()).hasSize(5));
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+        assertThat(statistics.getQueryCacheHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    void getLocationByIdRunsOneStatement() {
+        assertThat(countStatements(() -> assertThat(locationService.getLocationById(locationId)).isPresent())).isEqualTo(1);
+    }
+
+    /**
+     * Ejecuta una lectura en una sesión nueva, con la caché de segundo nivel vacía,
+     * y devuelve el número de sentencias preparadas contra la base de datos.
+     */
+    private long countStatements(Runnable read) {
+        SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        sessionFactory.getCache().evictAll();
+        Statistics statistics = sessionFactory.getStatistics();
+        statistics.clear();
+        transactionTemplate.executeWithoutResult(status -> read.run());
+        return statistics.getPrepareStatementCount();
+    }
+}
@@ -0,0 +1,180 @@
+package org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.services;
+
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.dtos.UploadCleanupReportDTO;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.entities.StoredFile;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.repositories.CategoryRepository;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.repositories.StoredFileRepository;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.repositories.UploadSessionRepository;
+import org.iesalixar.daw2.NataliaFernandez.dwese_ticket_logger_api.utils.UploadPaths;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Comprueba qué borra la limpieza de subidas: solo archivos huérfanos más antiguos que el periodo de gracia,
+ * nunca los que usa una categoría ni sus variantes y copias .gz, nada en una simulación y tampoco un archivo
+ * cuyo contenido se vuelve a subir después de borrar su fila y antes de recorrer el directorio.
+ *
+ * Los repositorios se sustituyen por mocks y el directorio de subidas por uno temporal.
+ */
+class UploadCleanupServiceTest {
+
+    private static final Duration OLD = Duration.ofHours(48);
+    private static final Duration RECENT = Duration.ofHours(1);
+
+    private static final String USED = "a".repeat(64) + ".jpg";
+    private static final String ORPHAN = "b".repeat(64) + ".png";
+
+    @TempDir
+    Path uploadDir;
+
+    private final StoredFileRepository storedFileRepository = mock(StoredFileRepository.class);
+    private final CategoryRepository categoryRepository = mock(CategoryRepository.class);
+    private final UploadSessionRepository uploadSessionRepository = mock(UploadSessionRepository.class);
+    private final List<Object[]> imageReferences = new ArrayList<>();
+
+    private UploadCleanupService cleanupService;
+
+    @BeforeEach
+    void setUp() {
+        when(categoryRepository.countImageReferences()).thenReturn(imageReferences);
+        when(uploadSessionRepository.countStoredFileReferences()).thenReturn(List.of());
+        when(storedFileRepository.findAll()).thenReturn(List.of());
+        when(storedFileRepository.findByHash(anyString())).thenReturn(Optional.empty());
+
+        cleanupService = new UploadCleanupService();
+        ReflectionTestUtils.setField(cleanupService, "uploadPath", uploadDir.toString());
+        ReflectionTestUtils.setField(cleanupService, "gracePeriodHours", 24L);
+        ReflectionTestUtils.setField(cleanupService, "maxDeletesPerRun", 100);
+        ReflectionTestUtils.setField(cleanupService, "batchSize", 10);
+        ReflectionTestUtils.setField(cleanupService, "batchPauseMs", 0L);
+        ReflectionTestUtils.setField(cleanupService, "storedFileRepository", storedFileRepository);
+        ReflectionTestUtils.setField(cleanupService, "categoryRepository", categoryRepository);
+        ReflectionTestUtils.setField(cleanupService, "uploadSessionRepository", uploadSessionRepository);
+        ReflectionTestUtils.setField(cleanupService, "transactionTemplate",
+                new TransactionTemplate(mock(PlatformTransactionManager.class)));
+    }
+
+    @Test
+    void onlyOrphansOlderThanTheGracePeriodAreDeleted() throws IOException {
+        Path old = write(ORPHAN, OLD);
+        Path recent = write("c".repeat(64) + ".png", RECENT);
+        Path oldTemp = write("upload-123.tmp", OLD);
+        Path recentTemp = write("upload-456.tmp", RECENT);
+
+        UploadCleanupReportDTO report = cleanupService.cleanup(false);
+
+        assertThat(old).doesNotExist();
+        assertThat(oldTemp).doesNotExist();
+        // Puede ser una subida cuya categoría todavía se está guardando
+        assertThat(recent).exists();
+        assertThat(recentTemp).exists();
+        assertThat(report.getScannedFiles()).isEqualTo(4);
+        assertThat(report.getDeletedFiles()).isEqualTo(2);
+    }
+
+    @Test
+    void referencedFilesAndTheirVariantsAndGzipCopiesAreKept() throws IOException {
+        imageReferences.add(new Object[]{USED, 1L});
+        List<Path> kept = new ArrayList<>();
+        kept.add(write(USED, OLD));
+        kept.add(write(USED + ".gz", OLD));
+        for (String variant : ImageVariantService.VARIANTS.keySet()) {
+            kept.add(write(ImageVariantService.variantFileName(USED, variant), OLD));
+        }
+        Path orphanVariant = write(ImageVariantService.variantFileName(ORPHAN, "thumb"), OLD);
+
+        UploadCleanupReportDTO report = cleanupService.cleanup(false);
+
+        assertThat(kept).allSatisfy(path -> assertThat(path).exists());
+        assertThat(orphanVariant).doesNotExist();
+        assertThat(report.getDeletedFiles()).isEqualTo(1);
+    }
+
+    @Test
+    void dryRunReportsWithoutDeletingAnything() throws IOException {
+        StoredFile unused = storedFile(ORPHAN, 1);
+        when(storedFileRepository.findAll()).thenReturn(List.of(unused));
+        when(storedFileRepository.findByFileName(ORPHAN)).thenReturn(Optional.of(unused));
+        Path orphan = write(ORPHAN, OLD);
+        Path temp = write("variant-789.tmp", OLD);
+
+        UploadCleanupReportDTO report = cleanupService.cleanup(true);
+
+        assertThat(report.isDryRun()).isTrue();
+        assertThat(report.getDeletedRecords()).isEqualTo(1);
+        assertThat(report.getDeletedFiles()).isEqualTo(2);
+        assertThat(orphan).exists();
+        assertThat(temp).exists();
+        assertThat(unused.getRefCount()).isEqualTo(1);
+        verify(storedFileRepository, never()).delete(any());
+    }
+
+    @Test
+    void fileReuploadedBetweenTheReconcileAndTheSweepIsKept() throws IOException {
+        StoredFile unused = storedFile(ORPHAN, 1);
+        when(storedFileRepository.findAll()).thenReturn(List.of(unused));
+        when(storedFileRepository.findByFileName(ORPHAN)).thenReturn(Optional.of(unused));
+        // La fila se borra al corregir las referencias, pero al ir a borrar el archivo ya se ha vuelto a dar de alta
+        when(storedFileRepository.findByHash(unused.getHash())).thenReturn(Optional.of(storedFile(ORPHAN, 1)));
+        Path orphan = write(ORPHAN, OLD);
+
+        UploadCleanupReportDTO report = cleanupService.cleanup(false);
+
+        verify(storedFileRepository).delete(unused);
+        assertThat(report.getDeletedRecords()).isEqualTo(1);
+        assertThat(orphan).exists();
+        assertThat(report.getDeletedFiles()).isZero();
+    }
+
+    @Test
+    void wrongReferenceCountIsRepairedAndTheFileKept() throws IOException {
+        imageReferences.add(new Object[]{USED, 2L});
+        StoredFile stored = storedFile(USED, 5);
+        when(storedFileRepository.findAll()).thenReturn(List.of(stored));
+        when(storedFileRepository.findByFileName(USED)).thenReturn(Optional.of(stored));
+        when(categoryRepository.countByImage(USED)).thenReturn(2L);
+        Path used = write(USED, OLD);
+
+        UploadCleanupReportDTO report = cleanupService.cleanup(false);
+
+        assertThat(stored.getRefCount()).isEqualTo(2);
+        assertThat(report.getRepairedReferences()).isEqualTo(1);
+        assertThat(used).exists();
+    }
+
+    private Path write(String fileName, Duration age) throws IOException {
+        Path file = UploadPaths.shardedPath(uploadDir, fileName);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, fileName);
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now().minus(age)));
+        return file;
+    }
+
+    private static StoredFile storedFile(String fileName, int refCount) {
+        LocalDateTime lastUsed = LocalDateTime.now().minus(OLD);
+        return new StoredFile(fileName.substring(0, 64), fileName, 10, refCount, lastUsed, lastUsed);
+    }
+}